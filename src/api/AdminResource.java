@@ -1,18 +1,59 @@
 package api;
 
+import model.CacheStats;
 import model.Customer;
 import model.IRoom;
+import model.MethodStats;
+import model.NightOccupancy;
 import model.Reservation;
+import model.RoomType;
 import service.CustomerService;
+import service.ImportReport;
+import service.ImportService;
+import service.MethodTimer;
+import service.MetricsService;
+import service.OccupancyService;
+import service.RevenueService;
+import service.ReservationReport;
 import service.ReservationService;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.YearMonth;
 import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 public class AdminResource {
     private static final AdminResource instance = new AdminResource();
     private final CustomerService customerService = CustomerService.getInstance();
     private final ReservationService reservationService = ReservationService.getInstance();
+    private final ImportService importService = ImportService.getInstance();
+    private final OccupancyService occupancyService = OccupancyService.getInstance();
+    private final RevenueService revenueService = RevenueService.getInstance();
+    private final MetricsService metricsService = MetricsService.getInstance();
+    private final MethodTimer getCustomerTimer = metricsService.timer("AdminResource.getCustomer");
+    private final MethodTimer addRoomTimer = metricsService.timer("AdminResource.addRoom");
+    private final MethodTimer importRoomsTimer = metricsService.timer("AdminResource.importRooms");
+    private final MethodTimer importCustomersTimer = metricsService.timer("AdminResource.importCustomers");
+    private final MethodTimer getAllRoomsTimer = metricsService.timer("AdminResource.getAllRooms");
+    private final MethodTimer getAllCustomersTimer = metricsService.timer("AdminResource.getAllCustomers");
+    private final MethodTimer displayAllReservationsTimer = metricsService.timer("AdminResource.displayAllReservations");
+    private final MethodTimer getReservationCursorTimer = metricsService.timer("AdminResource.getReservationCursor");
+    private final MethodTimer getReservationReportTimer = metricsService.timer("AdminResource.getReservationReport");
+    private final MethodTimer getOccupancyTimer = metricsService.timer("AdminResource.getOccupancy");
+    private final MethodTimer getAverageOccupancyTimer = metricsService.timer("AdminResource.getAverageOccupancy");
+    private final MethodTimer getPeakNightTimer = metricsService.timer("AdminResource.getPeakNight");
+    private final MethodTimer getRoomCountTimer = metricsService.timer("AdminResource.getRoomCount");
+    private final MethodTimer getTotalRevenueCentsTimer = metricsService.timer("AdminResource.getTotalRevenueCents");
+    private final MethodTimer getRevenueCentsTimer = metricsService.timer("AdminResource.getRevenueCents");
+    private final MethodTimer getNightRevenueCentsTimer = metricsService.timer("AdminResource.getNightRevenueCents");
+    private final MethodTimer getMonthRevenueCentsTimer = metricsService.timer("AdminResource.getMonthRevenueCents");
+    private final MethodTimer getRoomTypeRevenueCentsTimer = metricsService.timer("AdminResource.getRoomTypeRevenueCents");
+    private final MethodTimer getRoomRevenueCentsTimer = metricsService.timer("AdminResource.getRoomRevenueCents");
+    private final MethodTimer getCustomerRevenueCentsTimer = metricsService.timer("AdminResource.getCustomerRevenueCents");
+    private final MethodTimer getComplimentaryNightsTimer = metricsService.timer("AdminResource.getComplimentaryNights");
 
     private AdminResource() {}
 
@@ -21,28 +62,111 @@ public class AdminResource {
     }
 
     public Customer getCustomer(String email) {
-        return customerService.getCustomer(email);
+        return getCustomerTimer.time(() -> customerService.getCustomer(email));
     }
 
     public void addRoom(List<IRoom> rooms) {
-        if (rooms == null) {
-            throw new IllegalArgumentException("Rooms list cannot be null");
-        }
+        addRoomTimer.time(() -> {
+            if (rooms == null) {
+                throw new IllegalArgumentException("Rooms list cannot be null");
+            }
 
-        for (IRoom room : rooms) {
-            reservationService.addRoom(room);
-        }
+            for (IRoom room : rooms) {
+                reservationService.addRoom(room);
+            }
+        });
+    }
+
+    public ImportReport importRooms(Path file) throws IOException {
+        return importRoomsTimer.time(() -> importService.importRooms(file));
+    }
+
+    public ImportReport importCustomers(Path file) throws IOException {
+        return importCustomersTimer.time(() -> importService.importCustomers(file));
     }
 
     public Collection<IRoom> getAllRooms() {
-        return reservationService.getAllRooms();
+        return getAllRoomsTimer.time(() -> reservationService.getAllRooms());
     }
 
     public Collection<Customer> getAllCustomers() {
-        return customerService.getAllCustomers();
+        return getAllCustomersTimer.time(() -> customerService.getAllCustomers());
     }
 
     public void displayAllReservations() {
-        reservationService.printAllReservation();
+        displayAllReservationsTimer.time(() -> reservationService.printAllReservation());
+    }
+
+    public Iterator<Reservation> getReservationCursor(ReservationReport.SortKey sortKey, Date from, Date to) {
+        return getReservationCursorTimer.time(() -> reservationService.reservationCursor(sortKey, from, to));
+    }
+
+    public ReservationReport getReservationReport(ReservationReport.SortKey sortKey, Date from, Date to, int pageSize) {
+        return getReservationReportTimer.time(() -> reservationService.createReservationReport(sortKey, from, to, pageSize));
+    }
+
+    public NightOccupancy getOccupancy(Date night, RoomType roomType) {
+        return getOccupancyTimer.time(() -> occupancyService.getOccupancy(night, roomType));
+    }
+
+    public double getAverageOccupancy(Date from, Date to, RoomType roomType) {
+        return getAverageOccupancyTimer.time(() -> occupancyService.getAverageOccupancy(from, to, roomType));
+    }
+
+    public NightOccupancy getPeakNight(Date from, Date to, RoomType roomType) {
+        return getPeakNightTimer.time(() -> occupancyService.getPeakNight(from, to, roomType));
+    }
+
+    public long getRoomCount(RoomType roomType) {
+        return getRoomCountTimer.time(() -> occupancyService.getRoomCount(roomType));
+    }
+
+    public long getTotalRevenueCents() {
+        return getTotalRevenueCentsTimer.time(() -> revenueService.getTotalRevenueCents());
+    }
+
+    public long getRevenueCents(Date from, Date to) {
+        return getRevenueCentsTimer.time(() -> revenueService.getRevenueCents(from, to));
+    }
+
+    public long getNightRevenueCents(Date night) {
+        return getNightRevenueCentsTimer.time(() -> revenueService.getNightRevenueCents(night));
+    }
+
+    public long getMonthRevenueCents(YearMonth month) {
+        return getMonthRevenueCentsTimer.time(() -> revenueService.getMonthRevenueCents(month));
+    }
+
+    public long getRoomTypeRevenueCents(RoomType roomType) {
+        return getRoomTypeRevenueCentsTimer.time(() -> revenueService.getRoomTypeRevenueCents(roomType));
+    }
+
+    public long getRoomRevenueCents(String roomNumber) {
+        return getRoomRevenueCentsTimer.time(() -> revenueService.getRoomRevenueCents(reservationService.getRoomId(roomNumber)));
+    }
+
+    public long getCustomerRevenueCents(String customerEmail) {
+        return getCustomerRevenueCentsTimer.time(() -> revenueService.getCustomerRevenueCents(customerEmail));
+    }
+
+    public long getComplimentaryNights(RoomType roomType) {
+        return getComplimentaryNightsTimer.time(() -> revenueService.getComplimentaryNights(roomType));
+    }
+
+    public CacheStats getFindRoomsCacheStats() {
+        return reservationService.getFindRoomsCacheStats();
+    }
+
+    public CacheStats getAlternativeRoomsCacheStats() {
+        return reservationService.getAlternativeRoomsCacheStats();
+    }
+
+    // The metrics getters are not timed themselves, so looking at the metrics does not change them
+    public List<MethodStats> getMethodStats() {
+        return metricsService.getMethodStats();
+    }
+
+    public void writeMetricsReport(Appendable out) throws IOException {
+        metricsService.writeReport(out);
     }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package api;
+
+import model.IRoom;
+import model.Reservation;
+import model.RoomSearch;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link HotelResource} with every call run on an executor and its result returned as a
+ * {@link CompletableFuture}, so several searches can be started at once and combined, for example
+ * with {@link CompletableFuture#allOf}. The shared instance runs each call on its own virtual thread.
+ * <p>
+ * Cancelling a future, or its timing out, stops the call only if it has not started yet. A running
+ * call is never interrupted: a booking that has started either completes or fails on its own, and
+ * cancelling the future only means the caller no longer sees which.
+ */
+public class AsyncHotelResource {
+    private static final AsyncHotelResource instance =
+            new AsyncHotelResource(Executors.newVirtualThreadPerTaskExecutor(), null);
+
+    private final HotelResource hotelResource = HotelResource.getInstance();
+    private final ExecutorService executor;
+    private final Duration timeout;
+
+    /**
+     * Runs calls on {@code executor}. With a {@code timeout}, a future not completed in that time
+     * completes with a {@link java.util.concurrent.TimeoutException}; null waits as long as it takes.
+     */
+    public AsyncHotelResource(ExecutorService executor, Duration timeout) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        this.executor = executor;
+        this.timeout = timeout;
+    }
+
+    public static AsyncHotelResource getInstance() {
+        return instance;
+    }
+
+    public CompletableFuture<Collection<IRoom>> findARoom(Date checkIn, Date checkOut) {
+        return submit(() -> hotelResource.findARoom(checkIn, checkOut));
+    }
+
+    public CompletableFuture<List<IRoom>> searchRooms(RoomSearch search) {
+        return submit(() -> hotelResource.searchRooms(search));
+    }
+
+    public CompletableFuture<Collection<IRoom>> findAlternativeRooms(Date checkIn, Date checkOut) {
+        return submit(() -> hotelResource.findAlternativeRooms(checkIn, checkOut));
+    }
+
+    public CompletableFuture<SortedMap<Integer, Collection<IRoom>>> findAlternativeRooms(Date checkIn, Date checkOut,
+                                                                                         int daysEarlier, int daysLater) {
+        return submit(() -> hotelResource.findAlternativeRooms(checkIn, checkOut, daysEarlier, daysLater));
+    }
+
+    public CompletableFuture<Reservation> bookARoom(String customerEmail, IRoom room, Date checkInDate, Date checkOutDate) {
+        return submit(() -> hotelResource.bookARoom(customerEmail, room, checkInDate, checkOutDate));
+    }
+
+    public CompletableFuture<Collection<Reservation>> getCustomersReservations(String customerEmail) {
+        return submit(() -> hotelResource.getCustomersReservations(customerEmail));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                // Cancelled or timed out while queued
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(call.get());
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+            return future;
+        }
+        // Drop the call from the executor's queue once nobody is waiting for it
+        future.whenComplete((result, ex) -> {
+            if (ex != null) {
+                task.cancel(false);
+            }
+        });
+        return timeout == null ? future : future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -1,18 +1,42 @@
 package api;
 
+import model.BookingRequest;
 import model.Customer;
 import model.IRoom;
 import model.Reservation;
+import model.RoomSearch;
+import model.RoomType;
 import service.CustomerService;
+import service.MethodTimer;
+import service.MetricsService;
 import service.ReservationService;
+import service.RoomRegistry;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.SortedMap;
 
 public class HotelResource {
     private static final HotelResource instance = new HotelResource();
     private final CustomerService customerService = CustomerService.getInstance();
     private final ReservationService reservationService = ReservationService.getInstance();
+    private final MetricsService metricsService = MetricsService.getInstance();
+    private final MethodTimer getCustomerTimer = metricsService.timer("HotelResource.getCustomer");
+    private final MethodTimer createACustomerTimer = metricsService.timer("HotelResource.createACustomer");
+    private final MethodTimer getRoomTimer = metricsService.timer("HotelResource.getRoom");
+    private final MethodTimer bookARoomTimer = metricsService.timer("HotelResource.bookARoom");
+    private final MethodTimer bookRoomsTimer = metricsService.timer("HotelResource.bookRooms");
+    private final MethodTimer bookRoomsOfTypeTimer = metricsService.timer("HotelResource.bookRoomsOfType");
+    private final MethodTimer getCustomersReservationsTimer = metricsService.timer("HotelResource.getCustomersReservations");
+    private final MethodTimer cancelReservationTimer = metricsService.timer("HotelResource.cancelReservation");
+    private final MethodTimer modifyReservationTimer = metricsService.timer("HotelResource.modifyReservation");
+    private final MethodTimer findARoomTimer = metricsService.timer("HotelResource.findARoom");
+    private final MethodTimer searchRoomsTimer = metricsService.timer("HotelResource.searchRooms");
+    private final MethodTimer findAlternativeRoomsTimer = metricsService.timer("HotelResource.findAlternativeRooms");
+    private final MethodTimer findAlternativeRoomsByDaysTimer = metricsService.timer("HotelResource.findAlternativeRoomsByDays");
+    private final MethodTimer searchAlternativeRoomsTimer = metricsService.timer("HotelResource.searchAlternativeRooms");
+    private final MethodTimer isRoomAvailableTimer = metricsService.timer("HotelResource.isRoomAvailable");
 
     private HotelResource() {}
 
@@ -21,42 +45,103 @@ public class HotelResource {
     }
 
     public Customer getCustomer(String email) {
-        return customerService.getCustomer(email);
+        return getCustomerTimer.time(() -> customerService.getCustomer(email));
     }
 
     public void createACustomer(String email, String firstName, String lastName) {
-        customerService.addCustomer(email, firstName, lastName);
+        createACustomerTimer.time(() -> customerService.addCustomer(email, firstName, lastName));
     }
 
     public IRoom getRoom(String roomNumber) {
-        return reservationService.getARoom(roomNumber);
+        return getRoomTimer.time(() -> reservationService.getARoom(roomNumber));
     }
 
     public Reservation bookARoom(String customerEmail, IRoom room, Date checkInDate, Date checkOutDate) {
-        Customer customer = customerService.getCustomer(customerEmail);
-        if (customer == null) {
-            throw new IllegalArgumentException("Customer with email " + customerEmail + " not found");
-        }
-        return reservationService.reserveARoom(customer, room, checkInDate, checkOutDate);
+        return bookARoomTimer.time(() -> {
+            Customer customer = customerService.getCustomer(customerEmail);
+            if (customer == null) {
+                throw new IllegalArgumentException("Customer with email " + customerEmail + " not found");
+            }
+            int roomId = room == null ? RoomRegistry.NO_ROOM : reservationService.getRoomId(room.getRoomNumber());
+            return reservationService.reserveARoom(customer, roomId, checkInDate, checkOutDate);
+        });
+    }
+
+    public List<Reservation> bookRooms(String customerEmail, List<BookingRequest> requests) {
+        return bookRoomsTimer.time(() -> {
+            Customer customer = customerService.getCustomer(customerEmail);
+            if (customer == null) {
+                throw new IllegalArgumentException("Customer with email " + customerEmail + " not found");
+            }
+            return reservationService.reserveRooms(customer, requests);
+        });
+    }
+
+    public List<Reservation> bookRoomsOfType(String customerEmail, RoomType roomType, int count,
+                                             Date checkInDate, Date checkOutDate) {
+        return bookRoomsOfTypeTimer.time(() -> {
+            Customer customer = customerService.getCustomer(customerEmail);
+            if (customer == null) {
+                throw new IllegalArgumentException("Customer with email " + customerEmail + " not found");
+            }
+            return reservationService.reserveRoomsOfType(customer, roomType, count, checkInDate, checkOutDate);
+        });
     }
 
     public Collection<Reservation> getCustomersReservations(String customerEmail) {
-        Customer customer = customerService.getCustomer(customerEmail);
-        if (customer == null) {
-            throw new IllegalArgumentException("Customer with email " + customerEmail + " not found");
+        return getCustomersReservationsTimer.time(() -> {
+            Customer customer = customerService.getCustomer(customerEmail);
+            if (customer == null) {
+                throw new IllegalArgumentException("Customer with email " + customerEmail + " not found");
+            }
+            return reservationService.getCustomersReservation(customer);
+        });
+    }
+
+    public Reservation cancelReservation(String customerEmail, long reservationId) {
+        return cancelReservationTimer.time(() -> {
+            checkOwnReservation(customerEmail, reservationId);
+            return reservationService.cancelReservation(reservationId);
+        });
+    }
+
+    public Reservation modifyReservation(String customerEmail, long reservationId, Date checkIn, Date checkOut) {
+        return modifyReservationTimer.time(() -> {
+            checkOwnReservation(customerEmail, reservationId);
+            return reservationService.modifyReservation(reservationId, checkIn, checkOut);
+        });
+    }
+
+    // Customers only see their own reservations; anyone else's id reads as unknown
+    private void checkOwnReservation(String customerEmail, long reservationId) {
+        Reservation reservation = reservationService.getReservation(reservationId);
+        if (reservation == null || !reservation.getCustomer().getEmail().equals(customerEmail)) {
+            throw new IllegalArgumentException("Reservation " + reservationId + " not found");
         }
-        return reservationService.getCustomersReservation(customer);
     }
 
     public Collection<IRoom> findARoom(Date checkIn, Date checkOut) {
-        return reservationService.findRooms(checkIn, checkOut);
+        return findARoomTimer.time(() -> reservationService.findRooms(checkIn, checkOut));
+    }
+
+    public List<IRoom> searchRooms(RoomSearch search) {
+        return searchRoomsTimer.time(() -> reservationService.searchRooms(search));
     }
 
     public Collection<IRoom> findAlternativeRooms(Date checkIn, Date checkOut) {
-        return reservationService.findAlternativeRooms(checkIn, checkOut);
+        return findAlternativeRoomsTimer.time(() -> reservationService.findAlternativeRooms(checkIn, checkOut));
+    }
+
+    public SortedMap<Integer, Collection<IRoom>> findAlternativeRooms(Date checkIn, Date checkOut,
+                                                                      int daysEarlier, int daysLater) {
+        return findAlternativeRoomsByDaysTimer.time(() -> reservationService.findAlternativeRooms(checkIn, checkOut, daysEarlier, daysLater));
+    }
+
+    public SortedMap<Integer, List<IRoom>> searchAlternativeRooms(RoomSearch search, int daysEarlier, int daysLater) {
+        return searchAlternativeRoomsTimer.time(() -> reservationService.searchAlternativeRooms(search, daysEarlier, daysLater));
     }
 
     public boolean isRoomAvailable(String roomNumber, Date checkIn, Date checkOut) {
-        return reservationService.isRoomAvailable(roomNumber, checkIn, checkOut);
+        return isRoomAvailableTimer.time(() -> reservationService.isRoomAvailable(reservationService.getRoomId(roomNumber), checkIn, checkOut));
     }
 }
\ No newline at end of file
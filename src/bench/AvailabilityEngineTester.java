@@ -0,0 +1,235 @@
+package bench;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.Room;
+import model.RoomType;
+import service.AvailabilityIndex;
+import service.BitmapAvailabilityIndex;
+import service.ColumnarReservationStore;
+import service.IntervalAvailabilityIndex;
+import service.RoomRegistry;
+
+import java.util.*;
+
+/**
+ * Checks the bitmap, interval and columnar availability engines against each other and against a
+ * brute-force scan of the booked stays, over randomized rooms, bookings, cancellations, moves and
+ * queries. Exits with status 1 on the first disagreement.
+ * <p>
+ * Every third trial books stays that do not start or end at midnight. The columnar engine only
+ * stores whole days, so it sits those trials out; the bitmap engine must fall back to exact answers.
+ */
+public class AvailabilityEngineTester {
+    private static final long HOUR = 3_600_000L;
+    private static final int TRIALS = 200;
+    private static final int[] DAY_OFFSETS = {-3, -1, 1, 4};
+
+    private final Random random;
+    private final boolean partialDays;
+    private final RoomRegistry roomRegistry = new RoomRegistry();
+    private final Map<String, AvailabilityIndex> engines = new LinkedHashMap<>();
+    private final List<IRoom> rooms = new ArrayList<>();
+    private final List<Reservation> booked = new ArrayList<>();
+    private long lastReservationId;
+
+    private AvailabilityEngineTester(long seed, boolean partialDays) {
+        this.random = new Random(seed);
+        this.partialDays = partialDays;
+        engines.put("bitmap", new BitmapAvailabilityIndex(roomRegistry));
+        engines.put("interval", new IntervalAvailabilityIndex(roomRegistry));
+        if (!partialDays) {
+            engines.put("columnar", new ColumnarReservationStore(roomRegistry));
+        }
+    }
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            String problem = new AvailabilityEngineTester(seed + trial, trial % 3 == 0).run();
+            if (problem != null) {
+                System.out.println("Trial " + trial + " (seed " + (seed + trial) + "): " + problem);
+                System.exit(1);
+            }
+        }
+        System.out.println("All engines agree over " + TRIALS + " trials");
+    }
+
+    // Returns the first disagreement found, or null
+    private String run() {
+        int roomCount = 1 + random.nextInt(150);
+        for (int i = 0; i < roomCount; i++) {
+            IRoom room = new Room("R" + i, 10.0, RoomType.SINGLE);
+            rooms.add(room);
+            roomRegistry.register(room);
+        }
+
+        for (int step = 0; step < 600; step++) {
+            int action = random.nextInt(10);
+            if (action < 7 || booked.isEmpty()) {
+                book();
+            } else if (action < 9) {
+                cancel();
+            } else {
+                move();
+            }
+        }
+
+        for (int query = 0; query < 300; query++) {
+            Date checkIn = day(random.nextInt(60), query % 5 == 0 ? random.nextInt(24) : 0);
+            Date checkOut = new Date(checkIn.getTime() + (1 + random.nextInt(7)) * 24 * HOUR
+                    - (query % 4 == 0 ? HOUR * random.nextInt(20) : 0));
+            String problem = compare(checkIn, checkOut);
+            if (problem != null) {
+                return problem;
+            }
+        }
+        return null;
+    }
+
+    private void book() {
+        IRoom room = rooms.get(random.nextInt(rooms.size()));
+        Date checkIn = day(random.nextInt(60), partialDays && random.nextBoolean() ? random.nextInt(24) : 0);
+        Date checkOut = new Date(checkIn.getTime() + (1 + random.nextInt(5)) * 24 * HOUR
+                - (partialDays && random.nextBoolean() ? HOUR * random.nextInt(20) : 0));
+        if (!checkOut.after(checkIn) || !isFree(room, checkIn, checkOut, -1)) {
+            return;
+        }
+
+        Customer customer = new Customer("Test", "Guest", "guest" + random.nextInt(20) + "@example.com");
+        Reservation reservation = new Reservation(++lastReservationId, customer, room, checkIn, checkOut);
+        int roomId = roomRegistry.idOf(room.getRoomNumber());
+        for (AvailabilityIndex engine : engines.values()) {
+            // The columnar engine is also the store, and takes its rows through the store methods
+            if (engine instanceof ColumnarReservationStore) {
+                ((ColumnarReservationStore) engine).add(roomId, reservation);
+            } else {
+                engine.addReservation(roomId, reservation);
+            }
+        }
+        booked.add(reservation);
+    }
+
+    private void cancel() {
+        Reservation reservation = booked.remove(random.nextInt(booked.size()));
+        int roomId = roomRegistry.idOf(reservation.getRoom().getRoomNumber());
+        for (AvailabilityIndex engine : engines.values()) {
+            if (engine instanceof ColumnarReservationStore) {
+                ((ColumnarReservationStore) engine).remove(roomId, reservation);
+            } else {
+                engine.removeReservation(roomId, reservation);
+            }
+        }
+    }
+
+    private void move() {
+        int index = random.nextInt(booked.size());
+        Reservation reservation = booked.get(index);
+        int days = random.nextInt(7) - 3;
+        Date checkIn = AvailabilityIndex.shiftDays(reservation.getCheckInDate(), days);
+        Date checkOut = AvailabilityIndex.shiftDays(reservation.getCheckOutDate(), days);
+        if (!isFree(reservation.getRoom(), checkIn, checkOut, reservation.getId())) {
+            return;
+        }
+
+        Reservation updated = new Reservation(reservation.getId(), reservation.getCustomer(),
+                reservation.getRoom(), checkIn, checkOut);
+        int roomId = roomRegistry.idOf(reservation.getRoom().getRoomNumber());
+        for (AvailabilityIndex engine : engines.values()) {
+            if (engine instanceof ColumnarReservationStore) {
+                ((ColumnarReservationStore) engine).replace(roomId, reservation, updated);
+            } else {
+                engine.replaceReservation(roomId, reservation, updated);
+            }
+        }
+        booked.set(index, updated);
+    }
+
+    private String compare(Date checkIn, Date checkOut) {
+        Set<String> expected = new TreeSet<>();
+        for (IRoom room : rooms) {
+            if (isFree(room, checkIn, checkOut, -1)) {
+                expected.add(room.getRoomNumber());
+            }
+        }
+
+        IRoom probe = rooms.get(random.nextInt(rooms.size()));
+        int probeId = roomRegistry.idOf(probe.getRoomNumber());
+        boolean probeFree = expected.contains(probe.getRoomNumber());
+        Reservation ignored = booked.isEmpty() ? null : booked.get(random.nextInt(booked.size()));
+        boolean probeFreeExcept = ignored != null && isFree(probe, checkIn, checkOut, ignored.getId());
+        for (Map.Entry<String, AvailabilityIndex> entry : engines.entrySet()) {
+            String name = entry.getKey();
+            AvailabilityIndex engine = entry.getValue();
+            if (!expected.equals(roomNumbers(engine.findRooms(checkIn, checkOut)))) {
+                return name + " findRooms disagrees for " + checkIn + " - " + checkOut;
+            }
+            if (engine.isRoomAvailable(probeId, checkIn, checkOut) != probeFree) {
+                return name + " isRoomAvailable disagrees for room " + probe.getRoomNumber();
+            }
+            if (ignored != null && engine.isRoomAvailableExcept(probeId, ignored.getId(), checkIn, checkOut) != probeFreeExcept) {
+                return name + " isRoomAvailableExcept disagrees for room " + probe.getRoomNumber();
+            }
+            if (!stayIds(probe).equals(idsOf(engine.getStays(probeId).values()))) {
+                return name + " getStays disagrees for room " + probe.getRoomNumber();
+            }
+
+            SortedMap<Integer, Collection<IRoom>> byOffset = engine.findRoomsByOffset(checkIn, checkOut, DAY_OFFSETS);
+            for (int offset : DAY_OFFSETS) {
+                Set<String> shifted = roomNumbers(engine.findRooms(
+                        AvailabilityIndex.shiftDays(checkIn, offset), AvailabilityIndex.shiftDays(checkOut, offset)));
+                if (!shifted.equals(roomNumbers(byOffset.getOrDefault(offset, Collections.emptyList())))) {
+                    return name + " findRoomsByOffset disagrees at offset " + offset;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isFree(IRoom room, Date checkIn, Date checkOut, long ignoredId) {
+        for (Reservation reservation : booked) {
+            if (reservation.getRoom() == room && reservation.getId() != ignoredId
+                    && reservation.getCheckInDate().before(checkOut) && reservation.getCheckOutDate().after(checkIn)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Long> stayIds(IRoom room) {
+        List<Reservation> stays = new ArrayList<>();
+        for (Reservation reservation : booked) {
+            if (reservation.getRoom() == room) {
+                stays.add(reservation);
+            }
+        }
+        stays.sort(Comparator.comparing(Reservation::getCheckInDate));
+        return idsOf(stays);
+    }
+
+    private static List<Long> idsOf(Collection<Reservation> reservations) {
+        List<Long> ids = new ArrayList<>();
+        for (Reservation reservation : reservations) {
+            ids.add(reservation.getId());
+        }
+        return ids;
+    }
+
+    private static Set<String> roomNumbers(Collection<IRoom> rooms) {
+        Set<String> numbers = new TreeSet<>();
+        for (IRoom room : rooms) {
+            numbers.add(room.getRoomNumber());
+        }
+        return numbers;
+    }
+
+    private static Date day(int day, int hour) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2030, Calendar.JANUARY, 1);
+        calendar.add(Calendar.DATE, day);
+        calendar.add(Calendar.HOUR_OF_DAY, hour);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,250 @@
+package bench;
+
+import model.BookingRequest;
+import model.Customer;
+import persistence.ReservationJournal;
+import service.CustomerService;
+import service.ReservationService;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Runs one benchmark with one set of parameters inside a fresh JVM, started by {@link HotelBenchmark}.
+ * The services are singletons, so a fork per trial is what keeps datasets from leaking into each other.
+ * Prints the result as a single JSON object on stdout.
+ * <p>
+ * With {@code -Dbench.journal=true} bookings are also written to a journal in a temp directory,
+ * which is what makes group commit and batching visible.
+ */
+public class BenchmarkTrial {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final int BATCH_SIZE = 10;
+
+    public static void main(String[] args) throws Exception {
+        String benchmark = args[0];
+        int rooms = Integer.parseInt(args[1]);
+        int reservations = Integer.parseInt(args[2]);
+        int threads = Integer.parseInt(args[3]);
+        int warmupIterations = Integer.parseInt(args[4]);
+        int measurementIterations = Integer.parseInt(args[5]);
+        long iterationMillis = Long.parseLong(args[6]);
+
+        ReservationService reservationService = ReservationService.getInstance();
+        CustomerService customerService = CustomerService.getInstance();
+        Dataset dataset = new Dataset(rooms, reservations, 365);
+        int booked = dataset.seed(reservationService, customerService, reservations, 42);
+        if (Boolean.getBoolean("bench.journal")) {
+            openJournal(reservationService, customerService);
+        }
+
+        Consumer<Random> operation = operation(benchmark, dataset, reservationService);
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(operation, threads, iterationMillis);
+        }
+
+        List<double[]> iterations = new ArrayList<>();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        for (int i = 0; i < measurementIterations; i++) {
+            iterations.add(runIteration(operation, threads, iterationMillis));
+        }
+
+        System.out.println(toJson(benchmark, rooms, reservations, booked, threads, iterations,
+                gcCount() - gcCountBefore, gcTime() - gcTimeBefore));
+    }
+
+    private static Consumer<Random> operation(String benchmark, Dataset dataset,
+                                              ReservationService reservationService) {
+        switch (benchmark) {
+            case "findRooms":
+                return random -> {
+                    Date[] range = new Date[2];
+                    dataset.nextRange(random, range);
+                    reservationService.findRooms(range[0], range[1]);
+                };
+            case "isRoomAvailable":
+                return random -> {
+                    Date[] range = new Date[2];
+                    dataset.nextRange(random, range);
+                    reservationService.isRoomAvailable(dataset.randomRoomId(random), range[0], range[1]);
+                };
+            case "reserveARoom":
+                return random -> {
+                    Date[] range = new Date[2];
+                    dataset.nextRange(random, range);
+                    try {
+                        reservationService.reserveARoom(dataset.randomCustomer(random), dataset.randomRoomId(random),
+                                range[0], range[1]);
+                    } catch (IllegalArgumentException ignored) {
+                        // A rejected booking still exercises the whole check-and-reserve path
+                    }
+                };
+            case "reserveARoomSequential":
+                // BATCH_SIZE single bookings per op, to compare with bookRooms
+                return random -> {
+                    Customer customer = dataset.randomCustomer(random);
+                    Date[] range = new Date[2];
+                    dataset.nextRange(random, range);
+                    for (int i = 0; i < BATCH_SIZE; i++) {
+                        try {
+                            reservationService.reserveARoom(customer, dataset.randomRoomId(random), range[0], range[1]);
+                        } catch (IllegalArgumentException ignored) {
+                            // Taken rooms are skipped, as a caller looping over single bookings would
+                        }
+                    }
+                };
+            case "bookRooms":
+                return random -> {
+                    Customer customer = dataset.randomCustomer(random);
+                    Date[] range = new Date[2];
+                    dataset.nextRange(random, range);
+                    List<BookingRequest> requests = new ArrayList<>(BATCH_SIZE);
+                    for (int i = 0; i < BATCH_SIZE; i++) {
+                        requests.add(new BookingRequest(dataset.randomRoom(random), range[0], range[1]));
+                    }
+                    try {
+                        reservationService.reserveRooms(customer, requests);
+                    } catch (IllegalArgumentException ignored) {
+                        // The whole batch is rejected if any room is taken
+                    }
+                };
+            case "findAlternativeRooms":
+                return random -> {
+                    Date[] range = new Date[2];
+                    dataset.nextRange(random, range);
+                    reservationService.findAlternativeRooms(range[0], range[1]);
+                };
+            case "getAllReservations":
+                return random -> reservationService.getAllReservations();
+            default:
+                throw new IllegalArgumentException("Unknown benchmark: " + benchmark);
+        }
+    }
+
+    private static void openJournal(ReservationService reservationService,
+                                    CustomerService customerService) throws IOException {
+        Path directory = Files.createTempDirectory("hotel-bench");
+        Path journal = directory.resolve("hotel.journal");
+        ReservationJournal.open(journal, 0, reservationService, customerService);
+        journal.toFile().deleteOnExit();
+        directory.toFile().deleteOnExit();
+    }
+
+    /**
+     * Returns {ops per second, allocated bytes per op} for one timed iteration.
+     */
+    private static double[] runIteration(Consumer<Random> operation, int threads, long millis) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] ops = new long[threads];
+        long[] allocated = new long[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(worker * 31L + System.nanoTime());
+                long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long count = 0;
+                while (running.get()) {
+                    operation.accept(random);
+                    count++;
+                }
+                ops[worker] = count;
+                allocated[worker] = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            });
+            workers[t].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        long totalOps = 0;
+        long totalAllocated = 0;
+        for (int t = 0; t < threads; t++) {
+            totalOps += ops[t];
+            totalAllocated += allocated[t];
+        }
+        return new double[]{totalOps / seconds, totalOps == 0 ? 0 : (double) totalAllocated / totalOps};
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static String toJson(String benchmark, int rooms, int reservations, int booked, int threads,
+                                 List<double[]> iterations, long gcCount, long gcTimeMillis) {
+        double sum = 0;
+        double allocSum = 0;
+        for (double[] iteration : iterations) {
+            sum += iteration[0];
+            allocSum += iteration[1];
+        }
+        double mean = sum / iterations.size();
+        double variance = 0;
+        for (double[] iteration : iterations) {
+            variance += (iteration[0] - mean) * (iteration[0] - mean);
+        }
+        double stdDev = iterations.size() > 1 ? Math.sqrt(variance / (iterations.size() - 1)) : 0;
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"benchmark\":\"").append(benchmark).append('"')
+                .append(",\"mode\":\"thrpt\"")
+                .append(",\"threads\":").append(threads)
+                .append(",\"params\":{\"rooms\":").append(rooms)
+                .append(",\"reservations\":").append(reservations)
+                .append(",\"booked\":").append(booked).append('}')
+                .append(",\"primaryMetric\":{\"score\":").append(format(mean))
+                .append(",\"scoreError\":").append(format(stdDev))
+                .append(",\"scoreUnit\":\"ops/s\",\"rawData\":[");
+        for (int i = 0; i < iterations.size(); i++) {
+            json.append(i == 0 ? "" : ",").append(format(iterations.get(i)[0]));
+        }
+        json.append("]}")
+                .append(",\"secondaryMetrics\":{")
+                .append("\"gc.alloc.rate.norm\":{\"score\":").append(format(allocSum / iterations.size()))
+                .append(",\"scoreUnit\":\"B/op\"}")
+                .append(",\"gc.count\":{\"score\":").append(gcCount).append(",\"scoreUnit\":\"counts\"}")
+                .append(",\"gc.time\":{\"score\":").append(gcTimeMillis).append(",\"scoreUnit\":\"ms\"}")
+                .append("}}");
+        return json.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(java.util.Locale.ROOT, "%.3f", value);
+    }
+}
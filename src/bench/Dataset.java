@@ -0,0 +1,107 @@
+package bench;
+
+import model.Customer;
+import model.FreeRoom;
+import model.IRoom;
+import model.Room;
+import model.RoomType;
+import service.CustomerService;
+import service.ReservationService;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Seeds the services with rooms, customers and reservations and produces date ranges shaped like
+ * real demand: most stays start within a few weeks, weekend arrivals are more common, and stays are
+ * usually one to three nights.
+ */
+public class Dataset {
+    private final int roomCount;
+    private final int customerCount;
+    private final int horizonDays;
+    // Dates step by calendar day, so every one is local midnight even across a DST change
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final LocalDate firstDay;
+    private final IRoom[] rooms;
+    private final int[] roomIds;
+    private final Customer[] customers;
+
+    public Dataset(int roomCount, int reservationCount, int horizonDays) {
+        this.roomCount = roomCount;
+        this.customerCount = Math.max(1, reservationCount / 4);
+        this.horizonDays = horizonDays;
+        this.rooms = new IRoom[roomCount];
+        this.roomIds = new int[roomCount];
+        this.customers = new Customer[customerCount];
+        this.firstDay = LocalDate.now(zone).plusDays(1);
+    }
+
+    /**
+     * Adds the rooms and customers, then books until {@code reservationCount} attempts have been made.
+     * Returns the number of bookings that succeeded.
+     */
+    public int seed(ReservationService reservationService, CustomerService customerService,
+                    int reservationCount, long seed) {
+        for (int i = 0; i < roomCount; i++) {
+            RoomType type = i % 3 == 0 ? RoomType.DOUBLE : RoomType.SINGLE;
+            rooms[i] = i % 50 == 49 ? new FreeRoom("R" + i, type) : new Room("R" + i, 80.0 + (i % 20) * 10, type);
+            reservationService.addRoom(rooms[i]);
+            roomIds[i] = reservationService.getRoomId(rooms[i].getRoomNumber());
+        }
+        for (int i = 0; i < customerCount; i++) {
+            String email = "guest" + i + "@bench.com";
+            customerService.addCustomer(email, "Guest", String.valueOf(i));
+            customers[i] = customerService.getCustomer(email);
+        }
+
+        Random random = new Random(seed);
+        int booked = 0;
+        Date[] range = new Date[2];
+        for (int i = 0; i < reservationCount; i++) {
+            nextRange(random, range);
+            try {
+                reservationService.reserveARoom(randomCustomer(random), randomRoomId(random), range[0], range[1]);
+                booked++;
+            } catch (IllegalArgumentException ignored) {
+                // The room was already taken; dense datasets reject some attempts
+            }
+        }
+        return booked;
+    }
+
+    /**
+     * Fills {@code range} with a check-in and check-out date.
+     */
+    public void nextRange(Random random, Date[] range) {
+        double u = random.nextDouble();
+        int offset = (int) (u * u * horizonDays);
+        // Shift a third of arrivals onto the nearest Friday
+        LocalDate checkIn = firstDay.plusDays(offset);
+        if (random.nextInt(3) == 0) {
+            checkIn = checkIn.plusDays((DayOfWeek.FRIDAY.getValue() - checkIn.getDayOfWeek().getValue() + 7) % 7);
+        }
+        int nights = 1 + (int) Math.min(13, -Math.log(1 - random.nextDouble()) * 1.5);
+        range[0] = toDate(checkIn);
+        range[1] = toDate(checkIn.plusDays(nights));
+    }
+
+    public IRoom randomRoom(Random random) {
+        return rooms[random.nextInt(roomCount)];
+    }
+
+    public int randomRoomId(Random random) {
+        return roomIds[random.nextInt(roomCount)];
+    }
+
+    public Customer randomCustomer(Random random) {
+        return customers[random.nextInt(customerCount)];
+    }
+
+    private Date toDate(LocalDate day) {
+        return Date.from(day.atStartOfDay(zone).toInstant());
+    }
+}
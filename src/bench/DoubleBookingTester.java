@@ -0,0 +1,112 @@
+package bench;
+
+import model.Customer;
+import model.Reservation;
+import model.Room;
+import model.RoomType;
+import service.CustomerService;
+import service.ReservationService;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Races threads booking random stays in the same few rooms through
+ * {@link ReservationService#reserveARoom}, cancelling some of their own bookings so nights keep
+ * coming free, then checks that no room holds two overlapping stays and that exactly the bookings
+ * that returned and were not cancelled are stored. Exits with status 1 if either check fails.
+ * <p>
+ * Arguments, all optional: threads, rooms, attempts per thread.
+ */
+public class DoubleBookingTester {
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int roomCount = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int attempts = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+
+        ReservationService reservationService = ReservationService.getInstance();
+        CustomerService customerService = CustomerService.getInstance();
+        int[] roomIds = new int[roomCount];
+        for (int i = 0; i < roomCount; i++) {
+            reservationService.addRoom(new Room("S" + i, 100.0, RoomType.DOUBLE));
+            roomIds[i] = reservationService.getRoomId("S" + i);
+        }
+        // Midnights stepped by calendar day, so they stay midnights across a DST change
+        ZoneId zone = ZoneId.systemDefault();
+        Date[] nights = new Date[64];
+        for (int i = 0; i < nights.length; i++) {
+            nights[i] = Date.from(LocalDate.now(zone).plusDays(1 + i).atStartOfDay(zone).toInstant());
+        }
+
+        AtomicLong booked = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong cancelled = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String email = "racer" + t + "@example.com";
+            customerService.addCustomer(email, "Racer", String.valueOf(t));
+            Customer customer = customerService.getCustomer(email);
+            Random random = new Random(t);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                List<Long> own = new ArrayList<>();
+                for (int i = 0; i < attempts; i++) {
+                    // A short calendar keeps the threads colliding on the same nights
+                    int firstNight = random.nextInt(60);
+                    Date checkIn = nights[firstNight];
+                    Date checkOut = nights[firstNight + 1 + random.nextInt(4)];
+                    try {
+                        own.add(reservationService.reserveARoom(customer, roomIds[random.nextInt(roomCount)],
+                                checkIn, checkOut).getId());
+                        booked.incrementAndGet();
+                    } catch (IllegalArgumentException ex) {
+                        rejected.incrementAndGet();
+                    }
+                    if (!own.isEmpty() && random.nextInt(4) == 0) {
+                        reservationService.cancelReservation(own.remove(random.nextInt(own.size())));
+                        cancelled.incrementAndGet();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Map<String, List<Reservation>> byRoom = new HashMap<>();
+        for (Reservation reservation : reservationService.getAllReservations()) {
+            byRoom.computeIfAbsent(reservation.getRoom().getRoomNumber(), k -> new ArrayList<>()).add(reservation);
+        }
+        int overlaps = 0;
+        int stored = 0;
+        for (Map.Entry<String, List<Reservation>> room : byRoom.entrySet()) {
+            List<Reservation> stays = room.getValue();
+            stays.sort(Comparator.comparing(Reservation::getCheckInDate));
+            stored += stays.size();
+            for (int i = 1; i < stays.size(); i++) {
+                if (stays.get(i).getCheckInDate().before(stays.get(i - 1).getCheckOutDate())) {
+                    overlaps++;
+                    System.out.println("Room " + room.getKey() + ": reservations " + stays.get(i - 1).getId()
+                            + " and " + stays.get(i).getId() + " overlap");
+                }
+            }
+        }
+
+        System.out.println(threads + " threads, " + booked + " booked, " + rejected + " rejected, "
+                + cancelled + " cancelled, " + stored + " stored, " + overlaps + " overlapping");
+        if (overlaps > 0 || stored != booked.get() - cancelled.get()) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Benchmark driver for the service layer. Every combination of benchmark, room count,
+ * reservation count and thread count runs in its own forked JVM, and the results are written
+ * as a JSON array in the same shape as JMH's {@code -rf json} output.
+ * <p>
+ * Options (all optional, lists are comma separated):
+ * <pre>
+ *   --benchmarks=findRooms,isRoomAvailable,reserveARoom,findAlternativeRooms,getAllReservations,
+ *                reserveARoomSequential,bookRooms
+ *   --rooms=100,5000,50000
+ *   --reservations=1000,100000,1000000
+ *   --threads=1,8
+ *   --warmup=3 --iterations=5 --iterationMillis=1000
+ *   --jvmArgs=-Xmx4g
+ *   --out=bench-results.json
+ * </pre>
+ * Only the booking benchmarks are run with more than one thread.
+ * The search benchmarks repeat their ranges, so pass {@code --jvmArgs=-Dhotel.availabilityCache=0}
+ * to time the availability index rather than the cache in front of it.
+ */
+public class HotelBenchmark {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (!arg.startsWith("--") || split < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, split), arg.substring(split + 1));
+        }
+
+        List<String> benchmarks = list(options.getOrDefault("benchmarks",
+                "findRooms,isRoomAvailable,reserveARoom,findAlternativeRooms,getAllReservations"));
+        List<String> roomCounts = list(options.getOrDefault("rooms", "100,5000,50000"));
+        List<String> reservationCounts = list(options.getOrDefault("reservations", "1000,100000,1000000"));
+        List<String> threadCounts = list(options.getOrDefault("threads", "1,8"));
+        String warmup = options.getOrDefault("warmup", "3");
+        String iterations = options.getOrDefault("iterations", "5");
+        String iterationMillis = options.getOrDefault("iterationMillis", "1000");
+        List<String> jvmArgs = list(options.getOrDefault("jvmArgs", ""));
+        String out = options.getOrDefault("out", "bench-results.json");
+
+        List<String> results = new ArrayList<>();
+        for (String benchmark : benchmarks) {
+            for (String rooms : roomCounts) {
+                for (String reservations : reservationCounts) {
+                    for (String threads : threadCounts) {
+                        if (!threads.equals("1") && !isBooking(benchmark)) {
+                            continue;
+                        }
+                        System.out.printf("%s rooms=%s reservations=%s threads=%s%n",
+                                benchmark, rooms, reservations, threads);
+                        String result = fork(jvmArgs, benchmark, rooms, reservations, threads,
+                                warmup, iterations, iterationMillis);
+                        System.out.println("  " + result);
+                        results.add(result);
+                    }
+                }
+            }
+        }
+
+        try (Writer writer = Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8)) {
+            writer.write("[\n");
+            writer.write(String.join(",\n", results));
+            writer.write("\n]\n");
+        }
+        System.out.println("Results written to " + out);
+    }
+
+    private static String fork(List<String> jvmArgs, String... trialArgs) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(BenchmarkTrial.class.getName());
+        command.addAll(Arrays.asList(trialArgs));
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String result = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("{")) {
+                    result = line;
+                }
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException("Benchmark fork failed: " + String.join(" ", trialArgs));
+        }
+        return result;
+    }
+
+    private static boolean isBooking(String benchmark) {
+        return benchmark.equals("reserveARoom") || benchmark.equals("reserveARoomSequential")
+                || benchmark.equals("bookRooms");
+    }
+
+    private static List<String> list(String value) {
+        List<String> values = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (!part.trim().isEmpty()) {
+                values.add(part.trim());
+            }
+        }
+        return values;
+    }
+}
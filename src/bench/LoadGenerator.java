@@ -0,0 +1,342 @@
+package bench;
+
+import api.AdminResource;
+import api.HotelResource;
+import model.FreeRoom;
+import model.IRoom;
+import model.MethodStats;
+import model.Room;
+import model.RoomType;
+import service.ReservationService;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Replays a booking storm against {@link HotelResource} from many threads at once, to find where
+ * throughput stops scaling and to shake out races. Rooms and customers are seeded through
+ * {@link AdminResource} and {@link HotelResource}, then every worker calls a weighted mix of
+ * operations until the time is up. Check-in dates follow a Zipf distribution over the horizon, so
+ * the first nights are much more popular than the last and bookings pile up on them.
+ * <p>
+ * Options (all optional):
+ * <pre>
+ *   --rooms=1000 --customers=10000
+ *   --threads=8 --virtual=false
+ *   --seconds=10
+ *   --mix=findARoom:40,findAlternativeRooms:10,bookARoom:40,getCustomersReservations:10
+ *   --horizon=365 --skew=1.0
+ *   --seed=42
+ * </pre>
+ * {@code --skew=0} spreads check-ins evenly. With {@code --virtual=true} each worker is a virtual
+ * thread. Latency percentiles are read from {@link AdminResource#getMethodStats()}, so they include
+ * the ramp-up and follow {@code -Dhotel.metricsSampling}. Afterwards the service is checked for
+ * consistency and the bookings counted by the workers are compared with what it holds; the exit
+ * status is 1 if anything is off.
+ */
+public class LoadGenerator {
+    private static final String[] OPERATIONS =
+            {"findARoom", "findAlternativeRooms", "bookARoom", "getCustomersReservations"};
+    private static final int FIND_A_ROOM = 0;
+    private static final int FIND_ALTERNATIVE_ROOMS = 1;
+    private static final int BOOK_A_ROOM = 2;
+    private static final int GET_CUSTOMERS_RESERVATIONS = 3;
+    // Slots after the operations in each worker's counts
+    private static final int BOOKED = OPERATIONS.length;
+    private static final int REJECTED = OPERATIONS.length + 1;
+    private static final int FAILED = OPERATIONS.length + 2;
+    private static final int MAX_NIGHTS = 14;
+
+    private final HotelResource hotelResource = HotelResource.getInstance();
+    private final AdminResource adminResource = AdminResource.getInstance();
+    private final IRoom[] rooms;
+    private final String[] customers;
+    private final int[] cumulativeWeights;
+    // Chance of a check-in at most i days after the first day, for the Zipf draw
+    private final double[] checkInDistribution;
+    // Local midnight of each day a stay can touch, stepped by calendar day so DST changes do not shift them
+    private final long[] dayStarts;
+    private final AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+    private long elapsedNanos;
+
+    LoadGenerator(int roomCount, int customerCount, int[] weights, int horizonDays, double skew) {
+        this.rooms = new IRoom[roomCount];
+        this.customers = new String[customerCount];
+        this.cumulativeWeights = new int[weights.length];
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            cumulativeWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("The operation mix needs at least one positive weight");
+        }
+
+        this.checkInDistribution = new double[horizonDays];
+        double sum = 0;
+        for (int day = 0; day < horizonDays; day++) {
+            sum += 1 / Math.pow(day + 1, skew);
+            checkInDistribution[day] = sum;
+        }
+        for (int day = 0; day < horizonDays; day++) {
+            checkInDistribution[day] /= sum;
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate firstDay = LocalDate.now(zone).plusDays(1);
+        this.dayStarts = new long[horizonDays + MAX_NIGHTS];
+        for (int day = 0; day < dayStarts.length; day++) {
+            dayStarts[day] = firstDay.plusDays(day).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (!arg.startsWith("--") || split < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, split), arg.substring(split + 1));
+        }
+
+        int roomCount = Integer.parseInt(options.getOrDefault("rooms", "1000"));
+        int customerCount = Integer.parseInt(options.getOrDefault("customers", "10000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        boolean virtual = Boolean.parseBoolean(options.getOrDefault("virtual", "false"));
+        long seconds = Long.parseLong(options.getOrDefault("seconds", "10"));
+        int[] weights = parseMix(options.getOrDefault("mix",
+                "findARoom:40,findAlternativeRooms:10,bookARoom:40,getCustomersReservations:10"));
+        int horizonDays = Integer.parseInt(options.getOrDefault("horizon", "365"));
+        double skew = Double.parseDouble(options.getOrDefault("skew", "1.0"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        if (roomCount < 1 || customerCount < 1 || threads < 1 || seconds < 1 || horizonDays < 1 || skew < 0) {
+            throw new IllegalArgumentException("Rooms, customers, threads, seconds and horizon must be positive "
+                    + "and skew cannot be negative");
+        }
+
+        LoadGenerator generator = new LoadGenerator(roomCount, customerCount, weights, horizonDays, skew);
+        generator.seed();
+        System.out.printf("Seeded %d rooms and %d customers; running %d %s threads for %ds%n",
+                roomCount, customerCount, threads, virtual ? "virtual" : "platform", seconds);
+
+        long[][] counts = generator.run(threads, virtual, seconds * 1000, seed);
+        boolean consistent = generator.report(counts);
+        if (!consistent) {
+            System.exit(1);
+        }
+    }
+
+    void seed() {
+        List<IRoom> batch = new ArrayList<>();
+        for (int i = 0; i < rooms.length; i++) {
+            RoomType type = i % 3 == 0 ? RoomType.DOUBLE : RoomType.SINGLE;
+            rooms[i] = i % 50 == 49 ? new FreeRoom("L" + i, type) : new Room("L" + i, 80.0 + (i % 20) * 10, type);
+            batch.add(rooms[i]);
+        }
+        adminResource.addRoom(batch);
+        for (int i = 0; i < customers.length; i++) {
+            customers[i] = "load" + i + "@bench.com";
+            hotelResource.createACustomer(customers[i], "Load", String.valueOf(i));
+        }
+    }
+
+    /**
+     * Runs the workers for {@code millis} and returns, per worker, the calls of each operation
+     * followed by the number of bookings made, bookings rejected and calls that failed otherwise.
+     */
+    long[][] run(int threads, boolean virtual, long millis, long seed) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        long[][] counts = new long[threads][];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            Runnable task = () -> {
+                Random random = new Random(seed * 31 + worker);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                counts[worker] = work(random, running);
+            };
+            workers[t] = virtual ? Thread.ofVirtual().unstarted(task) : new Thread(task, "load-" + t);
+            workers[t].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        elapsedNanos = System.nanoTime() - begin;
+        return counts;
+    }
+
+    private long[] work(Random random, AtomicBoolean running) {
+        long[] counts = new long[FAILED + 1];
+        Date[] range = new Date[2];
+        while (running.get()) {
+            int operation = nextOperation(random);
+            try {
+                switch (operation) {
+                    case FIND_A_ROOM:
+                        nextRange(random, range);
+                        hotelResource.findARoom(range[0], range[1]);
+                        break;
+                    case FIND_ALTERNATIVE_ROOMS:
+                        nextRange(random, range);
+                        hotelResource.findAlternativeRooms(range[0], range[1]);
+                        break;
+                    case BOOK_A_ROOM:
+                        nextRange(random, range);
+                        try {
+                            hotelResource.bookARoom(randomCustomer(random), rooms[random.nextInt(rooms.length)],
+                                    range[0], range[1]);
+                            counts[BOOKED]++;
+                        } catch (IllegalArgumentException ex) {
+                            // Someone else holds the room for one of these nights
+                            counts[REJECTED]++;
+                        }
+                        break;
+                    case GET_CUSTOMERS_RESERVATIONS:
+                        hotelResource.getCustomersReservations(randomCustomer(random));
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown operation " + operation);
+                }
+            } catch (RuntimeException ex) {
+                // Every call here is valid, so anything thrown is a bug worth reporting
+                counts[FAILED]++;
+                firstFailure.compareAndSet(null, ex);
+            }
+            counts[operation]++;
+        }
+        return counts;
+    }
+
+    private int nextOperation(Random random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int operation = 0;
+        while (cumulativeWeights[operation] <= pick) {
+            operation++;
+        }
+        return operation;
+    }
+
+    private void nextRange(Random random, Date[] range) {
+        int offset = Arrays.binarySearch(checkInDistribution, random.nextDouble());
+        if (offset < 0) {
+            offset = Math.min(-offset - 1, checkInDistribution.length - 1);
+        }
+        int nights = 1 + (int) Math.min(MAX_NIGHTS - 1, -Math.log(1 - random.nextDouble()) * 1.5);
+        range[0] = new Date(dayStarts[offset]);
+        range[1] = new Date(dayStarts[offset + nights]);
+    }
+
+    private String randomCustomer(Random random) {
+        return customers[random.nextInt(customers.length)];
+    }
+
+    /**
+     * Prints throughput, latencies, the booking conflict rate and the invariant checks. Returns
+     * whether every check passed.
+     */
+    boolean report(long[][] counts) {
+        long[] totals = new long[FAILED + 1];
+        for (long[] workerCounts : counts) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += workerCounts[i];
+            }
+        }
+        double seconds = elapsedNanos / 1e9;
+        long calls = 0;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            calls += totals[i];
+        }
+
+        Map<String, MethodStats> stats = new HashMap<>();
+        for (MethodStats methodStats : adminResource.getMethodStats()) {
+            stats.put(methodStats.getName(), methodStats);
+        }
+        System.out.printf("%nThroughput: %.0f calls/s over %.1fs%n%n", calls / seconds, seconds);
+        System.out.printf("%-26s %10s %10s %9s %9s %9s %9s%n", "Operation", "Calls", "Calls/s", "p50", "p99", "p99.9", "Max");
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            MethodStats methodStats = stats.get("HotelResource." + OPERATIONS[i]);
+            if (methodStats == null || methodStats.getTimedCalls() == 0) {
+                System.out.printf("%-26s %10d %10.0f%n", OPERATIONS[i], totals[i], totals[i] / seconds);
+            } else {
+                System.out.printf("%-26s %10d %10.0f %9s %9s %9s %9s%n", OPERATIONS[i], totals[i], totals[i] / seconds,
+                        micros(methodStats.getP50Nanos()), micros(methodStats.getP99Nanos()),
+                        micros(methodStats.getP999Nanos()), micros(methodStats.getMaxNanos()));
+            }
+        }
+
+        long booked = totals[BOOKED];
+        long rejected = totals[REJECTED];
+        System.out.printf("%nBookings: %d booked, %d rejected (%.1f%% conflicts)%n", booked, rejected,
+                booked + rejected == 0 ? 0 : 100.0 * rejected / (booked + rejected));
+
+        // Nothing else books in this JVM, so the service must hold exactly what the workers booked
+        ReservationService reservationService = ReservationService.getInstance();
+        List<String> problems = new ArrayList<>(reservationService.checkConsistency());
+        if (totals[FAILED] > 0) {
+            problems.add(totals[FAILED] + " calls failed, the first with " + firstFailure.get());
+        }
+        long stored = reservationService.getAllReservations().size();
+        if (stored != booked) {
+            problems.add("Workers booked " + booked + " reservations but the service holds " + stored);
+        }
+        long byCustomer = 0;
+        for (String customer : customers) {
+            byCustomer += hotelResource.getCustomersReservations(customer).size();
+        }
+        if (byCustomer != booked) {
+            problems.add("Workers booked " + booked + " reservations but customers hold " + byCustomer);
+        }
+
+        if (problems.isEmpty()) {
+            System.out.println("Invariants: OK");
+        } else {
+            System.out.println("Invariants: " + problems.size() + " problems");
+            for (String problem : problems) {
+                System.out.println("  " + problem);
+            }
+        }
+        return problems.isEmpty();
+    }
+
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[OPERATIONS.length];
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            int operation = Arrays.asList(OPERATIONS).indexOf(nameAndWeight[0]);
+            if (nameAndWeight.length != 2 || operation < 0) {
+                throw new IllegalArgumentException("Expected operation:weight with an operation from "
+                        + Arrays.toString(OPERATIONS) + " but got " + part);
+            }
+            weights[operation] = Integer.parseInt(nameAndWeight[1]);
+            if (weights[operation] < 0) {
+                throw new IllegalArgumentException("Weight for " + nameAndWeight[0] + " cannot be negative");
+            }
+        }
+        return weights;
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1fus", nanos / 1e3);
+    }
+}
@@ -1,9 +1,138 @@
 package main;
 
+import management.HotelMBeans;
+import persistence.ReservationJournal;
+import persistence.ReservationSnapshot;
+import server.HotelHttpServer;
+import service.CustomerService;
+import service.ReservationService;
+import ui.BatchMode;
 import ui.MainMenu;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the console menus, or with {@code --batch} runs the commands piped to stdin instead, and
+ * with {@code --batch=<file>} the commands in that file. See {@link BatchMode} for the commands.
+ * <p>
+ * {@code --http[=port]} serves the hotel over HTTP until the process is stopped, on port 8080 by
+ * default; see {@link HotelHttpServer}. {@code -Dhotel.http.host} sets the address to bind, the
+ * loopback one by default, and {@code -Dhotel.http.maxConcurrent}, {@code -Dhotel.http.queueMillis}
+ * and {@code -Dhotel.http.backlog} its limits.
+ */
 public class HotelApplication {
-    public static void main(String[] args) {
-        MainMenu.main(args);
+    private static final String BATCH = "--batch";
+    private static final String HTTP = "--http";
+
+    public static void main(String[] args) throws IOException {
+        ReservationService reservationService = ReservationService.getInstance();
+        CustomerService customerService = CustomerService.getInstance();
+
+        // Load the latest snapshot, then replay only the journal written after it
+        Path snapshotPath = Paths.get(System.getProperty("hotel.snapshot", "hotel.snapshot"));
+        Path journalPath = Paths.get(System.getProperty("hotel.journal", "hotel.journal"));
+        long snapshotMinutes = Long.getLong("hotel.snapshotIntervalMinutes", 10);
+        long journalPosition = ReservationSnapshot.load(snapshotPath, reservationService, customerService);
+
+        ScheduledExecutorService snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ReservationJournal journal = ReservationJournal.open(journalPath, journalPosition,
+                reservationService, customerService)) {
+            snapshots.scheduleWithFixedDelay(() -> {
+                try {
+                    writeSnapshot(snapshotPath, journal, reservationService, customerService);
+                } catch (IOException | RuntimeException ex) {
+                    System.err.println("Snapshot failed: " + ex.getMessage());
+                }
+            }, snapshotMinutes, snapshotMinutes, TimeUnit.MINUTES);
+            HotelMBeans.register(() -> {
+                writeSnapshot(snapshotPath, journal, reservationService, customerService);
+                return snapshotPath;
+            });
+
+            if (args.length > 0 && args[0].startsWith(BATCH)) {
+                runBatch(args[0]);
+            } else if (args.length > 0 && args[0].startsWith(HTTP)) {
+                serve(args[0]);
+            } else {
+                MainMenu.main(args);
+            }
+        } finally {
+            snapshots.shutdownNow();
+        }
+    }
+
+    private static void runBatch(String option) throws IOException {
+        if (!option.equals(BATCH) && !option.startsWith(BATCH + "=")) {
+            throw new IllegalArgumentException("Expected " + BATCH + " or " + BATCH + "=<file> but got " + option);
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        if (option.equals(BATCH)) {
+            BatchMode.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16), out);
+        } else {
+            try (BufferedReader in = Files.newBufferedReader(Paths.get(option.substring(BATCH.length() + 1)),
+                    StandardCharsets.UTF_8)) {
+                BatchMode.run(in, out);
+            }
+        }
+    }
+
+    private static void serve(String option) throws IOException {
+        int port;
+        if (option.equals(HTTP)) {
+            port = 8080;
+        } else if (option.startsWith(HTTP + "=")) {
+            port = Integer.parseInt(option.substring(HTTP.length() + 1));
+        } else {
+            throw new IllegalArgumentException("Expected " + HTTP + " or " + HTTP + "=<port> but got " + option);
+        }
+        InetSocketAddress address = new InetSocketAddress(System.getProperty("hotel.http.host", "127.0.0.1"), port);
+        HotelHttpServer server = HotelHttpServer.start(address, Integer.getInteger("hotel.http.backlog", 1024),
+                Integer.getInteger("hotel.http.maxConcurrent", 1024), Long.getLong("hotel.http.queueMillis", 1000));
+        System.out.println("Serving on http://" + address.getHostString() + ":" + server.getAddress().getPort());
+
+        // On shutdown, stop serving and then let main return, so the journal is closed behind it
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            stopped.countDown();
+            try {
+                mainThread.join();
+            } catch (InterruptedException ignored) {
+                // Exit without waiting
+            }
+        }, "http-shutdown"));
+        while (stopped.getCount() > 0) {
+            try {
+                stopped.await();
+            } catch (InterruptedException ignored) {
+                // Only the shutdown hook ends serving
+            }
+        }
+    }
+
+    // Synchronized so a snapshot asked for over JMX never overlaps the scheduled one
+    private static synchronized void writeSnapshot(Path snapshotPath, ReservationJournal journal,
+                                                   ReservationService reservationService,
+                                                   CustomerService customerService) throws IOException {
+        ReservationSnapshot.write(snapshotPath, journal, reservationService, customerService);
     }
-}
\ No newline at end of file
+}
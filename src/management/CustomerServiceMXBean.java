@@ -0,0 +1,14 @@
+package management;
+
+/**
+ * What {@code hotel:type=CustomerService} shows over JMX.
+ */
+public interface CustomerServiceMXBean {
+    int getCustomerCount();
+
+    int getCustomersWithReservations();
+
+    int getMaxReservationsPerCustomer();
+
+    double getAverageReservationsPerCustomer();
+}
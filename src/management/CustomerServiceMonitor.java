@@ -0,0 +1,46 @@
+package management;
+
+import service.CustomerService;
+import service.ReservationService;
+import service.ReservationView;
+
+/**
+ * The per-customer figures are worked out from one view on every read, so they always agree
+ * with each other but cost a pass over the customers.
+ */
+public class CustomerServiceMonitor implements CustomerServiceMXBean {
+    private final CustomerService customerService;
+    private final ReservationService reservationService;
+
+    public CustomerServiceMonitor(CustomerService customerService, ReservationService reservationService) {
+        this.customerService = customerService;
+        this.reservationService = reservationService;
+    }
+
+    @Override
+    public int getCustomerCount() {
+        return customerService.getAllCustomers().size();
+    }
+
+    @Override
+    public int getCustomersWithReservations() {
+        return reservationService.getReservationView().getCustomerEmails().size();
+    }
+
+    @Override
+    public int getMaxReservationsPerCustomer() {
+        ReservationView view = reservationService.getReservationView();
+        int max = 0;
+        for (String customerEmail : view.getCustomerEmails()) {
+            max = Math.max(max, view.getCustomerReservations(customerEmail).size());
+        }
+        return max;
+    }
+
+    @Override
+    public double getAverageReservationsPerCustomer() {
+        ReservationView view = reservationService.getReservationView();
+        int customers = view.getCustomerEmails().size();
+        return customers == 0 ? 0.0 : (double) view.size() / customers;
+    }
+}
@@ -0,0 +1,55 @@
+package management;
+
+import service.CustomerService;
+import service.MetricsService;
+import service.ReservationService;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+/**
+ * Registers the hotel's MBeans with the platform MBean server, so JConsole or any other JMX client
+ * attached to the running JVM can read them:
+ * <ul>
+ *   <li>{@value #RESERVATIONS}: rooms, reservations, booking and search rates, memory estimates,
+ *       cache stats, and operations to check consistency and take a snapshot</li>
+ *   <li>{@value #CUSTOMERS}: customers and reservations per customer</li>
+ *   <li>{@value #METRICS}: per-method call metrics</li>
+ * </ul>
+ */
+public class HotelMBeans {
+    public static final String RESERVATIONS = "hotel:type=ReservationService";
+    public static final String CUSTOMERS = "hotel:type=CustomerService";
+    public static final String METRICS = "hotel:type=Metrics";
+
+    private HotelMBeans() {}
+
+    /**
+     * Registers all three, replacing any registered earlier. {@code snapshot} writes a snapshot
+     * and returns its path.
+     */
+    public static void register(Callable<Path> snapshot) {
+        ReservationService reservationService = ReservationService.getInstance();
+        MetricsService metricsService = MetricsService.getInstance();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        register(server, RESERVATIONS, new ReservationServiceMonitor(reservationService, metricsService, snapshot));
+        register(server, CUSTOMERS, new CustomerServiceMonitor(CustomerService.getInstance(), reservationService));
+        register(server, METRICS, new MetricsMonitor(metricsService));
+    }
+
+    private static void register(MBeanServer server, String name, Object mbean) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (JMException ex) {
+            throw new IllegalStateException("Could not register " + name, ex);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package management;
+
+import model.MethodStats;
+
+import java.util.List;
+
+/**
+ * What {@code hotel:type=Metrics} shows over JMX.
+ */
+public interface MetricsMXBean {
+    boolean isEnabled();
+
+    int getSampling();
+
+    List<MethodStats> getMethodStats();
+
+    /**
+     * Returns the same table the admin menu shows.
+     */
+    String report();
+}
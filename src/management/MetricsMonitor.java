@@ -0,0 +1,43 @@
+package management;
+
+import model.MethodStats;
+import service.MetricsService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+public class MetricsMonitor implements MetricsMXBean {
+    private final MetricsService metricsService;
+
+    public MetricsMonitor(MetricsService metricsService) {
+        this.metricsService = metricsService;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return metricsService.isEnabled();
+    }
+
+    @Override
+    public int getSampling() {
+        return metricsService.getSampling();
+    }
+
+    @Override
+    public List<MethodStats> getMethodStats() {
+        return metricsService.getMethodStats();
+    }
+
+    @Override
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        try {
+            metricsService.writeReport(report);
+        } catch (IOException ex) {
+            // A StringBuilder never throws
+            throw new UncheckedIOException(ex);
+        }
+        return report.toString();
+    }
+}
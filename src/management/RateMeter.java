@@ -0,0 +1,35 @@
+package management;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Turns a growing count into a rate per second. The rate is taken over the time since the previous
+ * read, so a JMX console polling every few seconds sees the recent rate; reads less than a second
+ * apart get the last rate again rather than a noisy one.
+ */
+final class RateMeter {
+    private static final long MIN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongSupplier count;
+    private long lastCount;
+    private long lastNanos;
+    private double perSecond;
+
+    RateMeter(LongSupplier count) {
+        this.count = count;
+        this.lastCount = count.getAsLong();
+        this.lastNanos = System.nanoTime();
+    }
+
+    synchronized double perSecond() {
+        long now = System.nanoTime();
+        if (now - lastNanos >= MIN_INTERVAL_NANOS) {
+            long current = count.getAsLong();
+            perSecond = (current - lastCount) * (double) TimeUnit.SECONDS.toNanos(1) / (now - lastNanos);
+            lastCount = current;
+            lastNanos = now;
+        }
+        return perSecond;
+    }
+}
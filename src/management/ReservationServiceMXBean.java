@@ -0,0 +1,49 @@
+package management;
+
+import model.CacheStats;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * What {@code hotel:type=ReservationService} shows over JMX.
+ */
+public interface ReservationServiceMXBean {
+    String getAvailabilityEngine();
+
+    int getPartitionCount();
+
+    int getRoomCount();
+
+    int getReservationCount();
+
+    long getLastReservationId();
+
+    /**
+     * Reservations booked per second since the previous read at least a second earlier.
+     */
+    double getBookingsPerSecond();
+
+    /**
+     * Room searches and availability checks per second, measured like {@link #getBookingsPerSecond()}.
+     */
+    double getSearchesPerSecond();
+
+    long getIndexMemoryBytes();
+
+    long getStoreMemoryBytes();
+
+    CacheStats getRoomSearchCache();
+
+    CacheStats getAlternativeRoomsCache();
+
+    /**
+     * Returns where the index and the stored reservations disagree; empty when they agree.
+     */
+    List<String> checkConsistency();
+
+    /**
+     * Writes a snapshot now and returns where it was written.
+     */
+    String takeSnapshot() throws IOException;
+}
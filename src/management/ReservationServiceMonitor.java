@@ -0,0 +1,112 @@
+package management;
+
+import model.CacheStats;
+import service.MethodTimer;
+import service.MetricsService;
+import service.ReservationService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class ReservationServiceMonitor implements ReservationServiceMXBean {
+    // The HotelResource methods that only look for rooms
+    private static final List<String> SEARCHES = List.of("HotelResource.findARoom", "HotelResource.searchRooms",
+            "HotelResource.findAlternativeRooms", "HotelResource.findAlternativeRoomsByDays",
+            "HotelResource.searchAlternativeRooms", "HotelResource.isRoomAvailable");
+
+    private final ReservationService reservationService;
+    private final Callable<Path> snapshot;
+    private final RateMeter bookings;
+    private final RateMeter searches;
+
+    /**
+     * {@code snapshot} writes a snapshot and returns its path.
+     */
+    public ReservationServiceMonitor(ReservationService reservationService, MetricsService metricsService,
+                                     Callable<Path> snapshot) {
+        this.reservationService = reservationService;
+        this.snapshot = snapshot;
+        this.bookings = new RateMeter(reservationService::getBookingCount);
+        MethodTimer[] searchTimers = SEARCHES.stream().map(metricsService::timer).toArray(MethodTimer[]::new);
+        this.searches = new RateMeter(() -> {
+            long calls = 0;
+            for (MethodTimer timer : searchTimers) {
+                calls += timer.getCalls();
+            }
+            return calls;
+        });
+    }
+
+    @Override
+    public String getAvailabilityEngine() {
+        return reservationService.getAvailabilityEngine();
+    }
+
+    @Override
+    public int getPartitionCount() {
+        return reservationService.getPartitionCount();
+    }
+
+    @Override
+    public int getRoomCount() {
+        return reservationService.getRoomCount();
+    }
+
+    @Override
+    public int getReservationCount() {
+        return reservationService.getReservationView().size();
+    }
+
+    @Override
+    public long getLastReservationId() {
+        return reservationService.getLastReservationId();
+    }
+
+    @Override
+    public double getBookingsPerSecond() {
+        return bookings.perSecond();
+    }
+
+    @Override
+    public double getSearchesPerSecond() {
+        return searches.perSecond();
+    }
+
+    @Override
+    public long getIndexMemoryBytes() {
+        return reservationService.getIndexMemoryBytes();
+    }
+
+    @Override
+    public long getStoreMemoryBytes() {
+        return reservationService.getStoreMemoryBytes();
+    }
+
+    @Override
+    public CacheStats getRoomSearchCache() {
+        return reservationService.getFindRoomsCacheStats();
+    }
+
+    @Override
+    public CacheStats getAlternativeRoomsCache() {
+        return reservationService.getAlternativeRoomsCacheStats();
+    }
+
+    @Override
+    public List<String> checkConsistency() {
+        return reservationService.checkConsistency();
+    }
+
+    @Override
+    public String takeSnapshot() throws IOException {
+        try {
+            return "Snapshot written to " + snapshot.call();
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException("Snapshot failed: " + ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package model;
+
+import java.util.Date;
+
+public class BookingRequest {
+    private final IRoom room;
+    private final Date checkInDate;
+    private final Date checkOutDate;
+
+    public BookingRequest(IRoom room, Date checkInDate, Date checkOutDate) {
+        this.room = room;
+        this.checkInDate = checkInDate;
+        this.checkOutDate = checkOutDate;
+    }
+
+    public IRoom getRoom() {
+        return room;
+    }
+
+    public Date getCheckInDate() {
+        return checkInDate;
+    }
+
+    public Date getCheckOutDate() {
+        return checkOutDate;
+    }
+
+    @Override
+    public String toString() {
+        return "Booking Request: Room " + room.getRoomNumber() + " from " + checkInDate + " to " + checkOutDate;
+    }
+}
@@ -0,0 +1,63 @@
+package model;
+
+/**
+ * Counters for one cache since startup, and how full it is now.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int size;
+    private final int capacity;
+
+    public CacheStats(long hits, long misses, long evictions, long invalidations, int size, int capacity) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Entries dropped to make room for others.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Entries dropped because a booking, cancellation or move changed their answer.
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return hits + " hits, " + misses + " misses (" + String.format("%.1f", getHitRate() * 100) + "% hit rate), "
+                + evictions + " evictions, " + invalidations + " invalidations, " + size + " of " + capacity + " entries";
+    }
+}
@@ -0,0 +1,89 @@
+package model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Calls, errors and latency percentiles for one method since startup. Calls and errors are exact;
+ * latencies, in nanoseconds, come from the calls that were timed, failed ones included.
+ */
+public class MethodStats {
+    private final String name;
+    private final long calls;
+    private final long timedCalls;
+    private final Map<String, Long> errors;
+    private final long meanNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    public MethodStats(String name, long calls, long timedCalls, Map<String, Long> errors, long meanNanos,
+                       long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+        this.name = name;
+        this.calls = calls;
+        this.timedCalls = timedCalls;
+        this.errors = Collections.unmodifiableMap(errors);
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+        this.p999Nanos = p999Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Calls whose latency was recorded, a sample of all of them.
+     */
+    public long getTimedCalls() {
+        return timedCalls;
+    }
+
+    /**
+     * Failed calls by the simple name of the exception thrown.
+     */
+    public Map<String, Long> getErrors() {
+        return errors;
+    }
+
+    public long getErrorCount() {
+        long count = 0;
+        for (long errorCount : errors.values()) {
+            count += errorCount;
+        }
+        return count;
+    }
+
+    public long getMeanNanos() {
+        return meanNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getP999Nanos() {
+        return p999Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + calls + " calls, " + getErrorCount() + " errors, p50 " + p50Nanos + "ns, p99 "
+                + p99Nanos + "ns, p999 " + p999Nanos + "ns, max " + maxNanos + "ns";
+    }
+}
@@ -0,0 +1,40 @@
+package model;
+
+import java.util.Date;
+
+/**
+ * How many rooms were booked for one night, out of how many rooms there are.
+ */
+public class NightOccupancy {
+    private final Date night;
+    private final long occupiedRooms;
+    private final long totalRooms;
+
+    public NightOccupancy(Date night, long occupiedRooms, long totalRooms) {
+        this.night = night;
+        this.occupiedRooms = occupiedRooms;
+        this.totalRooms = totalRooms;
+    }
+
+    public Date getNight() {
+        return night;
+    }
+
+    public long getOccupiedRooms() {
+        return occupiedRooms;
+    }
+
+    public long getTotalRooms() {
+        return totalRooms;
+    }
+
+    public double getOccupancyRate() {
+        return totalRooms == 0 ? 0.0 : (double) occupiedRooms / totalRooms;
+    }
+
+    @Override
+    public String toString() {
+        return "Night of " + night + ": " + occupiedRooms + " of " + totalRooms + " rooms occupied ("
+                + String.format("%.1f", getOccupancyRate() * 100) + "%)";
+    }
+}
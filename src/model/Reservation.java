@@ -1,21 +1,30 @@
 package model;
 
 import java.util.Date;
-import java.util.Objects;
 
+/**
+ * One booked stay. The id is given when the stay is booked and never changes, even when the
+ * dates are modified, so two reservations are equal exactly when their ids are.
+ */
 public class Reservation {
+    private final long id;
     private final Customer customer;
     private final IRoom room;
     private final Date checkInDate;
     private final Date checkOutDate;
 
-    public Reservation(Customer customer, IRoom room, Date checkInDate, Date checkOutDate) {
+    public Reservation(long id, Customer customer, IRoom room, Date checkInDate, Date checkOutDate) {
+        this.id = id;
         this.customer = customer;
         this.room = room;
         this.checkInDate = checkInDate;
         this.checkOutDate = checkOutDate;
     }
 
+    public long getId() {
+        return id;
+    }
+
     public Customer getCustomer() {
         return customer;
     }
@@ -35,6 +44,7 @@ public class Reservation {
     @Override
     public String toString() {
         return "Reservation Details:" +
+                "\nReservation ID: " + id +
                 "\nCustomer: " + customer.getFirstName() + " " + customer.getLastName() +
                 "\nRoom: " + room.getRoomNumber() + " - " + room.getRoomType() +
                 "\nPrice: " + (room.isFree() ? "FREE" : "$" + room.getRoomPrice()) +
@@ -46,17 +56,11 @@ public class Reservation {
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
-        Reservation that = (Reservation) obj;
-        return Objects.equals(room.getRoomNumber(), that.room.getRoomNumber()) &&
-                isDateRangeOverlap(this.checkInDate, this.checkOutDate, that.checkInDate, that.checkOutDate);
+        return id == ((Reservation) obj).id;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(room.getRoomNumber(), checkInDate, checkOutDate);
-    }
-
-    private boolean isDateRangeOverlap(Date checkIn1, Date checkOut1, Date checkIn2, Date checkOut2) {
-        return checkIn1.before(checkOut2) && checkOut1.after(checkIn2);
+        return Long.hashCode(id);
     }
 }
@@ -0,0 +1,68 @@
+package model;
+
+import java.util.Date;
+
+/**
+ * Criteria for a filtered room search. Room type and price bounds may be null to match anything.
+ */
+public class RoomSearch {
+    public enum SortOrder {
+        PRICE_ASCENDING, PRICE_DESCENDING
+    }
+
+    private final Date checkInDate;
+    private final Date checkOutDate;
+    private final RoomType roomType;
+    private final Double minPrice;
+    private final Double maxPrice;
+    private final SortOrder sortOrder;
+    private final int limit;
+
+    public RoomSearch(Date checkInDate, Date checkOutDate, RoomType roomType,
+                      Double minPrice, Double maxPrice, SortOrder sortOrder, int limit) {
+        if (checkInDate == null || checkOutDate == null) {
+            throw new IllegalArgumentException("Check-in and check-out dates cannot be null");
+        }
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new IllegalArgumentException("Minimum price cannot be above maximum price");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Result limit must be positive");
+        }
+        this.checkInDate = checkInDate;
+        this.checkOutDate = checkOutDate;
+        this.roomType = roomType;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.sortOrder = sortOrder == null ? SortOrder.PRICE_ASCENDING : sortOrder;
+        this.limit = limit;
+    }
+
+    public Date getCheckInDate() {
+        return checkInDate;
+    }
+
+    public Date getCheckOutDate() {
+        return checkOutDate;
+    }
+
+    public RoomType getRoomType() {
+        return roomType;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,566 @@
+package persistence;
+
+import model.Customer;
+import model.FreeRoom;
+import model.IRoom;
+import model.Reservation;
+import model.Room;
+import model.RoomType;
+import service.CustomerService;
+import service.ReservationService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of every room and customer added to the services, and of every reservation
+ * booked, cancelled or moved.
+ * <p>
+ * Each record is {@code [int length][int crc32][byte type][payload]}. Appends only copy the record
+ * into a memory buffer; a background thread writes whatever has accumulated and calls
+ * {@link FileChannel#force} once for the whole batch. Callers that need durability wait with
+ * {@link #awaitDurable}, so concurrent bookings share one fsync instead of paying for one each.
+ * <p>
+ * Bookings, cancellations and moves are appended to a buffer of their room's partition, under that
+ * buffer's own lock, so writers in different partitions never wait for each other here. Rooms and
+ * customers, which depend on no other record, go to a shared buffer. The writer seals the buffers
+ * into one segment with all their locks held, shared buffer first, so a record is never written
+ * before one appended earlier that it depends on: its partition's earlier records, and the rooms
+ * and customers it refers to. A group booking spanning partitions may depend on records of each of
+ * them and they on it, so it is sealed into a segment of its own.
+ */
+public class ReservationJournal implements AutoCloseable {
+    private static final byte ROOM = 1;
+    private static final byte CUSTOMER = 2;
+    private static final byte RESERVATION = 3;
+    private static final byte RESERVATION_BATCH = 4;
+    private static final byte CANCELLATION = 5;
+    private static final byte MODIFICATION = 6;
+    private static final int HEADER_SIZE = 8;
+    /**
+     * The partition passed for a group booking whose rooms are in more than one partition.
+     */
+    public static final int SPANNING = -1;
+    // Rooms may be added without a price or a type; NaN and this byte stand for them on disk
+    static final byte NO_ROOM_TYPE = -1;
+
+    private final FileChannel channel;
+    private final Thread flusher;
+    // Rooms and customers; sealed ahead of the partitions' buffers
+    private final Stripe shared = new Stripe();
+    private final Stripe[] partitions;
+    private final Queue<Segment> sealed = new ConcurrentLinkedQueue<>();
+    // Changed only with every stripe locked; an append takes the value current under its stripe's lock
+    private volatile long sequence = 1;
+    // Only changed with every stripe locked
+    private long sealedPosition;
+    private volatile boolean closed;
+    private volatile boolean flusherParked;
+    private final Object durability = new Object();
+    private long durableSequence;
+    private long durablePosition;
+    private boolean flusherDone;
+    private IOException failure;
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        ByteBuffer pending = ByteBuffer.allocate(16 * 1024);
+        volatile boolean dirty;
+    }
+
+    // The records of every stripe appended while 'sequence' held, ending at 'end' in the file
+    private static final class Segment {
+        final ByteBuffer bytes;
+        final long sequence;
+        final long end;
+
+        Segment(ByteBuffer bytes, long sequence, long end) {
+            this.bytes = bytes;
+            this.sequence = sequence;
+            this.end = end;
+        }
+    }
+
+    private ReservationJournal(FileChannel channel, long position, int partitionCount) {
+        this.channel = channel;
+        this.sealedPosition = position;
+        this.durablePosition = position;
+        this.partitions = new Stripe[partitionCount];
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitions[partition] = new Stripe();
+        }
+        this.flusher = new Thread(this::flushLoop, "reservation-journal");
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Opens the journal at {@code path}, replays it into the services from {@code fromPosition}
+     * and starts logging new changes. A torn or corrupt record at the end, left by a crash
+     * part way through a write, is cut off.
+     */
+    public static ReservationJournal open(Path path, long fromPosition,
+                                          ReservationService reservationService,
+                                          CustomerService customerService) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = replay(channel, fromPosition, reservationService, customerService);
+        if (validEnd < channel.size()) {
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+        channel.position(validEnd);
+
+        ReservationJournal journal = new ReservationJournal(channel, validEnd, reservationService.getPartitionCount());
+        journal.flusher.start();
+        reservationService.setJournal(journal);
+        customerService.setJournal(journal);
+        return journal;
+    }
+
+    public long logRoom(IRoom room) {
+        byte[] number = utf8(room.getRoomNumber());
+        ByteBuffer payload = ByteBuffer.allocate(2 + number.length + 8 + 1 + 1);
+        putString(payload, number);
+        payload.putDouble(encodePrice(room));
+        payload.put(encodeType(room));
+        payload.put((byte) (room instanceof FreeRoom ? 1 : 0));
+        return append(shared, ROOM, payload);
+    }
+
+    public long logCustomer(Customer customer) {
+        byte[] email = utf8(customer.getEmail());
+        byte[] firstName = utf8(customer.getFirstName());
+        byte[] lastName = utf8(customer.getLastName());
+        ByteBuffer payload = ByteBuffer.allocate(6 + email.length + firstName.length + lastName.length);
+        putString(payload, email);
+        putString(payload, firstName);
+        putString(payload, lastName);
+        return append(shared, CUSTOMER, payload);
+    }
+
+    /**
+     * Logs a booking in a room of {@code partition}. Every record for one room must name the same
+     * partition, which keeps them in order.
+     */
+    public long logReservation(int partition, Reservation reservation) {
+        byte[] email = utf8(reservation.getCustomer().getEmail());
+        byte[] number = utf8(reservation.getRoom().getRoomNumber());
+        ByteBuffer payload = ByteBuffer.allocate(8 + 4 + email.length + number.length + 16);
+        putBooking(payload, reservation, email, number);
+        return append(partitions[partition], RESERVATION, payload);
+    }
+
+    /**
+     * Logs a group booking as one record, so a crash part way through leaves all or none of it.
+     * {@code partition} holds every room booked, or is {@link #SPANNING}.
+     */
+    public long logReservations(int partition, List<Reservation> reservations) {
+        byte[][] emails = new byte[reservations.size()][];
+        byte[][] numbers = new byte[reservations.size()][];
+        int size = 4;
+        for (int i = 0; i < reservations.size(); i++) {
+            emails[i] = utf8(reservations.get(i).getCustomer().getEmail());
+            numbers[i] = utf8(reservations.get(i).getRoom().getRoomNumber());
+            size += 8 + 4 + emails[i].length + numbers[i].length + 16;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.putInt(reservations.size());
+        for (int i = 0; i < reservations.size(); i++) {
+            putBooking(payload, reservations.get(i), emails[i], numbers[i]);
+        }
+        if (partition != SPANNING) {
+            return append(partitions[partition], RESERVATION_BATCH, payload);
+        }
+
+        long appendedIn;
+        lockAll();
+        try {
+            seal();
+            appendedIn = append(partitions[0], RESERVATION_BATCH, payload);
+            seal();
+        } finally {
+            unlockAll();
+        }
+        LockSupport.unpark(flusher);
+        return appendedIn;
+    }
+
+    public long logCancellation(int partition, long reservationId) {
+        ByteBuffer payload = ByteBuffer.allocate(8);
+        payload.putLong(reservationId);
+        return append(partitions[partition], CANCELLATION, payload);
+    }
+
+    public long logModification(int partition, long reservationId, Date checkInDate, Date checkOutDate) {
+        ByteBuffer payload = ByteBuffer.allocate(24);
+        payload.putLong(reservationId);
+        payload.putLong(checkInDate.getTime());
+        payload.putLong(checkOutDate.getTime());
+        return append(partitions[partition], MODIFICATION, payload);
+    }
+
+    private static void putBooking(ByteBuffer payload, Reservation reservation, byte[] email, byte[] number) {
+        payload.putLong(reservation.getId());
+        putString(payload, email);
+        putString(payload, number);
+        payload.putLong(reservation.getCheckInDate().getTime());
+        payload.putLong(reservation.getCheckOutDate().getTime());
+    }
+
+    /**
+     * Blocks until the record that returned {@code sequence} from one of the log methods, and
+     * everything appended before it, has been forced to disk.
+     */
+    public void awaitDurable(long sequence) {
+        synchronized (durability) {
+            while (durableSequence < sequence) {
+                awaitFlush();
+            }
+        }
+    }
+
+    /**
+     * Blocks until everything before {@code position}, as returned by {@link #position}, has been
+     * forced to disk.
+     */
+    public void awaitDurablePosition(long position) {
+        synchronized (durability) {
+            while (durablePosition < position) {
+                awaitFlush();
+            }
+        }
+    }
+
+    // Called holding the durability monitor
+    private void awaitFlush() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed", failure);
+        }
+        if (flusherDone) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        try {
+            durability.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the journal", e);
+        }
+    }
+
+    /**
+     * Returns the end of the last appended record; replaying from here skips everything logged so
+     * far. Seals what the buffers hold, so records appended later are written after it.
+     */
+    public long position() {
+        long position;
+        lockAll();
+        try {
+            seal();
+            position = sealedPosition;
+        } finally {
+            unlockAll();
+        }
+        LockSupport.unpark(flusher);
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lockAll();
+        try {
+            if (closed) {
+                return;
+            }
+            // Under every lock, so an append either lands before this or sees it
+            closed = true;
+        } finally {
+            unlockAll();
+        }
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private long append(Stripe stripe, byte type, ByteBuffer payload) {
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload.duplicate());
+        int length = 1 + payload.remaining();
+
+        long appendedIn;
+        stripe.lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            ByteBuffer pending = stripe.pending;
+            if (pending.remaining() < HEADER_SIZE + length) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER_SIZE + length));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+                stripe.pending = grown;
+            }
+            pending.putInt(length);
+            pending.putInt((int) crc.getValue());
+            pending.put(type);
+            pending.put(payload);
+            stripe.dirty = true;
+            appendedIn = sequence;
+        } finally {
+            stripe.lock.unlock();
+        }
+        // Both volatile: either the flusher sees the dirty stripe before parking, or this sees it parked
+        if (flusherParked) {
+            LockSupport.unpark(flusher);
+        }
+        return appendedIn;
+    }
+
+    private void lockAll() {
+        shared.lock.lock();
+        for (Stripe stripe : partitions) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = partitions.length - 1; i >= 0; i--) {
+            partitions[i].lock.unlock();
+        }
+        shared.lock.unlock();
+    }
+
+    // Called with every stripe locked: moves what they hold into one segment, shared stripe first
+    private void seal() {
+        int size = shared.pending.position();
+        for (Stripe stripe : partitions) {
+            size += stripe.pending.position();
+        }
+        if (size == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(size);
+        moveInto(shared, bytes);
+        for (Stripe stripe : partitions) {
+            moveInto(stripe, bytes);
+        }
+        bytes.flip();
+        sealedPosition += size;
+        sealed.add(new Segment(bytes, sequence, sealedPosition));
+        sequence++;
+    }
+
+    private static void moveInto(Stripe stripe, ByteBuffer bytes) {
+        stripe.pending.flip();
+        bytes.put(stripe.pending);
+        stripe.pending.clear();
+        stripe.dirty = false;
+    }
+
+    private boolean hasWork() {
+        if (!sealed.isEmpty() || closed || shared.dirty) {
+            return true;
+        }
+        for (Stripe stripe : partitions) {
+            if (stripe.dirty) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                flusherParked = true;
+                while (!hasWork()) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        return;
+                    }
+                }
+                flusherParked = false;
+
+                boolean closing = closed;
+                lockAll();
+                try {
+                    seal();
+                } finally {
+                    unlockAll();
+                }
+                Segment last = null;
+                for (Segment segment = sealed.poll(); segment != null; segment = sealed.poll()) {
+                    while (segment.bytes.hasRemaining()) {
+                        channel.write(segment.bytes);
+                    }
+                    last = segment;
+                }
+                if (last != null) {
+                    channel.force(false);
+                    synchronized (durability) {
+                        durableSequence = last.sequence;
+                        durablePosition = last.end;
+                        durability.notifyAll();
+                    }
+                } else if (closing) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            synchronized (durability) {
+                failure = e;
+                durability.notifyAll();
+            }
+        } finally {
+            synchronized (durability) {
+                flusherDone = true;
+                durability.notifyAll();
+            }
+        }
+    }
+
+    private static long replay(FileChannel channel, long position,
+                               ReservationService reservationService,
+                               CustomerService customerService) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long size = channel.size();
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || position + HEADER_SIZE + length > size) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(length);
+            readFully(channel, record, position + HEADER_SIZE);
+            record.flip();
+            CRC32 crc = new CRC32();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            apply(record, reservationService, customerService);
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private static void apply(ByteBuffer record, ReservationService reservationService,
+                              CustomerService customerService) {
+        byte type = record.get();
+        switch (type) {
+            case ROOM: {
+                String number = getString(record);
+                double price = record.getDouble();
+                byte roomType = record.get();
+                boolean free = record.get() == 1;
+                reservationService.restoreRoom(decodeRoom(number, price, roomType, free));
+                break;
+            }
+            case CUSTOMER: {
+                String email = getString(record);
+                String firstName = getString(record);
+                String lastName = getString(record);
+                customerService.restoreCustomer(new Customer(firstName, lastName, email));
+                break;
+            }
+            case RESERVATION:
+                applyReservation(record, reservationService, customerService);
+                break;
+            case RESERVATION_BATCH: {
+                int count = record.getInt();
+                for (int i = 0; i < count; i++) {
+                    applyReservation(record, reservationService, customerService);
+                }
+                break;
+            }
+            case CANCELLATION:
+                reservationService.restoreCancellation(record.getLong());
+                break;
+            case MODIFICATION: {
+                long reservationId = record.getLong();
+                Date checkIn = new Date(record.getLong());
+                Date checkOut = new Date(record.getLong());
+                reservationService.restoreModification(reservationId, checkIn, checkOut);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static void applyReservation(ByteBuffer record, ReservationService reservationService,
+                                         CustomerService customerService) {
+        long reservationId = record.getLong();
+        String email = getString(record);
+        String number = getString(record);
+        Date checkIn = new Date(record.getLong());
+        Date checkOut = new Date(record.getLong());
+        Customer customer = customerService.getCustomer(email);
+        IRoom room = reservationService.getARoom(number);
+        if (customer == null || room == null) {
+            throw new IllegalStateException("Journal reservation refers to unknown customer "
+                    + email + " or room " + number);
+        }
+        reservationService.restoreReservation(reservationId, customer, room, checkIn, checkOut);
+    }
+
+    static double encodePrice(IRoom room) {
+        return room.getRoomPrice() == null ? Double.NaN : room.getRoomPrice();
+    }
+
+    static byte encodeType(IRoom room) {
+        return room.getRoomType() == null ? NO_ROOM_TYPE : (byte) room.getRoomType().ordinal();
+    }
+
+    static IRoom decodeRoom(String number, double price, byte type, boolean free) {
+        RoomType roomType = type == NO_ROOM_TYPE ? null : RoomType.values()[type];
+        return free ? new FreeRoom(number, roomType) : new Room(number, Double.isNaN(price) ? null : price, roomType);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal");
+            }
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
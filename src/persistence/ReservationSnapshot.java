@@ -0,0 +1,208 @@
+package persistence;
+
+import model.Customer;
+import model.FreeRoom;
+import model.IRoom;
+import model.Reservation;
+import service.CustomerService;
+import service.ReservationService;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Point-in-time copy of all rooms, customers and reservations, so startup only has to replay
+ * the journal written after it.
+ * <p>
+ * The file is a fixed-size header followed by fixed-size room, customer and reservation records
+ * and a pool of UTF-8 strings. It is read through a {@link MappedByteBuffer}, without copying it
+ * onto the heap first. Reservations point at rooms and customers by record index, so loading them
+ * never decodes a string. A snapshot is taken while bookings continue; records logged after its
+ * journal position may also be in the snapshot, and replaying them again is harmless.
+ * <p>
+ * {@link #load} decodes each room and customer record once, and each reservation record straight
+ * into a {@link Reservation} pointing at them, then hands all the reservations to
+ * {@link ReservationService#restoreReservations} as one batch instead of replaying them one at a
+ * time. Availability searches need every reservation in the in-memory indexes, so nothing is left
+ * undecoded, but startup only pays for building those indexes, not for a booking per record.
+ * <p>
+ * The header also holds the last reservation id handed out, and each reservation record its own
+ * id, so reservations keep their ids across a restart.
+ */
+public class ReservationSnapshot {
+    private static final int MAGIC = 0x484F544C;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+    private static final int ROOM_SIZE = 16;
+    private static final int CUSTOMER_SIZE = 12;
+    private static final int RESERVATION_SIZE = 32;
+
+    private ReservationSnapshot() {}
+
+    /**
+     * Writes a snapshot to {@code path}, replacing any previous one only once the new file is complete.
+     * Bookings are not blocked while it runs.
+     */
+    public static void write(Path path, ReservationJournal journal,
+                             ReservationService reservationService,
+                             CustomerService customerService) throws IOException {
+        // Everything logged before this position is already in memory, so it will be captured below:
+        // reservations and customers are published before they are logged, and the position is
+        // read while no room is half added
+        long journalPosition = reservationService.journalPosition(journal);
+        journal.awaitDurablePosition(journalPosition);
+        long lastReservationId = reservationService.getLastReservationId();
+
+        List<IRoom> rooms = new ArrayList<>(reservationService.getAllRooms());
+        Map<String, Integer> roomIndexes = new HashMap<>();
+        for (IRoom room : rooms) {
+            roomIndexes.put(room.getRoomNumber(), roomIndexes.size());
+        }
+        List<Customer> customers = new ArrayList<>(customerService.getAllCustomers());
+        Map<String, Integer> customerIndexes = new HashMap<>();
+        for (Customer customer : customers) {
+            customerIndexes.put(customer.getEmail(), customerIndexes.size());
+        }
+
+        List<Reservation> reservations = new ArrayList<>();
+        for (Reservation reservation : reservationService.getAllReservations()) {
+            // Rooms and customers added after they were listed above are picked up here
+            if (!roomIndexes.containsKey(reservation.getRoom().getRoomNumber())) {
+                roomIndexes.put(reservation.getRoom().getRoomNumber(), rooms.size());
+                rooms.add(reservation.getRoom());
+            }
+            if (!customerIndexes.containsKey(reservation.getCustomer().getEmail())) {
+                customerIndexes.put(reservation.getCustomer().getEmail(), customers.size());
+                customers.add(reservation.getCustomer());
+            }
+            reservations.add(reservation);
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+            ByteArrayOutputStream pool = new ByteArrayOutputStream();
+            DataOutputStream poolOut = new DataOutputStream(pool);
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(journalPosition);
+            out.writeInt(rooms.size());
+            out.writeInt(customers.size());
+            out.writeInt(reservations.size());
+            out.writeLong(lastReservationId);
+
+            for (IRoom room : rooms) {
+                out.writeInt(addString(poolOut, room.getRoomNumber()));
+                out.writeDouble(ReservationJournal.encodePrice(room));
+                out.writeByte(ReservationJournal.encodeType(room));
+                out.writeByte(room instanceof FreeRoom ? 1 : 0);
+                out.writeShort(0);
+            }
+            for (Customer customer : customers) {
+                out.writeInt(addString(poolOut, customer.getEmail()));
+                out.writeInt(addString(poolOut, customer.getFirstName()));
+                out.writeInt(addString(poolOut, customer.getLastName()));
+            }
+            for (Reservation reservation : reservations) {
+                out.writeInt(roomIndexes.get(reservation.getRoom().getRoomNumber()));
+                out.writeInt(customerIndexes.get(reservation.getCustomer().getEmail()));
+                out.writeLong(reservation.getId());
+                out.writeLong(reservation.getCheckInDate().getTime());
+                out.writeLong(reservation.getCheckOutDate().getTime());
+            }
+            pool.writeTo(out);
+        }
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads every record of the snapshot at {@code path} into the services and returns the journal
+     * position to replay from, or 0 if there is no snapshot.
+     */
+    public static long load(Path path, ReservationService reservationService,
+                            CustomerService customerService) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a reservation snapshot: " + path);
+        }
+
+        long journalPosition = buffer.getLong(8);
+        int roomCount = buffer.getInt(16);
+        int customerCount = buffer.getInt(20);
+        int reservationCount = buffer.getInt(24);
+        int customersStart = HEADER_SIZE + roomCount * ROOM_SIZE;
+        int reservationsStart = customersStart + customerCount * CUSTOMER_SIZE;
+        int poolStart = reservationsStart + reservationCount * RESERVATION_SIZE;
+        if (poolStart > buffer.limit()) {
+            throw new IOException("Truncated reservation snapshot: " + path);
+        }
+
+        IRoom[] rooms = new IRoom[roomCount];
+        for (int i = 0; i < roomCount; i++) {
+            int record = HEADER_SIZE + i * ROOM_SIZE;
+            rooms[i] = ReservationJournal.decodeRoom(getString(buffer, poolStart + buffer.getInt(record)),
+                    buffer.getDouble(record + 4), buffer.get(record + 12), buffer.get(record + 13) == 1);
+            reservationService.restoreRoom(rooms[i]);
+            // The service's own copy, in case the room was already there
+            rooms[i] = reservationService.getARoom(rooms[i].getRoomNumber());
+        }
+
+        Customer[] customers = new Customer[customerCount];
+        for (int i = 0; i < customerCount; i++) {
+            int record = customersStart + i * CUSTOMER_SIZE;
+            customers[i] = new Customer(getString(buffer, poolStart + buffer.getInt(record + 4)),
+                    getString(buffer, poolStart + buffer.getInt(record + 8)),
+                    getString(buffer, poolStart + buffer.getInt(record)));
+            customerService.restoreCustomer(customers[i]);
+        }
+
+        reservationService.restoreLastReservationId(buffer.getLong(28));
+        List<Reservation> reservations = new ArrayList<>(reservationCount);
+        for (int i = 0; i < reservationCount; i++) {
+            int record = reservationsStart + i * RESERVATION_SIZE;
+            reservations.add(new Reservation(buffer.getLong(record + 8), customers[buffer.getInt(record + 4)],
+                    rooms[buffer.getInt(record)], new Date(buffer.getLong(record + 16)), new Date(buffer.getLong(record + 24))));
+        }
+        reservationService.restoreReservations(reservations);
+        return journalPosition;
+    }
+
+    private static int addString(DataOutputStream pool, String value) throws IOException {
+        int offset = pool.size();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        pool.writeShort(bytes.length);
+        pool.write(bytes);
+        return offset;
+    }
+
+    private static String getString(ByteBuffer buffer, int offset) {
+        int length = buffer.getShort(offset) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,384 @@
+package server;
+
+import api.AdminResource;
+import api.HotelResource;
+import com.sun.net.httpserver.HttpServer;
+import model.CacheStats;
+import model.Customer;
+import model.FreeRoom;
+import model.IRoom;
+import model.MethodStats;
+import model.NightOccupancy;
+import model.Reservation;
+import model.Room;
+import model.RoomType;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Serves {@link HotelResource} and {@link AdminResource} as JSON over HTTP, on the JDK's built-in
+ * server with a virtual thread per request. Dates are {@code yyyy-MM-dd}; request bodies are flat
+ * JSON objects.
+ * <pre>
+ *   GET    /rooms?checkIn=&amp;checkOut=                         free rooms
+ *   GET    /rooms/alternatives?checkIn=&amp;checkOut=[&amp;days=7]     free rooms for the stay moved by up to days
+ *   GET    /rooms/{number}
+ *   GET    /rooms/{number}/availability?checkIn=&amp;checkOut=
+ *   POST   /customers        {email, firstName, lastName}
+ *   GET    /customers/{email}
+ *   GET    /customers/{email}/reservations
+ *   POST   /reservations     {email, roomNumber, checkIn, checkOut}
+ *   PUT    /reservations/{id} {email, checkIn, checkOut}
+ *   DELETE /reservations/{id}?email=
+ *   GET    /admin/rooms, POST /admin/rooms {roomNumber, price, roomType}
+ *   GET    /admin/customers
+ *   GET    /admin/occupancy?night=[&amp;roomType=]
+ *   GET    /admin/revenue[?from=&amp;to=]
+ *   GET    /admin/metrics
+ * </pre>
+ * At most {@code maxConcurrentRequests} requests run at once; the rest wait up to
+ * {@code queueMillis} for a turn and are then answered with 503. Connections are kept alive between
+ * requests; the JDK server keeps at most {@code -Dsun.net.httpserver.maxIdleConnections} of them
+ * idle, 200 by default, so raise it for many clients.
+ */
+public final class HotelHttpServer {
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final int DEFAULT_ALTERNATIVE_DAYS = 7;
+
+    private final HotelResource hotelResource = HotelResource.getInstance();
+    private final AdminResource adminResource = AdminResource.getInstance();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private HotelHttpServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Binds to {@code address} and starts serving. {@code backlog} is how many connections the
+     * operating system queues before the server accepts them.
+     */
+    public static HotelHttpServer start(InetSocketAddress address, int backlog, int maxConcurrentRequests,
+                                        long queueMillis) throws IOException {
+        if (maxConcurrentRequests < 1 || queueMillis < 0) {
+            throw new IllegalArgumentException("Concurrent requests must be positive and queue time cannot be negative");
+        }
+        HttpServer server = HttpServer.create(address, backlog);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        HotelHttpServer hotelServer = new HotelHttpServer(server, executor);
+
+        Semaphore permits = new Semaphore(maxConcurrentRequests);
+        server.createContext("/rooms", new JsonHandler(hotelServer::rooms, permits, queueMillis));
+        server.createContext("/customers", new JsonHandler(hotelServer::customers, permits, queueMillis));
+        server.createContext("/reservations", new JsonHandler(hotelServer::reservations, permits, queueMillis));
+        server.createContext("/admin", new JsonHandler(hotelServer::admin, permits, queueMillis));
+        server.setExecutor(executor);
+        server.start();
+        return hotelServer;
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops accepting requests, gives running ones up to {@code delaySeconds} to finish, then waits
+     * for their threads.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.close();
+    }
+
+    private int rooms(JsonHandler.Request request, JsonWriter json) {
+        List<String> path = request.path();
+        expectMethod(request, "GET");
+        if (path.isEmpty()) {
+            rooms(json, hotelResource.findARoom(date(request.requiredQuery("checkIn")),
+                    date(request.requiredQuery("checkOut"))));
+        } else if (path.size() == 1 && path.get(0).equals("alternatives")) {
+            String days = request.query("days");
+            int window = days == null ? DEFAULT_ALTERNATIVE_DAYS : Integer.parseInt(days);
+            SortedMap<Integer, Collection<IRoom>> alternatives = hotelResource.findAlternativeRooms(
+                    date(request.requiredQuery("checkIn")), date(request.requiredQuery("checkOut")), window, window);
+            json.beginArray();
+            for (Map.Entry<Integer, Collection<IRoom>> alternative : alternatives.entrySet()) {
+                json.beginObject().name("days").value(alternative.getKey()).name("rooms");
+                rooms(json, alternative.getValue());
+                json.endObject();
+            }
+            json.endArray();
+        } else if (path.size() == 1) {
+            room(json, existingRoom(path.get(0)));
+        } else if (path.size() == 2 && path.get(1).equals("availability")) {
+            existingRoom(path.get(0));
+            boolean available = hotelResource.isRoomAvailable(path.get(0),
+                    date(request.requiredQuery("checkIn")), date(request.requiredQuery("checkOut")));
+            json.beginObject().name("roomNumber").value(path.get(0)).name("available").value(available).endObject();
+        } else {
+            throw notFound(request);
+        }
+        return 200;
+    }
+
+    private int customers(JsonHandler.Request request, JsonWriter json) {
+        List<String> path = request.path();
+        if (path.isEmpty()) {
+            expectMethod(request, "POST");
+            Map<String, String> body = request.body();
+            String email = JsonHandler.Request.required(body, "email");
+            hotelResource.createACustomer(email, JsonHandler.Request.required(body, "firstName"),
+                    JsonHandler.Request.required(body, "lastName"));
+            customer(json, hotelResource.getCustomer(email));
+            return 201;
+        }
+
+        expectMethod(request, "GET");
+        Customer customer = hotelResource.getCustomer(path.get(0));
+        if (customer == null) {
+            throw new JsonHandler.HttpError(404, "Customer " + path.get(0) + " not found");
+        }
+        if (path.size() == 1) {
+            customer(json, customer);
+        } else if (path.size() == 2 && path.get(1).equals("reservations")) {
+            reservations(json, hotelResource.getCustomersReservations(customer.getEmail()));
+        } else {
+            throw notFound(request);
+        }
+        return 200;
+    }
+
+    private int reservations(JsonHandler.Request request, JsonWriter json) {
+        List<String> path = request.path();
+        if (path.isEmpty()) {
+            expectMethod(request, "POST");
+            Map<String, String> body = request.body();
+            IRoom room = existingRoom(JsonHandler.Request.required(body, "roomNumber"));
+            reservation(json, hotelResource.bookARoom(JsonHandler.Request.required(body, "email"), room,
+                    date(JsonHandler.Request.required(body, "checkIn")),
+                    date(JsonHandler.Request.required(body, "checkOut"))));
+            return 201;
+        }
+        if (path.size() != 1) {
+            throw notFound(request);
+        }
+
+        long reservationId;
+        try {
+            reservationId = Long.parseLong(path.get(0));
+        } catch (NumberFormatException ex) {
+            throw notFound(request);
+        }
+        switch (request.method()) {
+            case "PUT":
+                Map<String, String> body = request.body();
+                reservation(json, hotelResource.modifyReservation(JsonHandler.Request.required(body, "email"),
+                        reservationId, date(JsonHandler.Request.required(body, "checkIn")),
+                        date(JsonHandler.Request.required(body, "checkOut"))));
+                return 200;
+            case "DELETE":
+                reservation(json, hotelResource.cancelReservation(request.requiredQuery("email"), reservationId));
+                return 200;
+            default:
+                throw new JsonHandler.HttpError(405, "Use PUT or DELETE on a reservation");
+        }
+    }
+
+    private int admin(JsonHandler.Request request, JsonWriter json) {
+        List<String> path = request.path();
+        if (path.size() != 1) {
+            throw notFound(request);
+        }
+        switch (path.get(0)) {
+            case "rooms":
+                if (request.method().equals("POST")) {
+                    Map<String, String> body = request.body();
+                    IRoom room = newRoom(JsonHandler.Request.required(body, "roomNumber"),
+                            JsonHandler.Request.required(body, "price"), JsonHandler.Request.required(body, "roomType"));
+                    adminResource.addRoom(Collections.singletonList(room));
+                    room(json, room);
+                    return 201;
+                }
+                expectMethod(request, "GET");
+                rooms(json, adminResource.getAllRooms());
+                return 200;
+            case "customers":
+                expectMethod(request, "GET");
+                json.beginArray();
+                for (Customer customer : adminResource.getAllCustomers()) {
+                    customer(json, customer);
+                }
+                json.endArray();
+                return 200;
+            case "occupancy":
+                expectMethod(request, "GET");
+                String roomType = request.query("roomType");
+                NightOccupancy occupancy = adminResource.getOccupancy(date(request.requiredQuery("night")),
+                        roomType == null ? null : roomType(roomType));
+                json.beginObject()
+                        .name("night").value(format(occupancy.getNight()))
+                        .name("occupiedRooms").value(occupancy.getOccupiedRooms())
+                        .name("totalRooms").value(occupancy.getTotalRooms())
+                        .name("occupancyRate").value(occupancy.getOccupancyRate())
+                        .endObject();
+                return 200;
+            case "revenue":
+                expectMethod(request, "GET");
+                String from = request.query("from");
+                String to = request.query("to");
+                long cents = from == null && to == null ? adminResource.getTotalRevenueCents()
+                        : adminResource.getRevenueCents(date(request.requiredQuery("from")),
+                        date(request.requiredQuery("to")));
+                json.beginObject().name("revenueCents").value(cents).endObject();
+                return 200;
+            case "metrics":
+                expectMethod(request, "GET");
+                metrics(json);
+                return 200;
+            default:
+                throw notFound(request);
+        }
+    }
+
+    private void metrics(JsonWriter json) {
+        json.beginObject().name("methods").beginArray();
+        for (MethodStats stats : adminResource.getMethodStats()) {
+            json.beginObject()
+                    .name("name").value(stats.getName())
+                    .name("calls").value(stats.getCalls())
+                    .name("errors").value(stats.getErrorCount())
+                    .name("timedCalls").value(stats.getTimedCalls())
+                    .name("meanNanos").value(stats.getMeanNanos())
+                    .name("p50Nanos").value(stats.getP50Nanos())
+                    .name("p99Nanos").value(stats.getP99Nanos())
+                    .name("p999Nanos").value(stats.getP999Nanos())
+                    .name("maxNanos").value(stats.getMaxNanos())
+                    .endObject();
+        }
+        json.endArray();
+        json.name("findRoomsCache");
+        cacheStats(json, adminResource.getFindRoomsCacheStats());
+        json.name("alternativeRoomsCache");
+        cacheStats(json, adminResource.getAlternativeRoomsCacheStats());
+        json.endObject();
+    }
+
+    private static void cacheStats(JsonWriter json, CacheStats stats) {
+        json.beginObject()
+                .name("hits").value(stats.getHits())
+                .name("misses").value(stats.getMisses())
+                .name("evictions").value(stats.getEvictions())
+                .name("invalidations").value(stats.getInvalidations())
+                .name("size").value(stats.getSize())
+                .name("capacity").value(stats.getCapacity())
+                .endObject();
+    }
+
+    private static void rooms(JsonWriter json, Collection<IRoom> rooms) {
+        json.beginArray();
+        for (IRoom room : rooms) {
+            room(json, room);
+        }
+        json.endArray();
+    }
+
+    private static void room(JsonWriter json, IRoom room) {
+        json.beginObject()
+                .name("roomNumber").value(room.getRoomNumber())
+                .name("price").value(room.getRoomPrice())
+                .name("roomType").value(room.getRoomType().name())
+                .name("free").value(room.isFree())
+                .endObject();
+    }
+
+    private static void customer(JsonWriter json, Customer customer) {
+        json.beginObject()
+                .name("email").value(customer.getEmail())
+                .name("firstName").value(customer.getFirstName())
+                .name("lastName").value(customer.getLastName())
+                .endObject();
+    }
+
+    private void reservations(JsonWriter json, Collection<Reservation> reservations) {
+        json.beginArray();
+        for (Reservation reservation : reservations) {
+            reservation(json, reservation);
+        }
+        json.endArray();
+    }
+
+    private void reservation(JsonWriter json, Reservation reservation) {
+        json.beginObject()
+                .name("id").value(reservation.getId())
+                .name("email").value(reservation.getCustomer().getEmail())
+                .name("roomNumber").value(reservation.getRoom().getRoomNumber())
+                .name("checkIn").value(format(reservation.getCheckInDate()))
+                .name("checkOut").value(format(reservation.getCheckOutDate()))
+                .endObject();
+    }
+
+    private IRoom existingRoom(String roomNumber) {
+        IRoom room = hotelResource.getRoom(roomNumber);
+        if (room == null) {
+            throw new JsonHandler.HttpError(404, "Room " + roomNumber + " not found");
+        }
+        return room;
+    }
+
+    private static IRoom newRoom(String roomNumber, String price, String roomType) {
+        double nightlyPrice;
+        try {
+            nightlyPrice = Double.parseDouble(price);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid price: " + price);
+        }
+        if (nightlyPrice < 0 || Double.isNaN(nightlyPrice) || Double.isInfinite(nightlyPrice)) {
+            throw new IllegalArgumentException("Price cannot be negative");
+        }
+        RoomType type = roomType(roomType);
+        return nightlyPrice == 0 ? new FreeRoom(roomNumber, type) : new Room(roomNumber, nightlyPrice, type);
+    }
+
+    private static RoomType roomType(String roomType) {
+        try {
+            return RoomType.valueOf(roomType.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid room type: " + roomType);
+        }
+    }
+
+    private Date date(String value) {
+        return Date.from(LocalDate.parse(value, DATE).atStartOfDay(zone).toInstant());
+    }
+
+    private String format(Date date) {
+        return DATE.format(Instant.ofEpochMilli(date.getTime()).atZone(zone).toLocalDate());
+    }
+
+    private static void expectMethod(JsonHandler.Request request, String method) {
+        if (!request.method().equals(method)) {
+            throw new JsonHandler.HttpError(405, "Use " + method + " on this resource");
+        }
+    }
+
+    private static JsonHandler.HttpError notFound(JsonHandler.Request request) {
+        return new JsonHandler.HttpError(404, "No such resource: " + request.target());
+    }
+}
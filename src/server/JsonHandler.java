@@ -0,0 +1,214 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import service.FlatJson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one {@link Route} per exchange and writes what it returns as a JSON response with an exact
+ * length, which keeps the connection open for the client's next request. Bad input is answered
+ * with 400 and the exception message, anything unexpected with 500.
+ * <p>
+ * All handlers of a server share one {@link Semaphore}. A request that cannot get a permit within
+ * the queue time is turned away with 503 rather than piling more work onto a saturated service.
+ */
+final class JsonHandler implements HttpHandler {
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    /**
+     * Handles a request and returns the status, having written the response body to {@code json}.
+     */
+    interface Route {
+        int handle(Request request, JsonWriter json);
+    }
+
+    private final Route route;
+    private final Semaphore permits;
+    private final long queueMillis;
+
+    JsonHandler(Route route, Semaphore permits, long queueMillis) {
+        this.route = route;
+        this.permits = permits;
+        this.queueMillis = queueMillis;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            boolean permitted;
+            try {
+                permitted = permits.tryAcquire(queueMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!permitted) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, error("Server busy, try again later"));
+                return;
+            }
+
+            try {
+                JsonWriter json = new JsonWriter();
+                int status;
+                try {
+                    status = route.handle(new Request(exchange), json);
+                } catch (HttpError ex) {
+                    status = ex.getStatus();
+                    json = error(ex.getMessage());
+                } catch (IllegalArgumentException | DateTimeParseException ex) {
+                    status = 400;
+                    json = error(ex.getMessage());
+                } catch (RuntimeException ex) {
+                    System.err.println("Request " + exchange.getRequestMethod() + " " + exchange.getRequestURI()
+                            + " failed: " + ex);
+                    status = 500;
+                    json = error("Internal error");
+                }
+                send(exchange, status, json);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private static JsonWriter error(String message) {
+        return new JsonWriter().beginObject().name("error").value(message).endObject();
+    }
+
+    private static void send(HttpExchange exchange, int status, JsonWriter json) throws IOException {
+        if (json.isEmpty()) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = json.toBytes();
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Thrown by routes for answers other than 400, such as 404 and 405.
+     */
+    static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * The parts of an exchange a route needs: method, decoded path segments below the context,
+     * query parameters and the flat JSON body.
+     */
+    static final class Request {
+        private final HttpExchange exchange;
+        private final List<String> path;
+        private final Map<String, String> query;
+
+        Request(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.path = segments(exchange.getRequestURI().getRawPath(), exchange.getHttpContext().getPath());
+            this.query = parameters(exchange.getRequestURI().getRawQuery());
+        }
+
+        String method() {
+            return exchange.getRequestMethod();
+        }
+
+        List<String> path() {
+            return path;
+        }
+
+        String target() {
+            return exchange.getRequestURI().getPath();
+        }
+
+        String query(String name) {
+            return query.get(name);
+        }
+
+        String requiredQuery(String name) {
+            String value = query.get(name);
+            if (value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("Query parameter " + name + " is required");
+            }
+            return value;
+        }
+
+        Map<String, String> body() {
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readNBytes(MAX_BODY_BYTES + 1);
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Could not read request body: " + ex.getMessage());
+            }
+            if (body.length > MAX_BODY_BYTES) {
+                throw new HttpError(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            return FlatJson.parseObject(new String(body, StandardCharsets.UTF_8));
+        }
+
+        static String required(Map<String, String> body, String name) {
+            String value = body.get(name);
+            if (value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("Field " + name + " is required");
+            }
+            return value;
+        }
+
+        private static List<String> segments(String rawPath, String contextPath) {
+            String below = rawPath.substring(Math.min(contextPath.length(), rawPath.length()));
+            if (!below.isEmpty() && below.charAt(0) != '/') {
+                // A context matches by prefix, so /rooms would also take /roomsx
+                throw new HttpError(404, "No such resource: " + rawPath);
+            }
+            List<String> segments = new ArrayList<>();
+            for (String segment : below.split("/")) {
+                if (!segment.isEmpty()) {
+                    // A plus is literal in a path, unlike in a query
+                    segments.add(URLDecoder.decode(segment.replace("+", "%2B"), StandardCharsets.UTF_8));
+                }
+            }
+            return segments;
+        }
+
+        private static Map<String, String> parameters(String rawQuery) {
+            if (rawQuery == null || rawQuery.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            Map<String, String> parameters = new HashMap<>();
+            for (String pair : rawQuery.split("&")) {
+                int split = pair.indexOf('=');
+                String name = split < 0 ? pair : pair.substring(0, split);
+                String value = split < 0 ? "" : pair.substring(split + 1);
+                parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+            return parameters;
+        }
+    }
+}
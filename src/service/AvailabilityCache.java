@@ -0,0 +1,334 @@
+package service;
+
+import model.CacheStats;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of availability answers keyed by stay and day offsets. Each entry is listed under
+ * every night its answer depends on, so a booking, cancellation or move drops only the entries
+ * whose nights it touches. Adding a room drops everything.
+ * <p>
+ * Lookups never lock, and a hit writes nothing shared: it only sets its entry's referenced bit, if
+ * it is not set already. Each entry holds one of {@code capacity} slots, which a CLOCK hand sweeps
+ * on a miss, a few at a time, for a free slot or an entry not used since the hand last passed.
+ * Such a victim only gives up its slot if the new answer has been asked for more often, as
+ * estimated by a small frequency sketch, so a burst of one-off ranges cannot push out the popular
+ * ones.
+ * <p>
+ * An answer computed while a write to one of its nights was in flight is never served. Writers
+ * stamp the nights they invalidate before marking the entries listed under them, and a new
+ * answer is listed, then checked against those stamps, before lookups can find it, so either the
+ * writer marks it or it sees the stamp and is dropped.
+ */
+final class AvailabilityCache<V> {
+    // Answers spanning more nights than this are not worth listing under each one
+    private static final int MAX_NIGHTS = 366;
+    private static final int STAMP_SLOTS = 1024;
+    // Slots the hand passes per miss at most, so a full cache never scans all of them
+    private static final int MAX_SWEEP = 16;
+
+    private final int capacity;
+    private final EpochDays days;
+    private final Map<Key, Entry<V>> entries = new ConcurrentHashMap<>();
+    // Entries, not keys, so removing one entry can never unlist a newer entry for the same key
+    private final Map<Long, Set<Entry<V>>> entriesByNight = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    // Orders misses against invalidations; hits do not touch it
+    private final AtomicLong clock = new AtomicLong();
+    // Stamp of the last invalidation per night, folded into a fixed number of slots; sharing a
+    // slot can only make an answer look stale when it is not
+    private final AtomicLongArray invalidatedAt = new AtomicLongArray(STAMP_SLOTS);
+    private volatile long clearedAt;
+    private final Object evictionLock = new Object();
+    // The entry holding each slot, free once it is invalidated; guarded by evictionLock
+    private final Entry<?>[] slots;
+    private int hand;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    AvailabilityCache(int capacity, EpochDays days) {
+        this.capacity = capacity;
+        this.days = days;
+        this.sketch = new FrequencySketch(Math.max(capacity, 16));
+        this.slots = new Entry<?>[capacity];
+    }
+
+    /**
+     * Returns the cached answer for the stay moved by each of {@code dayOffsets}, computing and
+     * caching it on a miss. The answer must not be changed by the caller.
+     */
+    V get(Date checkInDate, Date checkOutDate, int[] dayOffsets, Supplier<V> compute) {
+        if (capacity == 0) {
+            return compute.get();
+        }
+
+        Key key = new Key(checkInDate.getTime(), checkOutDate.getTime(), dayOffsets);
+        sketch.increment(key.hashCode());
+        Entry<V> entry = entries.get(key);
+        if (entry != null && !entry.invalidated) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            hits.increment();
+            return entry.value;
+        }
+
+        misses.increment();
+        long stamp = clock.incrementAndGet();
+        V value = compute.get();
+        long[] nights = nightsOf(checkInDate, checkOutDate, dayOffsets);
+        if (nights[1] - nights[0] <= MAX_NIGHTS) {
+            entry = new Entry<>(key, value, nights[0], nights[1], stamp);
+            if (!admit(entry)) {
+                return value;
+            }
+            for (long night = nights[0]; night < nights[1]; night++) {
+                Entry<V> listed = entry;
+                entriesByNight.compute(night, (k, listedEntries) -> {
+                    Set<Entry<V>> updated = listedEntries != null ? listedEntries : ConcurrentHashMap.newKeySet();
+                    updated.add(listed);
+                    return updated;
+                });
+            }
+            // Checked again once published, for an invalidateAll that ran in between
+            if (isStale(entry) || entries.putIfAbsent(key, entry) != null || entry.invalidated || isStale(entry)) {
+                remove(entry);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Drops every answer that depends on a night from {@code checkInDate} up to {@code checkOutDate}.
+     * Called after the change is visible to new lookups.
+     */
+    void invalidate(Date checkInDate, Date checkOutDate) {
+        if (capacity == 0) {
+            return;
+        }
+
+        long stamp = clock.incrementAndGet();
+        long firstNight = days.floor(checkInDate);
+        long end = days.ceil(checkOutDate);
+        for (long night = firstNight; night < end && night < firstNight + STAMP_SLOTS; night++) {
+            invalidatedAt.accumulateAndGet(slotOf(night), stamp, Math::max);
+        }
+        for (long night = firstNight; night < end; night++) {
+            Set<Entry<V>> listed = entriesByNight.get(night);
+            if (listed != null) {
+                for (Entry<V> entry : listed) {
+                    if (remove(entry)) {
+                        invalidations.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    void invalidateAll() {
+        if (capacity == 0) {
+            return;
+        }
+
+        clearedAt = clock.incrementAndGet();
+        for (Entry<V> entry : entries.values()) {
+            if (remove(entry)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), entries.size(), capacity);
+    }
+
+    private long[] nightsOf(Date checkInDate, Date checkOutDate, int[] dayOffsets) {
+        if (dayOffsets.length == 0) {
+            return new long[] {0, 0};
+        }
+        int earliest = Arrays.stream(dayOffsets).min().getAsInt();
+        int latest = Arrays.stream(dayOffsets).max().getAsInt();
+        return new long[] {
+                days.floor(AvailabilityIndex.shiftDays(checkInDate, earliest)),
+                days.ceil(AvailabilityIndex.shiftDays(checkOutDate, latest))
+        };
+    }
+
+    private boolean isStale(Entry<V> entry) {
+        if (clearedAt > entry.stamp) {
+            return true;
+        }
+        for (long night = entry.firstNight; night < entry.endNight; night++) {
+            if (invalidatedAt.get(slotOf(night)) > entry.stamp) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gives {@code entry} a slot: the first free one the hand reaches, or else the first entry
+     * it finds unreferenced, if the newcomer is asked for more often. Referenced entries it passes
+     * lose their bit, so they are taken next time round unless they are used again.
+     */
+    private boolean admit(Entry<V> entry) {
+        synchronized (evictionLock) {
+            int victimSlot = -1;
+            for (int swept = 0; swept < MAX_SWEEP; swept++) {
+                int slot = hand;
+                hand = slot + 1 == slots.length ? 0 : slot + 1;
+                Entry<?> occupant = slots[slot];
+                if (occupant == null || occupant.invalidated) {
+                    slots[slot] = entry;
+                    return true;
+                }
+                if (occupant.referenced) {
+                    occupant.referenced = false;
+                } else if (victimSlot == -1) {
+                    victimSlot = slot;
+                }
+            }
+            // Every slot passed was in use; the one the hand started from has lost its bit by now
+            if (victimSlot == -1) {
+                victimSlot = Math.floorMod(hand - MAX_SWEEP, slots.length);
+            }
+
+            Entry<?> victim = slots[victimSlot];
+            if (sketch.frequency(entry.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+                return false;
+            }
+            if (remove(victim)) {
+                evictions.increment();
+            }
+            slots[victimSlot] = entry;
+            return true;
+        }
+    }
+
+    // Also unlists an entry that was never published, or is still being listed
+    private boolean remove(Entry<?> entry) {
+        entry.invalidated = true;
+        boolean removed = entries.remove(entry.key, entry);
+        for (long night = entry.firstNight; night < entry.endNight; night++) {
+            entriesByNight.computeIfPresent(night, (k, listedEntries) -> {
+                listedEntries.remove(entry);
+                return listedEntries.isEmpty() ? null : listedEntries;
+            });
+        }
+        return removed;
+    }
+
+    private static int slotOf(long night) {
+        return (int) Math.floorMod(night, (long) STAMP_SLOTS);
+    }
+
+    private static final class Key {
+        final long checkIn;
+        final long checkOut;
+        final int[] dayOffsets;
+        final int hash;
+
+        Key(long checkIn, long checkOut, int[] dayOffsets) {
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+            this.dayOffsets = dayOffsets;
+            this.hash = 31 * (31 * Long.hashCode(checkIn) + Long.hashCode(checkOut)) + Arrays.hashCode(dayOffsets);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key that = (Key) obj;
+            return checkIn == that.checkIn && checkOut == that.checkOut && Arrays.equals(dayOffsets, that.dayOffsets);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry<V> {
+        final Key key;
+        final V value;
+        final long firstNight;
+        final long endNight;
+        // Clock reading taken before the value was computed
+        final long stamp;
+        // Set by hits, cleared by the hand passing; only read and written as a hint
+        volatile boolean referenced;
+        // Set before the entry is dropped, so a lookup that still finds it treats it as a miss
+        volatile boolean invalidated;
+
+        Entry(Key key, V value, long firstNight, long endNight, long stamp) {
+            this.key = key;
+            this.value = value;
+            this.firstNight = firstNight;
+            this.endNight = endNight;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * Count-min sketch of how often each key was asked for: four counters per key, the smallest
+     * taken as the estimate. Counters stop at {@value #MAX_COUNT}, so the keys asked for most only
+     * read them. Counts are halved at random, on average every ten lookups per counter slot, so
+     * old popularity fades without lookups sharing a count of their own.
+     */
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        private static final int MAX_COUNT = 15;
+
+        private final AtomicIntegerArray counters;
+        private final int mask;
+        private final int resetAfter;
+
+        FrequencySketch(int expectedKeys) {
+            int width = Integer.highestOneBit(expectedKeys * 4 - 1) << 1;
+            this.counters = new AtomicIntegerArray(width * SEEDS.length);
+            this.mask = width - 1;
+            this.resetAfter = width * 10;
+        }
+
+        void increment(int hash) {
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = indexOf(hash, i);
+                if (counters.get(index) < MAX_COUNT) {
+                    counters.incrementAndGet(index);
+                }
+            }
+            if (ThreadLocalRandom.current().nextInt(resetAfter) == 0) {
+                for (int i = 0; i < counters.length(); i++) {
+                    counters.set(i, counters.get(i) >>> 1);
+                }
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, counters.get(indexOf(hash, i)));
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length];
+            return row * (mask + 1) + ((h ^ (h >>> 16)) & mask);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package service;
+
+import model.IRoom;
+import model.Reservation;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Answers "which rooms are free between these dates" for {@link ReservationService}.
+ * Implementations only see rooms and reservations that the service has already validated.
+ * <p>
+ * Rooms are identified by their {@link RoomRegistry} id. Indexes read the room list from the
+ * registry, so a room registered a moment ago may not have any per-room state yet and must
+ * simply count as free.
+ * <p>
+ * Queries may run concurrently with writes and must not lock. The service holds the room's lock
+ * around every write, so writes for different rooms can arrive at the same time.
+ */
+public interface AvailabilityIndex {
+    void addReservation(int roomId, Reservation reservation);
+
+    /**
+     * Frees the nights held by {@code reservation}, which must be the instance that was added.
+     */
+    void removeReservation(int roomId, Reservation reservation);
+
+    /**
+     * Moves {@code previous} to the dates of {@code updated}, which has the same id. The new nights
+     * are taken before the old ones are released, so a concurrent query never sees the room free
+     * on a night that both stays cover.
+     */
+    void replaceReservation(int roomId, Reservation previous, Reservation updated);
+
+    boolean isRoomAvailable(int roomId, Date checkInDate, Date checkOutDate);
+
+    /**
+     * Like {@link #isRoomAvailable}, but ignores the stay with {@code reservationId}, so a stay can
+     * be checked against its own room when it moves.
+     */
+    default boolean isRoomAvailableExcept(int roomId, long reservationId, Date checkInDate, Date checkOutDate) {
+        // Stays are keyed by check-in, so only those starting before the check-out can overlap it
+        for (Reservation stay : getStays(roomId).headMap(checkOutDate, false).descendingMap().values()) {
+            if (!stay.getCheckOutDate().after(checkInDate)) {
+                // The stays before this one end earlier still
+                return true;
+            }
+            if (stay.getId() != reservationId) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Collection<IRoom> findRooms(Date checkInDate, Date checkOutDate);
+
+    /**
+     * Like {@link #findRooms}, but returns the ids of the free rooms, in ascending order.
+     */
+    int[] findRoomIds(Date checkInDate, Date checkOutDate);
+
+    /**
+     * Finds the free rooms for the stay moved by each of {@code dayOffsets} calendar days, in one pass.
+     * Offsets with no free room are left out of the result.
+     */
+    SortedMap<Integer, Collection<IRoom>> findRoomsByOffset(Date checkInDate, Date checkOutDate, int[] dayOffsets);
+
+    /**
+     * Like {@link #findRoomsByOffset}, but with the ids of the free rooms, in ascending order.
+     */
+    SortedMap<Integer, int[]> findRoomIdsByOffset(Date checkInDate, Date checkOutDate, int[] dayOffsets);
+
+    /**
+     * Returns a read-only view of the stays booked in a room, ordered by check-in date.
+     */
+    NavigableMap<Date, Reservation> getStays(int roomId);
+
+    /**
+     * Returns a rough size in bytes of the index's own structures, leaving out the rooms and
+     * reservations it only points at. For monitoring; it is not kept exact.
+     */
+    long estimateMemoryBytes();
+
+    /**
+     * Turns the ids {@link #findRoomIdsByOffset} found into the rooms {@link #findRoomsByOffset} returns.
+     */
+    static SortedMap<Integer, Collection<IRoom>> roomsByOffset(RoomRegistry roomRegistry, SortedMap<Integer, int[]> roomIds) {
+        SortedMap<Integer, Collection<IRoom>> rooms = new TreeMap<>();
+        for (Map.Entry<Integer, int[]> entry : roomIds.entrySet()) {
+            rooms.put(entry.getKey(), roomRegistry.rooms(entry.getValue()));
+        }
+        return rooms;
+    }
+
+    static Date shiftDays(Date date, int days) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.add(Calendar.DATE, days);
+        return calendar.getTime();
+    }
+}
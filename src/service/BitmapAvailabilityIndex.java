@@ -0,0 +1,246 @@
+package service;
+
+import model.IRoom;
+import model.Reservation;
+
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps one occupancy bitmap per night, with one bit per room at its {@link RoomRegistry} id.
+ * A search over N nights ORs N bitmaps together and returns the rooms whose bit is still clear.
+ * <p>
+ * Nights only describe stays that start and end at midnight, which is all the menus produce.
+ * Any other date sends the query to an exact {@link IntervalAvailabilityIndex} kept alongside.
+ * <p>
+ * Searches read the bitmaps without locking. Rooms sharing a word are booked under different
+ * room locks, so bits are set atomically, and a night's bitmap only grows under its own monitor.
+ */
+public class BitmapAvailabilityIndex implements AvailabilityIndex {
+    private final EpochDays days;
+    private final RoomRegistry roomRegistry;
+    private final Map<Long, NightBitmap> nights = new ConcurrentHashMap<>();
+    private final IntervalAvailabilityIndex exact;
+    private volatile boolean hasPartialDayStays;
+
+    public BitmapAvailabilityIndex(RoomRegistry roomRegistry) {
+        this(roomRegistry, ZoneId.systemDefault());
+    }
+
+    public BitmapAvailabilityIndex(RoomRegistry roomRegistry, ZoneId zone) {
+        this.days = new EpochDays(zone);
+        this.roomRegistry = roomRegistry;
+        this.exact = new IntervalAvailabilityIndex(roomRegistry);
+    }
+
+    @Override
+    public void addReservation(int roomId, Reservation reservation) {
+        exact.addReservation(roomId, reservation);
+
+        Date checkIn = reservation.getCheckInDate();
+        Date checkOut = reservation.getCheckOutDate();
+        if (!isMidnight(checkIn) || !isMidnight(checkOut)) {
+            hasPartialDayStays = true;
+        }
+
+        long lastNight = lastNight(checkOut);
+        for (long night = firstNight(checkIn); night <= lastNight; night++) {
+            nights.computeIfAbsent(night, n -> new NightBitmap()).set(roomId);
+        }
+    }
+
+    /**
+     * Partial-day stays can share a night with a neighbour, so clearing one's bits could free the
+     * other's. That cannot go wrong here: once there is any such stay the bitmaps are never read again.
+     */
+    @Override
+    public void removeReservation(int roomId, Reservation reservation) {
+        exact.removeReservation(roomId, reservation);
+        // An empty keep range: every night of the stay is cleared
+        clearNights(roomId, firstNight(reservation.getCheckInDate()), lastNight(reservation.getCheckOutDate()), 1, 0);
+    }
+
+    @Override
+    public void replaceReservation(int roomId, Reservation previous, Reservation updated) {
+        addReservation(roomId, updated);
+        exact.removeReservation(roomId, previous);
+        clearNights(roomId, firstNight(previous.getCheckInDate()), lastNight(previous.getCheckOutDate()),
+                firstNight(updated.getCheckInDate()), lastNight(updated.getCheckOutDate()));
+    }
+
+    // Clears the room's bit on the nights from first to last, except those from keepFirst to keepLast
+    private void clearNights(int roomId, long first, long last, long keepFirst, long keepLast) {
+        for (long night = first; night <= last; night++) {
+            if (night >= keepFirst && night <= keepLast) {
+                continue;
+            }
+            NightBitmap bitmap = nights.get(night);
+            if (bitmap != null) {
+                bitmap.clear(roomId);
+            }
+        }
+    }
+
+    @Override
+    public NavigableMap<Date, Reservation> getStays(int roomId) {
+        return exact.getStays(roomId);
+    }
+
+    // Each night costs a map entry, its key and the bitmap objects, about 96 bytes before the words
+    @Override
+    public long estimateMemoryBytes() {
+        long bytes = exact.estimateMemoryBytes();
+        for (NightBitmap bitmap : nights.values()) {
+            bytes += 96 + 8L * bitmap.words.length();
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean isRoomAvailable(int roomId, Date checkInDate, Date checkOutDate) {
+        return exact.isRoomAvailable(roomId, checkInDate, checkOutDate);
+    }
+
+    @Override
+    public Collection<IRoom> findRooms(Date checkInDate, Date checkOutDate) {
+        return roomRegistry.rooms(findRoomIds(checkInDate, checkOutDate));
+    }
+
+    @Override
+    public int[] findRoomIds(Date checkInDate, Date checkOutDate) {
+        if (hasPartialDayStays || !isMidnight(checkInDate) || !isMidnight(checkOutDate)) {
+            return exact.findRoomIds(checkInDate, checkOutDate);
+        }
+
+        int roomCount = roomRegistry.size();
+        long[] booked = new long[(roomCount + 63) >>> 6];
+        long lastNight = lastNight(checkOutDate);
+        for (long night = firstNight(checkInDate); night <= lastNight; night++) {
+            NightBitmap bitmap = nights.get(night);
+            if (bitmap != null) {
+                bitmap.orInto(booked);
+            }
+        }
+
+        return freeRoomIds(booked, roomCount);
+    }
+
+    @Override
+    public SortedMap<Integer, Collection<IRoom>> findRoomsByOffset(Date checkInDate, Date checkOutDate, int[] dayOffsets) {
+        return AvailabilityIndex.roomsByOffset(roomRegistry, findRoomIdsByOffset(checkInDate, checkOutDate, dayOffsets));
+    }
+
+    @Override
+    public SortedMap<Integer, int[]> findRoomIdsByOffset(Date checkInDate, Date checkOutDate, int[] dayOffsets) {
+        if (hasPartialDayStays || !isMidnight(checkInDate) || !isMidnight(checkOutDate)) {
+            return exact.findRoomIdsByOffset(checkInDate, checkOutDate, dayOffsets);
+        }
+
+        SortedMap<Integer, int[]> availableRooms = new TreeMap<>();
+        if (dayOffsets.length == 0) {
+            return availableRooms;
+        }
+
+        int minOffset = Integer.MAX_VALUE;
+        int maxOffset = Integer.MIN_VALUE;
+        for (int offset : dayOffsets) {
+            minOffset = Math.min(minOffset, offset);
+            maxOffset = Math.max(maxOffset, offset);
+        }
+
+        // Look every night in the span up once; each shifted stay is a window into this array
+        long firstNight = firstNight(checkInDate);
+        int stayNights = (int) (lastNight(checkOutDate) - firstNight + 1);
+        NightBitmap[] span = new NightBitmap[maxOffset - minOffset + stayNights];
+        for (int i = 0; i < span.length; i++) {
+            span[i] = nights.get(firstNight + minOffset + i);
+        }
+
+        int roomCount = roomRegistry.size();
+        long[] booked = new long[(roomCount + 63) >>> 6];
+        for (int offset : dayOffsets) {
+            Arrays.fill(booked, 0);
+            for (int i = offset - minOffset; i < offset - minOffset + stayNights; i++) {
+                if (span[i] != null) {
+                    span[i].orInto(booked);
+                }
+            }
+            int[] rooms = freeRoomIds(booked, roomCount);
+            if (rooms.length > 0) {
+                availableRooms.put(offset, rooms);
+            }
+        }
+        return availableRooms;
+    }
+
+    // The ids below roomCount whose bit is clear, in ascending order; the columnar store shares it
+    static int[] freeRoomIds(long[] booked, int roomCount) {
+        int[] free = new int[roomCount];
+        int found = 0;
+        for (int i = 0; i < booked.length; i++) {
+            long word = ~booked[i];
+            while (word != 0) {
+                int roomId = (i << 6) + Long.numberOfTrailingZeros(word);
+                if (roomId >= roomCount) {
+                    break;
+                }
+                free[found++] = roomId;
+                word &= word - 1;
+            }
+        }
+        return Arrays.copyOf(free, found);
+    }
+
+    private boolean isMidnight(Date date) {
+        return days.isMidnight(date);
+    }
+
+    private long firstNight(Date checkIn) {
+        return days.floor(checkIn);
+    }
+
+    // A stay ending part way through a day still occupies that night
+    private long lastNight(Date checkOut) {
+        return days.ceil(checkOut) - 1;
+    }
+
+    private static class NightBitmap {
+        private volatile AtomicLongArray words = new AtomicLongArray(1);
+
+        void set(int roomId) {
+            int word = roomId >>> 6;
+            long bit = 1L << roomId;
+            synchronized (this) {
+                AtomicLongArray current = words;
+                if (word >= current.length()) {
+                    AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 2));
+                    for (int i = 0; i < current.length(); i++) {
+                        grown.set(i, current.get(i));
+                    }
+                    words = grown;
+                    current = grown;
+                }
+                current.getAndAccumulate(word, bit, (a, b) -> a | b);
+            }
+        }
+
+        // Under the monitor, like set, so a concurrent grow cannot copy the word from before the clear
+        synchronized void clear(int roomId) {
+            int word = roomId >>> 6;
+            AtomicLongArray current = words;
+            if (word < current.length()) {
+                current.getAndAccumulate(word, ~(1L << roomId), (a, b) -> a & b);
+            }
+        }
+
+        void orInto(long[] booked) {
+            AtomicLongArray current = words;
+            int length = Math.min(booked.length, current.length());
+            for (int i = 0; i < length; i++) {
+                booked[i] |= current.get(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A {@link NightTree} that writers never wait for a query on. A write only appends its change to
+ * one of several buffers, one per {@link RoomPartitions} partition, so the writers of each
+ * partition keep to their own; the tree itself is touched only under its lock, by whoever first
+ * applies every buffered change. Adds commute, so the order they are applied in does not matter.
+ * <p>
+ * A query takes the lock and empties the buffers before reading, so it sees every write that
+ * returned before it started. A writer that finds its buffer long and the lock free empties them
+ * too, so they stay short when nobody queries.
+ */
+final class BufferedNightTree {
+    private static final int APPLY_AT = 64;
+
+    private final NightTree tree = new NightTree();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Buffer[] buffers;
+    private final int mask;
+
+    // Changes as parallel columns, so a write allocates nothing until the buffer has to grow.
+    // Guarded by the buffer's monitor; taken only after the tree's lock, never before it
+    private static final class Buffer {
+        long[] from = new long[APPLY_AT];
+        long[] to = new long[APPLY_AT];
+        long[] delta = new long[APPLY_AT];
+        int size;
+    }
+
+    BufferedNightTree(int partitionCount) {
+        if (Integer.bitCount(partitionCount) != 1) {
+            throw new IllegalArgumentException("Partition count must be a power of two");
+        }
+        this.buffers = new Buffer[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            buffers[i] = new Buffer();
+        }
+        this.mask = partitionCount - 1;
+    }
+
+    /**
+     * Adds {@code delta} to each night in [from, to) for a stay in room {@code roomId}.
+     */
+    void add(int roomId, long from, long to, long delta) {
+        if (from >= to) {
+            return;
+        }
+        Buffer buffer = buffers[roomId & mask];
+        int size;
+        synchronized (buffer) {
+            size = buffer.size;
+            if (size == buffer.from.length) {
+                buffer.from = Arrays.copyOf(buffer.from, size * 2);
+                buffer.to = Arrays.copyOf(buffer.to, size * 2);
+                buffer.delta = Arrays.copyOf(buffer.delta, size * 2);
+            }
+            buffer.from[size] = from;
+            buffer.to[size] = to;
+            buffer.delta[size] = delta;
+            buffer.size = ++size;
+        }
+        if (size >= APPLY_AT && lock.tryLock()) {
+            try {
+                applyBuffered();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Runs {@code query} on the tree with every buffered change applied, under the lock.
+     */
+    <T> T read(Function<NightTree, T> query) {
+        lock.lock();
+        try {
+            applyBuffered();
+            return query.apply(tree);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held
+    private void applyBuffered() {
+        for (Buffer buffer : buffers) {
+            synchronized (buffer) {
+                for (int i = 0; i < buffer.size; i++) {
+                    // A stay the tree cannot cover is dropped rather than failing every later read
+                    if (tree.fits(buffer.from[i], buffer.to[i])) {
+                        tree.add(buffer.from[i], buffer.to[i], buffer.delta[i]);
+                    }
+                }
+                buffer.size = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,705 @@
+package service;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores reservations as rows of primitive columns instead of {@link Reservation} objects: id, room id,
+ * customer id, and check-in and check-out as epoch days. Rooms keep their {@link RoomRegistry} id,
+ * customers get dense int ids here, and each row also links to the previous row of the same room
+ * and of the same customer, so one room's or one customer's rows can be walked without scanning
+ * the rest. Each room also keeps its live rows in check-in order in a {@link PersistentTree}, so a
+ * room's availability is a search of O(log n) and a write copies only the path to the row it
+ * changes. {@code Reservation} objects are only built when a caller asks for them.
+ * <p>
+ * A row costs a long and seven ints, against a {@code Reservation}, two {@code Date}s and their
+ * index entries for the object store. Whole-table overlap checks such as {@link #findRooms} are a
+ * single loop over the int columns.
+ * <p>
+ * Rows are whole days, so only stays that start and end at midnight can be stored; queries may
+ * use any time. This store is both the {@link AvailabilityIndex} and the {@link ReservationStore}
+ * of the service, and rows are added through {@link #add}.
+ * <p>
+ * Rows are never changed once written, apart from being marked deleted with the version that
+ * deleted them. A move appends the new row and deletes the old one in the same version. Writers
+ * are serialized on this object and finish each write by publishing a {@link View}: the version,
+ * how many rows it covers and the columns holding them. Readers never lock: every read works from
+ * the latest view, which is also what {@link #view} hands out, and sees a row if it is below the
+ * view's row count and not deleted by the view's version. So a read sees each write entirely or
+ * not at all, and a moved stay is never seen twice or missing. A room's sorted rows are replaced by
+ * every write to the room and tagged with its version; a read whose view is older than that walks
+ * the room's chain of rows instead.
+ * <p>
+ * Once deleted rows outnumber live ones, a write compacts: it copies the live rows into new
+ * columns, renumbered, and publishes a view of those. Views taken before keep the old columns,
+ * which are left untouched and freed once the last such view is dropped.
+ */
+public class ColumnarReservationStore implements AvailabilityIndex, ReservationStore {
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle ROOM_ROWS = MethodHandles.arrayElementVarHandle(RoomRows[].class);
+    private static final int NONE = -1;
+    private static final int LIVE = 0;
+    private static final int INITIAL_ROWS = 1024;
+
+    private final EpochDays days;
+    private final RoomRegistry roomRegistry;
+    private final Map<String, Integer> customerIds = new ConcurrentHashMap<>();
+    // Current row of each reservation id; shared with the other partitions' stores, if any
+    private final ReservationLocations locations;
+    private final int partition;
+    private final int partitionCount;
+    private volatile Columns columns = new Columns(INITIAL_ROWS, 64, 64);
+    private volatile View head = new View(0, 0, 0, 0, columns);
+    // Odd while a compaction renumbers rows; lets get() read without the monitor the rest of the time
+    private volatile int compactions;
+    // Compares by the current columns, so only writers may insert or remove; reads only search
+    private final PersistentTree<Integer> noRows = PersistentTree.empty(
+            (first, second) -> Integer.compare(columns.checkIn[first], columns.checkIn[second]));
+
+    public ColumnarReservationStore(RoomRegistry roomRegistry) {
+        this(roomRegistry, ZoneId.systemDefault());
+    }
+
+    public ColumnarReservationStore(RoomRegistry roomRegistry, ZoneId zone) {
+        this(roomRegistry, zone, new ReservationLocations(1), 0, 1);
+    }
+
+    /**
+     * A store for one of {@code partitionCount} partitions, recording its rows in the
+     * {@code locations} that all of them share.
+     */
+    ColumnarReservationStore(RoomRegistry roomRegistry, ReservationLocations locations, int partition, int partitionCount) {
+        this(roomRegistry, ZoneId.systemDefault(), locations, partition, partitionCount);
+    }
+
+    private ColumnarReservationStore(RoomRegistry roomRegistry, ZoneId zone, ReservationLocations locations,
+                                     int partition, int partitionCount) {
+        this.days = new EpochDays(zone);
+        this.roomRegistry = roomRegistry;
+        this.locations = locations;
+        this.partition = partition;
+        this.partitionCount = partitionCount;
+    }
+
+    /**
+     * One room's live rows as of {@link #version}, in check-in order. Stays in a room never
+     * overlap, so check-outs are in the same order and either can be searched.
+     */
+    private static final class RoomRows {
+        final PersistentTree<Integer> rows;
+        final int version;
+
+        RoomRows(PersistentTree<Integer> rows, int version) {
+            this.rows = rows;
+            this.version = version;
+        }
+    }
+
+    private static final class Columns {
+        final long[] id;
+        final int[] room;
+        final int[] customer;
+        final int[] checkIn;
+        final int[] checkOut;
+        final int[] previousInRoom;
+        final int[] previousForCustomer;
+        final int[] deleted;
+        final int[] lastRowOfRoom;
+        final RoomRows[] roomRows;
+        final int[] lastRowOfCustomer;
+        final Customer[] customers;
+
+        Columns(int rowCapacity, int roomCapacity, int customerCapacity) {
+            id = new long[rowCapacity];
+            room = new int[rowCapacity];
+            customer = new int[rowCapacity];
+            checkIn = new int[rowCapacity];
+            checkOut = new int[rowCapacity];
+            previousInRoom = new int[rowCapacity];
+            previousForCustomer = new int[rowCapacity];
+            deleted = new int[rowCapacity];
+            lastRowOfRoom = new int[roomCapacity];
+            Arrays.fill(lastRowOfRoom, NONE);
+            roomRows = new RoomRows[roomCapacity];
+            lastRowOfCustomer = new int[customerCapacity];
+            customers = new Customer[customerCapacity];
+        }
+
+        Columns(Columns old, int rowCapacity, int roomCapacity, int customerCapacity) {
+            id = Arrays.copyOf(old.id, rowCapacity);
+            room = Arrays.copyOf(old.room, rowCapacity);
+            customer = Arrays.copyOf(old.customer, rowCapacity);
+            checkIn = Arrays.copyOf(old.checkIn, rowCapacity);
+            checkOut = Arrays.copyOf(old.checkOut, rowCapacity);
+            previousInRoom = Arrays.copyOf(old.previousInRoom, rowCapacity);
+            previousForCustomer = Arrays.copyOf(old.previousForCustomer, rowCapacity);
+            deleted = Arrays.copyOf(old.deleted, rowCapacity);
+            lastRowOfRoom = Arrays.copyOf(old.lastRowOfRoom, roomCapacity);
+            Arrays.fill(lastRowOfRoom, old.lastRowOfRoom.length, roomCapacity, NONE);
+            roomRows = Arrays.copyOf(old.roomRows, roomCapacity);
+            lastRowOfCustomer = Arrays.copyOf(old.lastRowOfCustomer, customerCapacity);
+            customers = Arrays.copyOf(old.customers, customerCapacity);
+        }
+    }
+
+    /**
+     * Rows are added through {@link #add}, which the service also calls for every reservation.
+     */
+    @Override
+    public void addReservation(int roomId, Reservation reservation) {
+    }
+
+    /**
+     * Rows are removed through {@link #remove}.
+     */
+    @Override
+    public void removeReservation(int roomId, Reservation reservation) {
+    }
+
+    /**
+     * Rows are moved through {@link #replace}.
+     */
+    @Override
+    public void replaceReservation(int roomId, Reservation previous, Reservation updated) {
+    }
+
+    @Override
+    public synchronized void add(int roomId, Reservation reservation) {
+        checkWholeDays(reservation);
+        View last = head;
+        int row = appendRow(last.rows, roomId, reservation);
+        updateRoomRows(roomId, last.version + 1, NONE, row);
+        publish(last.version + 1, last.rows + 1, last.live + 1, customerIds.size());
+    }
+
+    // Every row is appended under one version, so the single view published covers them all
+    @Override
+    public synchronized void addAll(int[] roomIds, List<Reservation> reservations) {
+        for (Reservation reservation : reservations) {
+            checkWholeDays(reservation);
+        }
+        View last = head;
+        for (int i = 0; i < roomIds.length; i++) {
+            int row = appendRow(last.rows + i, roomIds[i], reservations.get(i));
+            updateRoomRows(roomIds[i], last.version + 1, NONE, row);
+        }
+        publish(last.version + 1, last.rows + roomIds.length, last.live + roomIds.length, customerIds.size());
+    }
+
+    @Override
+    public synchronized void remove(int roomId, Reservation reservation) {
+        int row = rowOf(reservation.getId());
+        if (row == NONE) {
+            return;
+        }
+        locations.clear(reservation.getId());
+        View last = head;
+        columns.deleted[row] = last.version + 1;
+        updateRoomRows(roomId, last.version + 1, row, NONE);
+        publish(last.version + 1, last.rows, last.live - 1, last.customers);
+        compactIfSparse();
+    }
+
+    @Override
+    public synchronized void replace(int roomId, Reservation previous, Reservation updated) {
+        checkWholeDays(updated);
+        int row = rowOf(updated.getId());
+        if (row == NONE) {
+            throw new IllegalArgumentException("Reservation " + updated.getId() + " does not exist");
+        }
+
+        View last = head;
+        int added = appendRow(last.rows, roomId, updated);
+        columns.deleted[row] = last.version + 1;
+        updateRoomRows(roomId, last.version + 1, row, added);
+        publish(last.version + 1, last.rows + 1, last.live, last.customers);
+        compactIfSparse();
+    }
+
+    // Called with the monitor held; the view of the current columns for 'version'
+    private void publish(int version, int rows, int live, int customers) {
+        head = new View(version, rows, live, customers, columns);
+    }
+
+    // Called with the monitor held; the row stays invisible until the next view is published
+    private int appendRow(int row, int roomId, Reservation reservation) {
+        Integer customerId = customerIds.get(reservation.getCustomer().getEmail());
+        int customers = customerIds.size();
+        Columns current = ensureCapacity(row + 1, roomId + 1, customers + 1);
+        if (customerId == null) {
+            customerId = customers;
+            current.customers[customerId] = reservation.getCustomer();
+            INTS.setRelease(current.lastRowOfCustomer, customerId, NONE);
+            customerIds.put(reservation.getCustomer().getEmail(), customerId);
+        }
+
+        current.id[row] = reservation.getId();
+        current.room[row] = roomId;
+        current.customer[row] = customerId;
+        current.checkIn[row] = (int) days.floor(reservation.getCheckInDate());
+        current.checkOut[row] = (int) days.floor(reservation.getCheckOutDate());
+        current.deleted[row] = LIVE;
+        current.previousInRoom[row] = (int) INTS.getAcquire(current.lastRowOfRoom, roomId);
+        current.previousForCustomer[row] = (int) INTS.getAcquire(current.lastRowOfCustomer, customerId);
+        INTS.setRelease(current.lastRowOfRoom, roomId, row);
+        INTS.setRelease(current.lastRowOfCustomer, customerId, row);
+        locations.set(reservation.getId(), partition, row);
+        return row;
+    }
+
+    /**
+     * Publishes the room's sorted rows for {@code version}, without {@code removedRow} and with
+     * {@code addedRow}; either may be NONE. Called with the monitor held, before the view for
+     * {@code version}. The room's previous rows were all live, since every removal replaces them.
+     */
+    private void updateRoomRows(int roomId, int version, int removedRow, int addedRow) {
+        Columns current = columns;
+        RoomRows previous = (RoomRows) ROOM_ROWS.getAcquire(current.roomRows, roomId);
+        PersistentTree<Integer> rows = previous == null ? noRows : previous.rows;
+        // Removed first: the added row may start on the same day
+        if (removedRow != NONE) {
+            rows = rows.remove(removedRow);
+        }
+        if (addedRow != NONE) {
+            rows = rows.insert(addedRow);
+        }
+        ROOM_ROWS.setRelease(current.roomRows, roomId, new RoomRows(rows, version));
+    }
+
+    // Called with the monitor held, after a removal or a move has been published
+    private void compactIfSparse() {
+        View last = head;
+        if (last.rows - last.live > Math.max(INITIAL_ROWS, last.live)) {
+            compact(last);
+        }
+    }
+
+    /**
+     * Copies the live rows into new columns in their current order, relinks the chains, points the
+     * id lookup at the new rows and publishes a view of them. The old columns are not written
+     * again, so views of them stay valid for as long as they are held.
+     */
+    private void compact(View last) {
+        Columns old = columns;
+        int version = last.version + 1;
+        compactions++;
+        Columns compacted = new Columns(Math.max(INITIAL_ROWS, 2 * last.live), old.lastRowOfRoom.length,
+                old.customers.length);
+        System.arraycopy(old.customers, 0, compacted.customers, 0, old.customers.length);
+        Arrays.fill(compacted.lastRowOfCustomer, NONE);
+        int row = 0;
+        for (int from = 0; from < last.rows; from++) {
+            if (old.deleted[from] != LIVE) {
+                continue;
+            }
+            int roomId = old.room[from];
+            int customerId = old.customer[from];
+            compacted.id[row] = old.id[from];
+            compacted.room[row] = roomId;
+            compacted.customer[row] = customerId;
+            compacted.checkIn[row] = old.checkIn[from];
+            compacted.checkOut[row] = old.checkOut[from];
+            compacted.previousInRoom[row] = compacted.lastRowOfRoom[roomId];
+            compacted.previousForCustomer[row] = compacted.lastRowOfCustomer[customerId];
+            compacted.lastRowOfRoom[roomId] = row;
+            compacted.lastRowOfCustomer[customerId] = row;
+            locations.set(old.id[from], partition, row);
+            row++;
+        }
+
+        // The order compares through the columns field, so it must name the new rows first
+        columns = compacted;
+        for (int roomId = 0; roomId < compacted.roomRows.length; roomId++) {
+            if (old.roomRows[roomId] == null) {
+                continue;
+            }
+            PersistentTree<Integer> rows = noRows;
+            for (int live = compacted.lastRowOfRoom[roomId]; live != NONE; live = compacted.previousInRoom[live]) {
+                rows = rows.insert(live);
+            }
+            compacted.roomRows[roomId] = new RoomRows(rows, version);
+        }
+        head = new View(version, row, row, last.customers, compacted);
+        compactions++;
+    }
+
+    private int rowOf(long reservationId) {
+        int row = locations.localOf(reservationId, partition);
+        return row == ReservationLocations.NONE ? NONE : row;
+    }
+
+    @Override
+    public Reservation get(long reservationId) {
+        // The row first, then the columns, which are then at least as new as it. A read that
+        // overlapped a compaction may have mixed old and new row numbers, so it reads again locked
+        int stamp = compactions;
+        if ((stamp & 1) == 0) {
+            int row = rowOf(reservationId);
+            Columns current = columns;
+            VarHandle.acquireFence();
+            if (compactions == stamp) {
+                return row == NONE ? null : toReservation(current, row);
+            }
+        }
+        synchronized (this) {
+            int row = rowOf(reservationId);
+            return row == NONE ? null : toReservation(columns, row);
+        }
+    }
+
+    /**
+     * Views are immutable, so every caller shares the one published by the last write.
+     */
+    @Override
+    public ReservationView view() {
+        return head;
+    }
+
+    /**
+     * The columns, at their allocated capacity, each live row's node in its room's tree, the
+     * customer lookup and this partition's share of the id lookup. Both interfaces ask for this one number, since the columns are both the index
+     * and the store.
+     */
+    @Override
+    public long estimateMemoryBytes() {
+        Columns current = columns;
+        int rowCapacity = current.room.length;
+        return 16L * 12 + (8L + 4 * 7) * rowCapacity + 28L * current.lastRowOfRoom.length + 48L * head.live
+                + 8L * current.customers.length + locations.estimateMemoryBytes() / partitionCount
+                + 48L * customerIds.size();
+    }
+
+    private void checkWholeDays(Reservation reservation) {
+        if (!days.isMidnight(reservation.getCheckInDate()) || !days.isMidnight(reservation.getCheckOutDate())) {
+            throw new IllegalArgumentException("The columnar store only holds stays that start and end at midnight");
+        }
+    }
+
+    @Override
+    public boolean isRoomAvailable(int roomId, Date checkInDate, Date checkOutDate) {
+        return head.isRoomAvailable(roomId, checkInDate, checkOutDate);
+    }
+
+    @Override
+    public boolean isRoomAvailableExcept(int roomId, long reservationId, Date checkInDate, Date checkOutDate) {
+        return !head.overlapsStay(roomId, reservationId, checkInDate, checkOutDate);
+    }
+
+    @Override
+    public Collection<IRoom> findRooms(Date checkInDate, Date checkOutDate) {
+        return roomRegistry.rooms(findRoomIds(checkInDate, checkOutDate));
+    }
+
+    @Override
+    public int[] findRoomIds(Date checkInDate, Date checkOutDate) {
+        return head.findRoomIds(checkInDate, checkOutDate);
+    }
+
+    @Override
+    public SortedMap<Integer, Collection<IRoom>> findRoomsByOffset(Date checkInDate, Date checkOutDate, int[] dayOffsets) {
+        return AvailabilityIndex.roomsByOffset(roomRegistry, findRoomIdsByOffset(checkInDate, checkOutDate, dayOffsets));
+    }
+
+    @Override
+    public SortedMap<Integer, int[]> findRoomIdsByOffset(Date checkInDate, Date checkOutDate, int[] dayOffsets) {
+        return head.findRoomIdsByOffset(checkInDate, checkOutDate, dayOffsets);
+    }
+
+    /**
+     * Builds the map on each call; availability checks search the room's sorted rows instead.
+     */
+    @Override
+    public NavigableMap<Date, Reservation> getStays(int roomId) {
+        NavigableMap<Date, Reservation> stays = new TreeMap<>();
+        for (Reservation reservation : head.getStays(roomId)) {
+            stays.put(reservation.getCheckInDate(), reservation);
+        }
+        return Collections.unmodifiableNavigableMap(stays);
+    }
+
+    /**
+     * Everything as of one write: the rows below {@link #rows} in {@link #current} that
+     * {@link #version} had not deleted.
+     */
+    private final class View implements ReservationView {
+        final int version;
+        final int rows;
+        final int live;
+        final int customers;
+        final Columns current;
+
+        View(int version, int rows, int live, int customers, Columns current) {
+            this.version = version;
+            this.rows = rows;
+            this.live = live;
+            this.customers = customers;
+            this.current = current;
+        }
+
+        private boolean isVisible(int row) {
+            int deletedBy = current.deleted[row];
+            return deletedBy == LIVE || deletedBy > version;
+        }
+
+        // Rows at or past the view's count were added later; chains run newest first, so skip them
+        private int visibleFrom(int row) {
+            while (row >= rows) {
+                row = current.previousInRoom[row];
+            }
+            return row;
+        }
+
+        // The room's sorted rows, or null if a write newer than this view replaced them
+        private PersistentTree<Integer> sortedRows(int roomId) {
+            if (roomId >= current.roomRows.length) {
+                return noRows;
+            }
+            RoomRows sorted = (RoomRows) ROOM_ROWS.getAcquire(current.roomRows, roomId);
+            if (sorted == null) {
+                return noRows;
+            }
+            return sorted.version <= version ? sorted.rows : null;
+        }
+
+        @Override
+        public boolean isRoomAvailable(int roomId, Date checkInDate, Date checkOutDate) {
+            return !overlapsStay(roomId, NONE, checkInDate, checkOutDate);
+        }
+
+        // Whether a stay other than 'ignoredId' overlaps the dates
+        boolean overlapsStay(int roomId, long ignoredId, Date checkInDate, Date checkOutDate) {
+            int start = (int) days.floor(checkInDate);
+            int end = (int) days.ceil(checkOutDate);
+            PersistentTree<Integer> sorted = sortedRows(roomId);
+            if (sorted == null) {
+                for (int row = visibleFrom(lastRowOfRoom(current, roomId)); row != NONE; row = current.previousInRoom[row]) {
+                    if (current.checkIn[row] < end && current.checkOut[row] > start && isVisible(row)
+                            && current.id[row] != ignoredId) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            // Only the first stay ending after the check-in can overlap, or the one after it if that is ignored
+            Integer row = sorted.first(candidate -> current.checkOut[candidate] <= start);
+            if (row != null && current.id[row] == ignoredId) {
+                int ignoredEnd = current.checkOut[row];
+                row = sorted.first(candidate -> current.checkOut[candidate] <= ignoredEnd);
+            }
+            return row != null && current.checkIn[row] < end;
+        }
+
+        int[] findRoomIds(Date checkInDate, Date checkOutDate) {
+            // Rooms are counted after the view: every room its rows refer to was registered before them
+            int roomCount = roomRegistry.size();
+            int start = (int) days.floor(checkInDate);
+            int end = (int) days.ceil(checkOutDate);
+
+            long[] booked = new long[(roomCount + 63) >>> 6];
+            int[] room = current.room;
+            int[] checkIn = current.checkIn;
+            int[] checkOut = current.checkOut;
+            for (int row = 0; row < rows; row++) {
+                if (checkIn[row] < end && checkOut[row] > start && isVisible(row)) {
+                    booked[room[row] >>> 6] |= 1L << room[row];
+                }
+            }
+
+            return BitmapAvailabilityIndex.freeRoomIds(booked, roomCount);
+        }
+
+        SortedMap<Integer, int[]> findRoomIdsByOffset(Date checkInDate, Date checkOutDate, int[] dayOffsets) {
+            SortedMap<Integer, int[]> availableRooms = new TreeMap<>();
+            if (dayOffsets.length == 0) {
+                return availableRooms;
+            }
+
+            int roomCount = roomRegistry.size();
+            int[] starts = new int[dayOffsets.length];
+            int[] ends = new int[dayOffsets.length];
+            int spanStart = Integer.MAX_VALUE;
+            int spanEnd = Integer.MIN_VALUE;
+            for (int i = 0; i < dayOffsets.length; i++) {
+                starts[i] = (int) days.floor(AvailabilityIndex.shiftDays(checkInDate, dayOffsets[i]));
+                ends[i] = (int) days.ceil(AvailabilityIndex.shiftDays(checkOutDate, dayOffsets[i]));
+                spanStart = Math.min(spanStart, starts[i]);
+                spanEnd = Math.max(spanEnd, ends[i]);
+            }
+
+            long[][] booked = new long[dayOffsets.length][(roomCount + 63) >>> 6];
+            for (int row = 0; row < rows; row++) {
+                int in = current.checkIn[row];
+                int out = current.checkOut[row];
+                if (in >= spanEnd || out <= spanStart || !isVisible(row)) {
+                    continue;
+                }
+                int roomId = current.room[row];
+                for (int i = 0; i < dayOffsets.length; i++) {
+                    if (in < ends[i] && out > starts[i]) {
+                        booked[i][roomId >>> 6] |= 1L << roomId;
+                    }
+                }
+            }
+
+            for (int i = 0; i < dayOffsets.length; i++) {
+                int[] rooms = BitmapAvailabilityIndex.freeRoomIds(booked[i], roomCount);
+                if (rooms.length > 0) {
+                    availableRooms.put(dayOffsets[i], rooms);
+                }
+            }
+            return availableRooms;
+        }
+
+        @Override
+        public List<Reservation> getStays(int roomId) {
+            PersistentTree<Integer> sorted = sortedRows(roomId);
+            if (sorted != null) {
+                List<Reservation> stays = new ArrayList<>(sorted.size());
+                for (Iterator<Integer> ordered = sorted.iterator(); ordered.hasNext(); ) {
+                    stays.add(toReservation(current, ordered.next()));
+                }
+                return Collections.unmodifiableList(stays);
+            }
+
+            List<Reservation> stays = new ArrayList<>();
+            for (int row = visibleFrom(lastRowOfRoom(current, roomId)); row != NONE; row = current.previousInRoom[row]) {
+                if (isVisible(row)) {
+                    stays.add(toReservation(current, row));
+                }
+            }
+            // Moves append rows out of date order
+            stays.sort(Comparator.comparing(Reservation::getCheckInDate));
+            return Collections.unmodifiableList(stays);
+        }
+
+        @Override
+        public Iterator<Reservation> staysInRange(int roomId, Date from, Date to) {
+            PersistentTree<Integer> sorted = sortedRows(roomId);
+            if (sorted == null) {
+                return ReservationView.super.staysInRange(roomId, from, to);
+            }
+            int firstDay = from == null ? Integer.MIN_VALUE : (int) days.floor(from);
+            int end = to == null ? Integer.MAX_VALUE : (int) days.ceil(to);
+            Iterator<Integer> sortedFrom = sorted.iterator(row -> current.checkOut[row] <= firstDay);
+            return new Iterator<Reservation>() {
+                private Integer next = sortedFrom.hasNext() ? sortedFrom.next() : null;
+
+                @Override
+                public boolean hasNext() {
+                    return next != null && current.checkIn[next] < end;
+                }
+
+                @Override
+                public Reservation next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Reservation reservation = toReservation(current, next);
+                    next = sortedFrom.hasNext() ? sortedFrom.next() : null;
+                    return reservation;
+                }
+            };
+        }
+
+        @Override
+        public Collection<Reservation> getCustomerReservations(String customerEmail) {
+            Integer customerId = customerEmail == null ? null : customerIds.get(customerEmail);
+            if (customerId == null || customerId >= customers) {
+                return Collections.emptyList();
+            }
+
+            List<Reservation> reservations = new ArrayList<>();
+            int row = (int) INTS.getAcquire(current.lastRowOfCustomer, customerId);
+            for (; row != NONE; row = current.previousForCustomer[row]) {
+                if (row < rows && isVisible(row)) {
+                    reservations.add(toReservation(current, row));
+                }
+            }
+            reservations.sort(Comparator.comparingLong(Reservation::getId));
+            return Collections.unmodifiableList(reservations);
+        }
+
+        @Override
+        public Set<String> getCustomerEmails() {
+            Set<String> emails = new HashSet<>();
+            for (int customerId = 0; customerId < customers; customerId++) {
+                int row = (int) INTS.getAcquire(current.lastRowOfCustomer, customerId);
+                for (; row != NONE; row = current.previousForCustomer[row]) {
+                    if (row < rows && isVisible(row)) {
+                        emails.add(current.customers[customerId].getEmail());
+                        break;
+                    }
+                }
+            }
+            return Collections.unmodifiableSet(emails);
+        }
+
+        @Override
+        public int size() {
+            return live;
+        }
+
+        @Override
+        public Iterator<Reservation> iterator() {
+            return new Iterator<Reservation>() {
+                private int row = nextVisible(0);
+
+                private int nextVisible(int from) {
+                    while (from < rows && !isVisible(from)) {
+                        from++;
+                    }
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return row < rows;
+                }
+
+                @Override
+                public Reservation next() {
+                    if (row >= rows) {
+                        throw new NoSuchElementException();
+                    }
+                    Reservation reservation = toReservation(current, row);
+                    row = nextVisible(row + 1);
+                    return reservation;
+                }
+            };
+        }
+    }
+
+    // A room with no rows yet may be past the end of the chain heads
+    private static int lastRowOfRoom(Columns current, int roomId) {
+        return roomId < current.lastRowOfRoom.length ? (int) INTS.getAcquire(current.lastRowOfRoom, roomId) : NONE;
+    }
+
+    private Reservation toReservation(Columns current, int row) {
+        return new Reservation(current.id[row], current.customers[current.customer[row]],
+                roomRegistry.room(current.room[row]), days.toDate(current.checkIn[row]), days.toDate(current.checkOut[row]));
+    }
+
+    // Called with the monitor held; publishes a larger copy when any column is full
+    private Columns ensureCapacity(int rows, int rooms, int customers) {
+        Columns current = columns;
+        if (rows <= current.room.length && rooms <= current.lastRowOfRoom.length && customers <= current.customers.length) {
+            return current;
+        }
+        Columns grown = new Columns(current, grow(current.room.length, rows),
+                grow(current.lastRowOfRoom.length, rooms), grow(current.customers.length, customers));
+        columns = grown;
+        return grown;
+    }
+
+    private static int grow(int capacity, int needed) {
+        return needed <= capacity ? capacity : Math.max(needed, capacity * 2);
+    }
+}
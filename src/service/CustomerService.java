@@ -1,11 +1,27 @@
 package service;
 
 import model.Customer;
+import persistence.ReservationJournal;
+
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Customers by email. Every write is also published as a new immutable list of all customers,
+ * so {@link #getAllCustomers} hands out one consistent state without locking or copying, however
+ * many are being added meanwhile.
+ */
 public class CustomerService {
     private static final CustomerService instance = new CustomerService();
-    private final Map<String, Customer> customers = new HashMap<>();
+    private final Map<String, Customer> customers = new ConcurrentHashMap<>();
+    // Each email keeps the slot it was first given; registering it again replaces the slot's customer
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final AtomicReference<CustomerList> allCustomers =
+            new AtomicReference<>(new CustomerList(PersistentArray.empty(), 0, 0));
+    private volatile ReservationJournal journal;
 
     private CustomerService() {}
 
@@ -13,20 +29,137 @@ public class CustomerService {
         return instance;
     }
 
+    public void setJournal(ReservationJournal journal) {
+        this.journal = journal;
+    }
+
     public void addCustomer(String email, String firstName, String lastName) {
         try {
             Customer customer = new Customer(firstName, lastName, email);
-            customers.put(email, customer);
+            ReservationJournal journal = this.journal;
+            if (journal == null) {
+                put(customer);
+                return;
+            }
+
+            // Log inside compute so the journal sees updates to one email in the same order as the map.
+            // The list is published first, so a snapshot that starts past the record also lists the
+            // customer; bookings look customers up in the map, which only changes once it is logged
+            long[] journalPosition = new long[1];
+            customers.compute(email, (key, previous) -> {
+                publish(customer);
+                journalPosition[0] = journal.logCustomer(customer);
+                return customer;
+            });
+            journal.awaitDurable(journalPosition[0]);
         } catch (IllegalArgumentException e) {
             throw e;
         }
     }
 
+    /**
+     * Adds already validated customers in bulk and waits for the journal once for the whole batch.
+     */
+    public void addCustomers(List<Customer> newCustomers) {
+        ReservationJournal journal = this.journal;
+        long[] journalPosition = new long[1];
+        for (Customer customer : newCustomers) {
+            if (journal == null) {
+                put(customer);
+            } else {
+                customers.compute(customer.getEmail(), (key, previous) -> {
+                    publish(customer);
+                    journalPosition[0] = journal.logCustomer(customer);
+                    return customer;
+                });
+            }
+        }
+        if (journal != null) {
+            journal.awaitDurable(journalPosition[0]);
+        }
+    }
+
+    /**
+     * Adds a customer read back from a snapshot or the journal, without logging it again.
+     */
+    public void restoreCustomer(Customer customer) {
+        put(customer);
+    }
+
+    private void put(Customer customer) {
+        customers.compute(customer.getEmail(), (key, previous) -> {
+            publish(customer);
+            return customer;
+        });
+    }
+
+    // Called inside compute, so writes to one email are published in the order the map takes them
+    private void publish(Customer customer) {
+        int slot = slots.computeIfAbsent(customer.getEmail(), key -> nextSlot.getAndIncrement());
+        allCustomers.updateAndGet(list -> list.with(slot, customer));
+    }
+
     public Customer getCustomer(String customerEmail) {
         return customers.get(customerEmail);
     }
 
+    /**
+     * Returns every customer as of now, in the order they were first added. Later additions are
+     * not seen.
+     */
     public Collection<Customer> getAllCustomers() {
-        return customers.values();
+        return allCustomers.get();
+    }
+
+    // Slots taken by a writer that has not published yet are empty, and skipped
+    private static final class CustomerList extends AbstractCollection<Customer> {
+        private final PersistentArray<Customer> bySlot;
+        private final int slotCount;
+        private final int size;
+
+        CustomerList(PersistentArray<Customer> bySlot, int slotCount, int size) {
+            this.bySlot = bySlot;
+            this.slotCount = slotCount;
+            this.size = size;
+        }
+
+        CustomerList with(int slot, Customer customer) {
+            return new CustomerList(bySlot.set(slot, customer), Math.max(slotCount, slot + 1),
+                    bySlot.get(slot) == null ? size + 1 : size);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Customer> iterator() {
+            return new Iterator<Customer>() {
+                private int slot = nextFilled(0);
+
+                private int nextFilled(int from) {
+                    while (from < slotCount && bySlot.get(from) == null) {
+                        from++;
+                    }
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return slot < slotCount;
+                }
+
+                @Override
+                public Customer next() {
+                    if (slot >= slotCount) {
+                        throw new NoSuchElementException();
+                    }
+                    Customer customer = bySlot.get(slot);
+                    slot = nextFilled(slot + 1);
+                    return customer;
+                }
+            };
+        }
     }
 }
\ No newline at end of file
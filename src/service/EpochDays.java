@@ -0,0 +1,44 @@
+package service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Converts between dates and whole days counted from 1970-01-01 in one time zone.
+ */
+public class EpochDays {
+    private final ZoneId zone;
+
+    public EpochDays(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * The day containing {@code date}.
+     */
+    public long floor(Date date) {
+        return toLocalDate(date).toEpochDay();
+    }
+
+    /**
+     * The first day starting at or after {@code date}.
+     */
+    public long ceil(Date date) {
+        long day = floor(date);
+        return isMidnight(date) ? day : day + 1;
+    }
+
+    public boolean isMidnight(Date date) {
+        return toLocalDate(date).atStartOfDay(zone).toInstant().toEpochMilli() == date.getTime();
+    }
+
+    public Date toDate(long epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant());
+    }
+
+    private LocalDate toLocalDate(Date date) {
+        return Instant.ofEpochMilli(date.getTime()).atZone(zone).toLocalDate();
+    }
+}
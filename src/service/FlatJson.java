@@ -0,0 +1,118 @@
+package service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the flat JSON objects used for import lines and request bodies: string, number, boolean
+ * and null values, no nesting.
+ */
+public final class FlatJson {
+    private FlatJson() {}
+
+    /**
+     * Parses one object into its fields. Numbers and booleans are returned as written, and
+     * {@code null} as a null value. Throws {@link IllegalArgumentException} if the text is not
+     * a single flat object.
+     */
+    public static Map<String, String> parseObject(String text) {
+        Map<String, String> fields = new HashMap<>();
+        int[] position = {skipWhitespace(text, 0)};
+        expect(text, position, '{');
+        if (peek(text, position) == '}') {
+            position[0]++;
+            return fields;
+        }
+        while (true) {
+            String key = readJsonString(text, position);
+            expect(text, position, ':');
+            String value;
+            if (peek(text, position) == '"') {
+                value = readJsonString(text, position);
+            } else {
+                int start = position[0];
+                while (position[0] < text.length() && ",} \t".indexOf(text.charAt(position[0])) < 0) {
+                    position[0]++;
+                }
+                value = text.substring(start, position[0]);
+                if (value.isEmpty()) {
+                    throw new IllegalArgumentException("Malformed JSON value for " + key);
+                }
+                if (value.equals("null")) {
+                    value = null;
+                }
+            }
+            fields.put(key, value);
+
+            char next = peek(text, position);
+            position[0]++;
+            if (next == '}') {
+                return fields;
+            }
+            if (next != ',') {
+                throw new IllegalArgumentException("Malformed JSON object");
+            }
+        }
+    }
+
+    private static String readJsonString(String text, int[] position) {
+        expect(text, position, '"');
+        StringBuilder value = new StringBuilder();
+        while (position[0] < text.length()) {
+            char c = text.charAt(position[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c == '\\') {
+                if (position[0] >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(position[0]++);
+                switch (escaped) {
+                    case 'n': value.append('\n'); break;
+                    case 't': value.append('\t'); break;
+                    case 'r': value.append('\r'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        if (position[0] + 4 > text.length()) {
+                            throw new IllegalArgumentException("Malformed JSON escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position[0], position[0] + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw new IllegalArgumentException("Malformed JSON escape");
+                        }
+                        position[0] += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated JSON string");
+    }
+
+    private static void expect(String text, int[] position, char expected) {
+        if (peek(text, position) != expected) {
+            throw new IllegalArgumentException("Malformed JSON: expected '" + expected + "'");
+        }
+        position[0]++;
+    }
+
+    private static char peek(String text, int[] position) {
+        position[0] = skipWhitespace(text, position[0]);
+        if (position[0] >= text.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        return text.charAt(position[0]);
+    }
+
+    private static int skipWhitespace(String text, int position) {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,54 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Only the first {@link #MAX_ERRORS} row errors are kept, so the report
+ * stays small however bad the input is.
+ */
+public class ImportReport {
+    public static final int MAX_ERRORS = 1000;
+
+    private long rowsRead;
+    private long imported;
+    private long failed;
+    private final List<String> errors = new ArrayList<>();
+
+    void addRows(long rows) {
+        rowsRead += rows;
+    }
+
+    void addImported(long rows) {
+        imported += rows;
+    }
+
+    void addError(long row, String message) {
+        failed++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add("Row " + row + ": " + message);
+        }
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        return "Import Report: " + rowsRead + " rows read, " + imported + " imported, " + failed + " failed";
+    }
+}
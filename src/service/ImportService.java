@@ -0,0 +1,249 @@
+package service;
+
+import model.Customer;
+import model.FreeRoom;
+import model.IRoom;
+import model.Room;
+import model.RoomType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Streams rooms or customers from CSV or NDJSON files into the services.
+ * <p>
+ * Lines are read in chunks and each chunk is parsed and validated on a worker thread. Validated
+ * chunks are inserted one batch at a time, in file order, so duplicates resolve the same way as
+ * adding the rows by hand. Only a fixed number of chunks is in flight at once, which bounds
+ * memory whatever the file size. A bad row is recorded in the {@link ImportReport} and skipped.
+ * <p>
+ * CSV columns are {@code roomNumber,price,roomType} for rooms and {@code email,firstName,lastName}
+ * for customers, with an optional header line. NDJSON lines are objects with the same field names.
+ */
+public class ImportService {
+    private static final ImportService instance = new ImportService();
+    private static final int CHUNK_SIZE = 1000;
+
+    private final ReservationService reservationService = ReservationService.getInstance();
+    private final CustomerService customerService = CustomerService.getInstance();
+
+    private ImportService() {}
+
+    public static ImportService getInstance() {
+        return instance;
+    }
+
+    public ImportReport importRooms(Path file) throws IOException {
+        return importFile(file, new String[]{"roomNumber", "price", "roomType"}, fields -> {
+            String roomNumber = fields.get("roomNumber");
+            String price = fields.get("price");
+            String roomType = fields.get("roomType");
+            if (price == null || roomType == null) {
+                throw new IllegalArgumentException("Room number, price and room type are required");
+            }
+
+            double nightlyPrice;
+            try {
+                nightlyPrice = Double.parseDouble(price);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid price: " + price);
+            }
+            if (nightlyPrice < 0 || Double.isNaN(nightlyPrice) || Double.isInfinite(nightlyPrice)) {
+                throw new IllegalArgumentException("Price cannot be negative");
+            }
+
+            RoomType type;
+            try {
+                type = RoomType.valueOf(roomType.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Invalid room type: " + roomType);
+            }
+            IRoom room = nightlyPrice == 0 ? new FreeRoom(roomNumber, type) : new Room(roomNumber, nightlyPrice, type);
+            return room;
+        }, (rooms, rows, report) -> {
+            List<IRoom> rejected = reservationService.addRooms(rooms);
+            Set<IRoom> duplicates = Collections.newSetFromMap(new IdentityHashMap<>());
+            duplicates.addAll(rejected);
+            for (int i = 0; i < rooms.size(); i++) {
+                if (duplicates.contains(rooms.get(i))) {
+                    report.addError(rows.get(i), "Room with number " + rooms.get(i).getRoomNumber() + " already exists");
+                }
+            }
+            report.addImported(rooms.size() - rejected.size());
+        });
+    }
+
+    public ImportReport importCustomers(Path file) throws IOException {
+        return importFile(file, new String[]{"email", "firstName", "lastName"}, fields -> {
+            String email = fields.get("email");
+            if (email == null) {
+                throw new IllegalArgumentException("Email is required");
+            }
+            return new Customer(fields.get("firstName"), fields.get("lastName"), email);
+        }, (customers, rows, report) -> {
+            customerService.addCustomers(customers);
+            report.addImported(customers.size());
+        });
+    }
+
+    private interface RowParser<T> {
+        T parse(Map<String, String> fields);
+    }
+
+    private interface BatchInserter<T> {
+        void insert(List<T> values, List<Long> rows, ImportReport report);
+    }
+
+    private static class ParsedChunk<T> {
+        final List<T> values = new ArrayList<>();
+        final List<Long> rows = new ArrayList<>();
+        final List<Long> errorRows = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        int lines;
+    }
+
+    private <T> ImportReport importFile(Path file, String[] columns, RowParser<T> parser,
+                                        BatchInserter<T> inserter) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean json = name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json");
+
+        int workers = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "import-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ImportReport report = new ImportReport();
+        Deque<Future<ParsedChunk<T>>> inFlight = new ArrayDeque<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long row = 0;
+            List<String> lines = new ArrayList<>(CHUNK_SIZE);
+            long firstRow = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                row++;
+                if (row == 1 && !json && isHeader(line, columns)) {
+                    firstRow = 2;
+                    continue;
+                }
+                lines.add(line);
+                if (lines.size() == CHUNK_SIZE) {
+                    submit(executor, inFlight, lines, firstRow, json, columns, parser);
+                    lines = new ArrayList<>(CHUNK_SIZE);
+                    firstRow = row + 1;
+                    // Keep at most two chunks per worker queued; insert the oldest before reading more
+                    if (inFlight.size() >= workers * 2) {
+                        insert(inFlight.poll(), inserter, report);
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                submit(executor, inFlight, lines, firstRow, json, columns, parser);
+            }
+            while (!inFlight.isEmpty()) {
+                insert(inFlight.poll(), inserter, report);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return report;
+    }
+
+    private <T> void submit(ExecutorService executor, Deque<Future<ParsedChunk<T>>> inFlight, List<String> lines,
+                            long firstRow, boolean json, String[] columns, RowParser<T> parser) {
+        inFlight.add(executor.submit(() -> {
+            ParsedChunk<T> chunk = new ParsedChunk<>();
+            chunk.lines = lines.size();
+            for (int i = 0; i < lines.size(); i++) {
+                long row = firstRow + i;
+                String line = lines.get(i);
+                if (line.trim().isEmpty()) {
+                    chunk.lines--;
+                    continue;
+                }
+                try {
+                    Map<String, String> fields = json ? FlatJson.parseObject(line) : parseCsvLine(line, columns);
+                    chunk.values.add(parser.parse(fields));
+                    chunk.rows.add(row);
+                } catch (IllegalArgumentException ex) {
+                    chunk.errorRows.add(row);
+                    chunk.errors.add(ex.getMessage());
+                }
+            }
+            return chunk;
+        }));
+    }
+
+    private <T> void insert(Future<ParsedChunk<T>> future, BatchInserter<T> inserter, ImportReport report) throws IOException {
+        ParsedChunk<T> chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) ex.getCause()).getCause();
+            }
+            throw new IllegalStateException("Import worker failed", ex.getCause());
+        }
+
+        report.addRows(chunk.lines);
+        for (int i = 0; i < chunk.errors.size(); i++) {
+            report.addError(chunk.errorRows.get(i), chunk.errors.get(i));
+        }
+        if (!chunk.values.isEmpty()) {
+            inserter.insert(chunk.values, chunk.rows, report);
+        }
+    }
+
+    private static boolean isHeader(String line, String[] columns) {
+        return line.trim().toLowerCase(Locale.ROOT).startsWith(columns[0].toLowerCase(Locale.ROOT));
+    }
+
+    private static Map<String, String> parseCsvLine(String line, String[] columns) {
+        List<String> values = new ArrayList<>(columns.length);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        values.add(field.toString().trim());
+        if (values.size() != columns.length) {
+            throw new IllegalArgumentException("Expected " + columns.length + " columns but found " + values.size());
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            fields.put(columns[i], values.get(i));
+        }
+        return fields;
+    }
+}
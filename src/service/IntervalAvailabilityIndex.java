@@ -0,0 +1,184 @@
+package service;
+
+import model.IRoom;
+import model.Reservation;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps each room's stays in a sorted map keyed by check-in date, so a single room is checked in O(log k).
+ * The maps sit in an array indexed by room id and are created on a room's first stay.
+ * Reads never lock; writes to one room must be serialized by the caller.
+ */
+public class IntervalAvailabilityIndex implements AvailabilityIndex {
+    private final RoomRegistry roomRegistry;
+    // Stays in one room never overlap, so they are also sorted by check-out.
+    // Slots are only created and the array only grows under this object's monitor.
+    private volatile AtomicReferenceArray<NavigableMap<Date, Reservation>> roomReservations =
+            new AtomicReferenceArray<>(64);
+    // Only for the memory estimate; ConcurrentSkipListMap.size() walks every entry
+    private final LongAdder stayCount = new LongAdder();
+
+    public IntervalAvailabilityIndex(RoomRegistry roomRegistry) {
+        this.roomRegistry = roomRegistry;
+    }
+
+    @Override
+    public void addReservation(int roomId, Reservation reservation) {
+        NavigableMap<Date, Reservation> bookings = bookingsOf(roomId);
+        if (bookings == null) {
+            bookings = createBookings(roomId);
+        }
+        if (bookings.put(reservation.getCheckInDate(), reservation) == null) {
+            stayCount.increment();
+        }
+    }
+
+    @Override
+    public void removeReservation(int roomId, Reservation reservation) {
+        NavigableMap<Date, Reservation> bookings = bookingsOf(roomId);
+        // Only this exact instance; a moved stay may already sit under the same check-in date
+        if (bookings != null && bookings.get(reservation.getCheckInDate()) == reservation) {
+            bookings.remove(reservation.getCheckInDate());
+            stayCount.decrement();
+        }
+    }
+
+    @Override
+    public void replaceReservation(int roomId, Reservation previous, Reservation updated) {
+        addReservation(roomId, updated);
+        removeReservation(roomId, previous);
+    }
+
+    private synchronized NavigableMap<Date, Reservation> createBookings(int roomId) {
+        AtomicReferenceArray<NavigableMap<Date, Reservation>> current = roomReservations;
+        if (roomId >= current.length()) {
+            AtomicReferenceArray<NavigableMap<Date, Reservation>> grown =
+                    new AtomicReferenceArray<>(Math.max(roomId + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            roomReservations = grown;
+            current = grown;
+        }
+        NavigableMap<Date, Reservation> bookings = current.get(roomId);
+        if (bookings == null) {
+            bookings = new ConcurrentSkipListMap<>();
+            current.set(roomId, bookings);
+        }
+        return bookings;
+    }
+
+    private NavigableMap<Date, Reservation> bookingsOf(int roomId) {
+        AtomicReferenceArray<NavigableMap<Date, Reservation>> current = roomReservations;
+        return roomId < current.length() ? current.get(roomId) : null;
+    }
+
+    // About 36 bytes per skip list entry with its share of index nodes, and 80 per room's map
+    @Override
+    public long estimateMemoryBytes() {
+        AtomicReferenceArray<NavigableMap<Date, Reservation>> current = roomReservations;
+        long rooms = 0;
+        for (int i = 0; i < current.length(); i++) {
+            if (current.get(i) != null) {
+                rooms++;
+            }
+        }
+        return 16 + 4L * current.length() + 80 * rooms + 36 * stayCount.sum();
+    }
+
+    @Override
+    public NavigableMap<Date, Reservation> getStays(int roomId) {
+        NavigableMap<Date, Reservation> bookings = bookingsOf(roomId);
+        return bookings == null ? Collections.emptyNavigableMap() : Collections.unmodifiableNavigableMap(bookings);
+    }
+
+    @Override
+    public boolean isRoomAvailable(int roomId, Date checkInDate, Date checkOutDate) {
+        NavigableMap<Date, Reservation> bookings = bookingsOf(roomId);
+        if (bookings == null) {
+            return true;
+        }
+
+        // Only the last stay starting before check-out can overlap
+        Map.Entry<Date, Reservation> previous = bookings.lowerEntry(checkOutDate);
+        return previous == null || !previous.getValue().getCheckOutDate().after(checkInDate);
+    }
+
+    @Override
+    public Collection<IRoom> findRooms(Date checkInDate, Date checkOutDate) {
+        return roomRegistry.rooms(findRoomIds(checkInDate, checkOutDate));
+    }
+
+    @Override
+    public int[] findRoomIds(Date checkInDate, Date checkOutDate) {
+        int roomCount = roomRegistry.size();
+        int[] availableRooms = new int[roomCount];
+        int found = 0;
+        for (int roomId = 0; roomId < roomCount; roomId++) {
+            if (isRoomAvailable(roomId, checkInDate, checkOutDate)) {
+                availableRooms[found++] = roomId;
+            }
+        }
+        return Arrays.copyOf(availableRooms, found);
+    }
+
+    @Override
+    public SortedMap<Integer, Collection<IRoom>> findRoomsByOffset(Date checkInDate, Date checkOutDate, int[] dayOffsets) {
+        return AvailabilityIndex.roomsByOffset(roomRegistry, findRoomIdsByOffset(checkInDate, checkOutDate, dayOffsets));
+    }
+
+    @Override
+    public SortedMap<Integer, int[]> findRoomIdsByOffset(Date checkInDate, Date checkOutDate, int[] dayOffsets) {
+        SortedMap<Integer, int[]> availableRooms = new TreeMap<>();
+        if (dayOffsets.length == 0) {
+            return availableRooms;
+        }
+
+        Date[] checkIns = new Date[dayOffsets.length];
+        Date[] checkOuts = new Date[dayOffsets.length];
+        Date spanStart = null;
+        Date spanEnd = null;
+        for (int i = 0; i < dayOffsets.length; i++) {
+            checkIns[i] = AvailabilityIndex.shiftDays(checkInDate, dayOffsets[i]);
+            checkOuts[i] = AvailabilityIndex.shiftDays(checkOutDate, dayOffsets[i]);
+            spanStart = spanStart == null || checkIns[i].before(spanStart) ? checkIns[i] : spanStart;
+            spanEnd = spanEnd == null || checkOuts[i].after(spanEnd) ? checkOuts[i] : spanEnd;
+        }
+
+        int roomCount = roomRegistry.size();
+        boolean[] blocked = new boolean[dayOffsets.length];
+        int[][] free = new int[dayOffsets.length][roomCount];
+        int[] found = new int[dayOffsets.length];
+        for (int roomId = 0; roomId < roomCount; roomId++) {
+            Arrays.fill(blocked, false);
+            NavigableMap<Date, Reservation> bookings = bookingsOf(roomId);
+            // Walk back from the end of the span; check-outs fall as check-ins do, so stop once one ends before it
+            for (Reservation stay : bookings == null ? Collections.<Reservation>emptyList()
+                    : bookings.headMap(spanEnd, false).descendingMap().values()) {
+                if (!stay.getCheckOutDate().after(spanStart)) {
+                    break;
+                }
+                for (int i = 0; i < dayOffsets.length; i++) {
+                    if (stay.getCheckInDate().before(checkOuts[i]) && stay.getCheckOutDate().after(checkIns[i])) {
+                        blocked[i] = true;
+                    }
+                }
+            }
+            for (int i = 0; i < dayOffsets.length; i++) {
+                if (!blocked[i]) {
+                    free[i][found[i]++] = roomId;
+                }
+            }
+        }
+        for (int i = 0; i < dayOffsets.length; i++) {
+            if (found[i] > 0) {
+                availableRooms.put(dayOffsets[i], Arrays.copyOf(free[i], found[i]));
+            }
+        }
+        return availableRooms;
+    }
+}
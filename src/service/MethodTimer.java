@@ -0,0 +1,209 @@
+package service;
+
+import model.MethodStats;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times one method. Callers hold on to the timer and wrap each call's body as
+ * <pre>
+ *   return timer.time(() -&gt; ...);
+ * </pre>
+ * which counts the call, times it if it is sampled, counts its exception by type if it throws and
+ * rethrows it. Only the first error of each exception type allocates.
+ * <p>
+ * Every call and every error is counted, but after the first {@link #TIME_ALL_UNTIL} timed calls
+ * only about one in {@code sampling} is timed: reading the clock twice costs about as much as the
+ * cheapest lookups themselves. The first calls are all timed so that a method called only a few
+ * times still shows its latencies. Each thread counts its calls in a counter only it writes, and
+ * draws a random gap to its next timed call only when it times one, so a call that is not timed
+ * does no atomic add and reads no clock.
+ */
+public final class MethodTimer {
+    // Returned by start() for calls that are not timed
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+    private static final int TIME_ALL_UNTIL = 1024;
+    private static final VarHandle CALLS;
+
+    static {
+        try {
+            CALLS = MethodHandles.lookup().findVarHandle(Counter.class, "calls", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * A call whose result is returned.
+     */
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * A call with no result.
+     */
+    @FunctionalInterface
+    public interface Action<E extends Exception> {
+        void run() throws E;
+    }
+
+    // Written only by its own thread; others read 'calls' opaquely, which is enough for a count
+    private static final class Counter {
+        final Thread owner = Thread.currentThread();
+        long calls;
+        int untilTimed;
+    }
+
+    private final String name;
+    private final boolean enabled;
+    private final int sampling;
+    private final ThreadLocal<Counter> counter = ThreadLocal.withInitial(this::register);
+    // Guarded by itself. Calls of threads that have ended are folded into endedCalls
+    private final List<Counter> counters = new ArrayList<>();
+    private long endedCalls;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final Map<Class<?>, LongAdder> errors = new ConcurrentHashMap<>();
+    // Counted down without atomics; a lost update only times a few more calls
+    private volatile int timeAllRemaining = TIME_ALL_UNTIL;
+
+    /**
+     * {@code sampling} must be a power of two.
+     */
+    MethodTimer(String name, boolean enabled, int sampling) {
+        this.name = name;
+        this.enabled = enabled;
+        this.sampling = sampling;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCalls() {
+        synchronized (counters) {
+            foldEnded();
+            long calls = endedCalls;
+            for (Counter c : counters) {
+                calls += (long) CALLS.getOpaque(c);
+            }
+            return calls;
+        }
+    }
+
+    /**
+     * Runs {@code call} and returns its result, recording it against this method.
+     */
+    public <T, E extends Exception> T time(Call<T, E> call) throws E {
+        if (!enabled) {
+            return call.call();
+        }
+        long start = start();
+        try {
+            return call.call();
+        } catch (Exception ex) {
+            failed(ex);
+            throw ex;
+        } finally {
+            stop(start);
+        }
+    }
+
+    /**
+     * Runs {@code action}, recording it against this method.
+     */
+    public <E extends Exception> void time(Action<E> action) throws E {
+        if (!enabled) {
+            action.run();
+            return;
+        }
+        long start = start();
+        try {
+            action.run();
+        } catch (Exception ex) {
+            failed(ex);
+            throw ex;
+        } finally {
+            stop(start);
+        }
+    }
+
+    private long start() {
+        Counter c = counter.get();
+        CALLS.setOpaque(c, c.calls + 1);
+        if (timeAllRemaining <= 0 && --c.untilTimed > 0) {
+            return NOT_TIMED;
+        }
+        // Uniform in [1, 2 * sampling - 1], so one call in 'sampling' on average
+        c.untilTimed = (int) (1 + ThreadLocalRandom.current().nextLong(2L * sampling - 1));
+        return System.nanoTime();
+    }
+
+    private void stop(long start) {
+        if (start != NOT_TIMED) {
+            latencies.record(System.nanoTime() - start);
+            if (timeAllRemaining > 0) {
+                timeAllRemaining--;
+            }
+        }
+    }
+
+    private void failed(Throwable ex) {
+        LongAdder count = errors.get(ex.getClass());
+        if (count == null) {
+            count = errors.computeIfAbsent(ex.getClass(), k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    private Counter register() {
+        Counter c = new Counter();
+        synchronized (counters) {
+            // Dropped here as well as on read, so threads that come and go do not pile up
+            foldEnded();
+            counters.add(c);
+        }
+        return c;
+    }
+
+    // Called holding the counters' lock. A thread that has ended writes no more calls
+    private void foldEnded() {
+        for (Iterator<Counter> it = counters.iterator(); it.hasNext(); ) {
+            Counter c = it.next();
+            if (!c.owner.isAlive()) {
+                endedCalls += (long) CALLS.getOpaque(c);
+                it.remove();
+            }
+        }
+    }
+
+    MethodStats getStats() {
+        long[] counts = latencies.counts();
+        long timed = 0;
+        for (long count : counts) {
+            timed += count;
+        }
+        Map<String, Long> errorCounts = new TreeMap<>();
+        for (Map.Entry<Class<?>, LongAdder> error : errors.entrySet()) {
+            errorCounts.merge(error.getKey().getSimpleName(), error.getValue().sum(), Long::sum);
+        }
+        // A bucket's highest value can be above anything actually recorded
+        long max = latencies.getMaxNanos();
+        return new MethodStats(name, getCalls(), timed, errorCounts,
+                timed == 0 ? 0 : latencies.getTotalNanos() / timed,
+                Math.min(max, LatencyHistogram.valueAt(counts, timed, 0.50)),
+                Math.min(max, LatencyHistogram.valueAt(counts, timed, 0.99)),
+                Math.min(max, LatencyHistogram.valueAt(counts, timed, 0.999)),
+                max);
+    }
+}
@@ -0,0 +1,102 @@
+package service;
+
+import model.MethodStats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Call counts, error counts and latency histograms for the methods of {@link api.HotelResource}
+ * and {@link api.AdminResource}. Each method takes its {@link MethodTimer} once, when its class is
+ * built, so recording a call never looks anything up.
+ * <p>
+ * {@code -Dhotel.metrics=false} turns recording off; the timers are still handed out, they just
+ * do nothing. Once a method has had its first calls timed, {@code -Dhotel.metricsSampling=N}
+ * times one call in N on average, rounded up to a power of two. The default of 64 keeps the clock
+ * reads and histogram updates to a few percent of the cost of cheap lookups; 1 times every call.
+ */
+public class MetricsService {
+    private static final MetricsService instance = new MetricsService();
+    private static final String HEADER_FORMAT = "%-44s %10s %8s %10s %9s %9s %9s %9s %9s%n";
+
+    private final boolean enabled = !"false".equals(System.getProperty("hotel.metrics"));
+    private final int sampling = samplingOf(Integer.getInteger("hotel.metricsSampling", 64));
+    private final Map<String, MethodTimer> timers = new ConcurrentSkipListMap<>();
+
+    private MetricsService() {}
+
+    public static MetricsService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the timer for {@code name}, creating it the first time.
+     */
+    public MethodTimer timer(String name) {
+        return timers.computeIfAbsent(name, k -> new MethodTimer(k, enabled, sampling));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns N where one call in N is timed.
+     */
+    public int getSampling() {
+        return sampling;
+    }
+
+    /**
+     * Returns stats for every method called at least once, by name.
+     */
+    public List<MethodStats> getMethodStats() {
+        List<MethodStats> stats = new ArrayList<>();
+        for (MethodTimer timer : timers.values()) {
+            MethodStats methodStats = timer.getStats();
+            if (methodStats.getCalls() > 0) {
+                stats.add(methodStats);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Writes {@link #getMethodStats()} as a fixed-width table, with each method's errors listed
+     * under it by exception type.
+     */
+    public void writeReport(Appendable out) throws IOException {
+        out.append(String.format(HEADER_FORMAT, "Method", "Calls", "Errors", "Timed", "Mean", "p50", "p99", "p99.9", "Max"));
+        for (MethodStats stats : getMethodStats()) {
+            out.append(String.format(HEADER_FORMAT, stats.getName(), stats.getCalls(), stats.getErrorCount(),
+                    stats.getTimedCalls(),
+                    formatNanos(stats.getMeanNanos()), formatNanos(stats.getP50Nanos()),
+                    formatNanos(stats.getP99Nanos()), formatNanos(stats.getP999Nanos()),
+                    formatNanos(stats.getMaxNanos())));
+            for (Map.Entry<String, Long> error : stats.getErrors().entrySet()) {
+                out.append(String.format("    %-40s %10d%n", error.getKey(), error.getValue()));
+            }
+        }
+    }
+
+    private static int samplingOf(int sampling) {
+        if (sampling < 1 || sampling > 1 << 30) {
+            throw new IllegalArgumentException("hotel.metricsSampling must be between 1 and 2^30");
+        }
+        return sampling == 1 ? 1 : Integer.highestOneBit(sampling - 1) << 1;
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        } else if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        } else if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
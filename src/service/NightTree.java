@@ -0,0 +1,195 @@
+package service;
+
+/**
+ * A running total per night, held in a segment tree over epoch days: occupied rooms for
+ * {@link OccupancyService}, revenue in cents for {@link RevenueService}. Booking a stay adds to
+ * every night in it, and a night's value, the total over a range of nights and the highest night
+ * in a range are each found in O(log n).
+ * <p>
+ * Adds are not pushed down: a node keeps the amount added to its whole span, and its sum and max
+ * already include it, so queries only read. The tree starts with a small window and doubles to
+ * cover any night it is given, up to {@value #MAX_NIGHTS} nights from the earliest to the latest;
+ * {@link ReservationService} keeps bookings well inside that by how far ahead they may end.
+ * Callers lock; both services reach it through a {@link BufferedNightTree}.
+ */
+class NightTree {
+    private static final int INITIAL_NIGHTS = 1024;
+    // About 180 years; the three arrays then take 3 MB
+    static final int MAX_NIGHTS = 1 << 16;
+
+    private long origin;
+    private int size;
+    private long[] added;
+    private long[] sum;
+    private long[] max;
+
+    NightTree() {
+        added = new long[2];
+        sum = new long[2];
+        max = new long[2];
+    }
+
+    /**
+     * Adds {@code delta} to each night in [from, to).
+     */
+    void add(long from, long to, long delta) {
+        if (from >= to) {
+            return;
+        }
+        if (size == 0 || from < origin || to > origin + size) {
+            grow(from, to);
+        }
+        add(1, 0, size, (int) (from - origin), (int) (to - origin), delta);
+    }
+
+    /**
+     * Whether the tree can cover [from, to) along with every night it already does.
+     */
+    boolean fits(long from, long to) {
+        long first = size == 0 ? from : Math.min(origin, from);
+        long end = size == 0 ? to : Math.max(origin + size, to);
+        return end - first <= MAX_NIGHTS;
+    }
+
+    long get(long night) {
+        return sum(night, night + 1);
+    }
+
+    /**
+     * Total of the nightly values over [from, to).
+     */
+    long sum(long from, long to) {
+        long lo = Math.max(from, origin);
+        long hi = Math.min(to, origin + size);
+        if (lo >= hi) {
+            return 0;
+        }
+        return sum(1, 0, size, (int) (lo - origin), (int) (hi - origin));
+    }
+
+    /**
+     * The earliest night in [from, to) with the highest value. {@code from < to} is required.
+     */
+    long peak(long from, long to) {
+        long lo = Math.max(from, origin);
+        long hi = Math.min(to, origin + size);
+        if (lo >= hi) {
+            return from;
+        }
+        long[] best = {Long.MIN_VALUE, 0};
+        peak(1, 0, size, (int) (lo - origin), (int) (hi - origin), 0, best);
+        // Nights outside the window hold nothing, so they only win when nothing is booked
+        if (best[0] <= 0) {
+            return from;
+        }
+        return origin + best[1];
+    }
+
+    private void add(int node, int lo, int hi, int from, int to, long delta) {
+        if (from <= lo && hi <= to) {
+            added[node] += delta;
+            sum[node] += delta * (hi - lo);
+            max[node] += delta;
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (from < mid) {
+            add(2 * node, lo, mid, from, to, delta);
+        }
+        if (to > mid) {
+            add(2 * node + 1, mid, hi, from, to, delta);
+        }
+        sum[node] = sum[2 * node] + sum[2 * node + 1] + added[node] * (hi - lo);
+        max[node] = Math.max(max[2 * node], max[2 * node + 1]) + added[node];
+    }
+
+    private long sum(int node, int lo, int hi, int from, int to) {
+        if (from <= lo && hi <= to) {
+            return sum[node];
+        }
+        int mid = (lo + hi) >>> 1;
+        long total = added[node] * (Math.min(hi, to) - Math.max(lo, from));
+        if (from < mid) {
+            total += sum(2 * node, lo, mid, from, to);
+        }
+        if (to > mid) {
+            total += sum(2 * node + 1, mid, hi, from, to);
+        }
+        return total;
+    }
+
+    // best holds {value, night offset}; above is the amount added by the node's ancestors
+    private void peak(int node, int lo, int hi, int from, int to, long above, long[] best) {
+        if (max[node] + above <= best[0]) {
+            return;
+        }
+        if (from <= lo && hi <= to) {
+            // The whole span is wanted: follow the larger child down to the earliest busiest night
+            while (node < size) {
+                above += added[node];
+                int mid = (lo + hi) >>> 1;
+                if (max[2 * node] >= max[2 * node + 1]) {
+                    node = 2 * node;
+                    hi = mid;
+                } else {
+                    node = 2 * node + 1;
+                    lo = mid;
+                }
+            }
+            best[0] = max[node] + above;
+            best[1] = lo;
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        above += added[node];
+        if (from < mid) {
+            peak(2 * node, lo, mid, from, to, above, best);
+        }
+        if (to > mid) {
+            peak(2 * node + 1, mid, hi, from, to, above, best);
+        }
+    }
+
+    // Reads every night's value out and rebuilds a tree wide enough for [from, to), with the room
+    // to spare on the side it grew towards, so nights added one earlier at a time do not each double it
+    private void grow(long from, long to) {
+        long newOrigin = size == 0 ? from : Math.min(origin, from);
+        long end = size == 0 ? to : Math.max(origin + size, to);
+        long[] nights = new long[size];
+        if (size > 0) {
+            collect(1, 0, size, 0, nights);
+        }
+
+        long oldOrigin = origin;
+        long needed = end - newOrigin;
+        if (needed > MAX_NIGHTS) {
+            throw new IllegalArgumentException("Nights span more than " + MAX_NIGHTS + " days; check fits first");
+        }
+        boolean earlier = size > 0 && from < origin;
+        size = Math.min(MAX_NIGHTS, Math.max(Math.max(INITIAL_NIGHTS, 2 * size), Integer.highestOneBit((int) needed - 1) << 1));
+        origin = earlier ? end - size : newOrigin;
+        added = new long[2 * size];
+        sum = new long[2 * size];
+        max = new long[2 * size];
+        for (int i = 0; i < nights.length; i++) {
+            int leaf = size + (int) (oldOrigin - origin) + i;
+            added[leaf] = nights[i];
+            sum[leaf] = nights[i];
+            max[leaf] = nights[i];
+        }
+        for (int node = size - 1; node >= 1; node--) {
+            sum[node] = sum[2 * node] + sum[2 * node + 1];
+            max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+        }
+    }
+
+    private void collect(int node, int lo, int hi, long above, long[] nights) {
+        if (node >= size) {
+            nights[lo] = above + added[node];
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        collect(2 * node, lo, mid, above + added[node], nights);
+        collect(2 * node + 1, mid, hi, above + added[node], nights);
+    }
+}
@@ -0,0 +1,270 @@
+package service;
+
+import model.Reservation;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps {@link Reservation} objects by id, and publishes every change as a new immutable
+ * {@link Version}: each room's stays in check-in order and each customer's reservations in id
+ * order, each a {@link PersistentTree} held in a {@link PersistentArray}. A write copies the
+ * paths to the changed nodes of one room's tree and one customer's tree, and the trie paths to
+ * those trees, so it costs O(log n) new nodes however many stays the room or customer has. It
+ * swaps the version in with a compare-and-set; a view is just the version current when it was
+ * taken.
+ */
+public class ObjectReservationStore implements ReservationStore {
+    // A room's stays never overlap, so the id only breaks ties a caller's mistake could cause
+    private static final Comparator<Reservation> BY_CHECK_IN =
+            Comparator.comparing(Reservation::getCheckInDate).thenComparingLong(Reservation::getId);
+    private static final Comparator<Reservation> BY_ID = Comparator.comparingLong(Reservation::getId);
+
+    private final Map<Long, Reservation> reservationsById = new ConcurrentHashMap<>();
+    // Customers get dense slots here, so their reservations can sit in a PersistentArray too
+    private final Map<String, Integer> customerSlots = new ConcurrentHashMap<>();
+    private final AtomicInteger nextCustomerSlot = new AtomicInteger();
+    private final AtomicReference<Version> current =
+            new AtomicReference<>(new Version(PersistentArray.empty(), PersistentArray.empty(), 0, 0, 0));
+    // Where the partitions' stores record which of them holds each id, or null with one partition
+    private final ReservationLocations locations;
+    private final int partition;
+    private final int partitionCount;
+
+    public ObjectReservationStore() {
+        this(null, 0, 1);
+    }
+
+    /**
+     * A store for one of {@code partitionCount} partitions, recording the ids it holds in the
+     * {@code locations} that all of them share.
+     */
+    ObjectReservationStore(ReservationLocations locations, int partition, int partitionCount) {
+        this.locations = locations;
+        this.partition = partition;
+        this.partitionCount = partitionCount;
+    }
+
+    @Override
+    public void add(int roomId, Reservation reservation) {
+        reservationsById.put(reservation.getId(), reservation);
+        if (locations != null) {
+            locations.set(reservation.getId(), partition, 0);
+        }
+        publish(roomId, null, reservation);
+    }
+
+    // One compare-and-set applies the whole batch, so no version holds part of it
+    @Override
+    public void addAll(int[] roomIds, List<Reservation> reservations) {
+        int[] slots = new int[reservations.size()];
+        for (int i = 0; i < slots.length; i++) {
+            Reservation reservation = reservations.get(i);
+            reservationsById.put(reservation.getId(), reservation);
+            if (locations != null) {
+                locations.set(reservation.getId(), partition, 0);
+            }
+            slots[i] = customerSlotOf(reservation);
+        }
+        current.updateAndGet(version -> {
+            for (int i = 0; i < slots.length; i++) {
+                version = version.apply(roomIds[i], slots[i], null, reservations.get(i));
+            }
+            return version;
+        });
+    }
+
+    @Override
+    public void remove(int roomId, Reservation reservation) {
+        reservationsById.remove(reservation.getId());
+        if (locations != null) {
+            locations.clear(reservation.getId());
+        }
+        publish(roomId, reservation, null);
+    }
+
+    @Override
+    public void replace(int roomId, Reservation previous, Reservation updated) {
+        reservationsById.put(updated.getId(), updated);
+        publish(roomId, previous, updated);
+    }
+
+    @Override
+    public Reservation get(long reservationId) {
+        return reservationsById.get(reservationId);
+    }
+
+    @Override
+    public ReservationView view() {
+        return current.get();
+    }
+
+    // A reservation with its two dates and its entry by id is about 144 bytes, plus a node in its
+    // room's tree and one in its customer's, about 32 each; each tree and trie slot adds about 56.
+    // Each partition counts its share of the id locations
+    @Override
+    public long estimateMemoryBytes() {
+        Version version = current.get();
+        return 208L * reservationsById.size() + 56L * (version.roomCount + version.customerCount)
+                + 48L * customerSlots.size() + (locations == null ? 0 : locations.estimateMemoryBytes() / partitionCount);
+    }
+
+    // Writers of other rooms and of the same customer race here, so the new version is rebuilt from
+    // whichever one the compare-and-set finds; a retry only redoes the O(log n) path copies
+    private void publish(int roomId, Reservation previous, Reservation updated) {
+        int customerSlot = customerSlotOf(updated != null ? updated : previous);
+        current.updateAndGet(version -> version.apply(roomId, customerSlot, previous, updated));
+    }
+
+    private int customerSlotOf(Reservation reservation) {
+        return customerSlots.computeIfAbsent(reservation.getCustomer().getEmail(),
+                k -> nextCustomerSlot.getAndIncrement());
+    }
+
+    /**
+     * Returns {@code tree} without {@code previous} and with {@code updated}, or null once it is
+     * empty. Any of them may be null.
+     */
+    private static PersistentTree<Reservation> update(PersistentTree<Reservation> tree, Reservation previous,
+                                                      Reservation updated, Comparator<Reservation> order) {
+        if (tree == null) {
+            tree = PersistentTree.empty(order);
+        }
+        if (previous != null) {
+            tree = tree.remove(previous);
+        }
+        if (updated != null) {
+            tree = tree.insert(updated);
+        }
+        return tree.isEmpty() ? null : tree;
+    }
+
+    private final class Version implements ReservationView {
+        final PersistentArray<PersistentTree<Reservation>> byRoom;
+        final PersistentArray<PersistentTree<Reservation>> byCustomer;
+        final int roomCount;
+        final int customerCount;
+        final int size;
+
+        Version(PersistentArray<PersistentTree<Reservation>> byRoom, PersistentArray<PersistentTree<Reservation>> byCustomer,
+                int roomCount, int customerCount, int size) {
+            this.byRoom = byRoom;
+            this.byCustomer = byCustomer;
+            this.roomCount = roomCount;
+            this.customerCount = customerCount;
+            this.size = size;
+        }
+
+        Version apply(int roomId, int customerSlot, Reservation previous, Reservation updated) {
+            int delta = (updated != null ? 1 : 0) - (previous != null ? 1 : 0);
+            return new Version(
+                    byRoom.set(roomId, update(byRoom.get(roomId), previous, updated, BY_CHECK_IN)),
+                    byCustomer.set(customerSlot, update(byCustomer.get(customerSlot), previous, updated, BY_ID)),
+                    Math.max(roomCount, roomId + 1), Math.max(customerCount, customerSlot + 1), size + delta);
+        }
+
+        @Override
+        public List<Reservation> getStays(int roomId) {
+            return toList(byRoom.get(roomId));
+        }
+
+        @Override
+        public Iterator<Reservation> staysInRange(int roomId, Date from, Date to) {
+            PersistentTree<Reservation> stays = byRoom.get(roomId);
+            if (stays == null) {
+                return Collections.emptyIterator();
+            }
+            // Check-outs are ordered like check-ins, so the overlapping stays are one run of the tree
+            Iterator<Reservation> overlapping = stays.iterator(
+                    stay -> from != null && !stay.getCheckOutDate().after(from));
+            if (to == null) {
+                return overlapping;
+            }
+            return new Iterator<Reservation>() {
+                private Reservation next = advance();
+
+                private Reservation advance() {
+                    Reservation stay = overlapping.hasNext() ? overlapping.next() : null;
+                    return stay != null && stay.getCheckInDate().before(to) ? stay : null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Reservation next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Reservation current = next;
+                    next = advance();
+                    return current;
+                }
+            };
+        }
+
+        @Override
+        public Collection<Reservation> getCustomerReservations(String customerEmail) {
+            Integer customerSlot = customerEmail == null ? null : customerSlots.get(customerEmail);
+            return customerSlot == null ? Collections.emptyList() : toList(byCustomer.get(customerSlot));
+        }
+
+        @Override
+        public Set<String> getCustomerEmails() {
+            Set<String> emails = new HashSet<>();
+            for (int customerSlot = 0; customerSlot < customerCount; customerSlot++) {
+                PersistentTree<Reservation> reservations = byCustomer.get(customerSlot);
+                if (reservations != null) {
+                    emails.add(reservations.iterator().next().getCustomer().getEmail());
+                }
+            }
+            return Collections.unmodifiableSet(emails);
+        }
+
+        @Override
+        public boolean isRoomAvailable(int roomId, Date checkInDate, Date checkOutDate) {
+            PersistentTree<Reservation> stays = byRoom.get(roomId);
+            if (stays == null) {
+                return true;
+            }
+            // Find the last stay starting before the check-out; check-outs are ordered like
+            // check-ins, so it is the only one that can reach past the check-in
+            Reservation last = stays.last(stay -> stay.getCheckInDate().before(checkOutDate));
+            return last == null || !last.getCheckOutDate().after(checkInDate);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Reservation> iterator() {
+            Iterator<Integer> roomIds = new Iterator<Integer>() {
+                private int roomId;
+
+                @Override
+                public boolean hasNext() {
+                    return roomId < roomCount;
+                }
+
+                @Override
+                public Integer next() {
+                    if (roomId >= roomCount) {
+                        throw new NoSuchElementException();
+                    }
+                    return roomId++;
+                }
+            };
+            return ReservationCursors.concat(roomIds, roomId -> staysInRange(roomId, null, null));
+        }
+
+        private List<Reservation> toList(PersistentTree<Reservation> reservations) {
+            return reservations == null ? Collections.emptyList() : Collections.unmodifiableList(reservations.toList());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package service;
+
+import model.NightOccupancy;
+import model.RoomType;
+
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Occupied-room counts per night, overall and per room type. {@link ReservationService} reports
+ * every room as it is added and every stay as it is booked, moved or cancelled, so answers never
+ * need a pass over the reservations: a night's count, the average over a range and the busiest
+ * night in a range are each O(log n).
+ * <p>
+ * A night is counted for a stay if any part of the stay falls on that day, as in
+ * {@link BitmapAvailabilityIndex}. Each tree is a {@link BufferedNightTree}, so a booking only
+ * queues its change and never waits on a query or on bookings in other partitions.
+ */
+public class OccupancyService {
+    private static final OccupancyService instance = new OccupancyService();
+    private final EpochDays days = new EpochDays(ZoneId.systemDefault());
+    private final BufferedNightTree allRooms = new BufferedNightTree(RoomPartitions.configuredCount());
+    // Every type is added up front, so the EnumMaps themselves are never written after construction
+    private final Map<RoomType, BufferedNightTree> roomsByType = new EnumMap<>(RoomType.class);
+    private final AtomicLong roomCount = new AtomicLong();
+    private final Map<RoomType, AtomicLong> roomCountByType = new EnumMap<>(RoomType.class);
+
+    private OccupancyService() {
+        for (RoomType roomType : RoomType.values()) {
+            roomsByType.put(roomType, new BufferedNightTree(RoomPartitions.configuredCount()));
+            roomCountByType.put(roomType, new AtomicLong());
+        }
+    }
+
+    public static OccupancyService getInstance() {
+        return instance;
+    }
+
+    void addRoom(RoomType roomType) {
+        roomCount.incrementAndGet();
+        if (roomType != null) {
+            roomCountByType.get(roomType).incrementAndGet();
+        }
+    }
+
+    void addStay(int roomId, RoomType roomType, Date checkInDate, Date checkOutDate) {
+        recordStay(roomId, roomType, checkInDate, checkOutDate, 1);
+    }
+
+    void removeStay(int roomId, RoomType roomType, Date checkInDate, Date checkOutDate) {
+        recordStay(roomId, roomType, checkInDate, checkOutDate, -1);
+    }
+
+    private void recordStay(int roomId, RoomType roomType, Date checkInDate, Date checkOutDate, int delta) {
+        long firstNight = days.floor(checkInDate);
+        long end = days.ceil(checkOutDate);
+        allRooms.add(roomId, firstNight, end, delta);
+        if (roomType != null) {
+            roomsByType.get(roomType).add(roomId, firstNight, end, delta);
+        }
+    }
+
+    /**
+     * Rooms occupied on the night of {@code night}. A null room type counts every room.
+     */
+    public NightOccupancy getOccupancy(Date night, RoomType roomType) {
+        if (night == null) {
+            throw new IllegalArgumentException("Night cannot be null");
+        }
+
+        long day = days.floor(night);
+        long occupied = treeFor(roomType).read(tree -> tree.get(day));
+        return new NightOccupancy(days.toDate(day), occupied, getRoomCount(roomType));
+    }
+
+    /**
+     * Average number of rooms occupied per night over the nights from {@code from} up to {@code to}.
+     */
+    public double getAverageOccupancy(Date from, Date to, RoomType roomType) {
+        validateRange(from, to);
+
+        long firstNight = days.floor(from);
+        long end = days.ceil(to);
+        long roomNights = treeFor(roomType).read(tree -> tree.sum(firstNight, end));
+        return (double) roomNights / (end - firstNight);
+    }
+
+    /**
+     * The busiest night from {@code from} up to {@code to}; the earliest one if several tie.
+     */
+    public NightOccupancy getPeakNight(Date from, Date to, RoomType roomType) {
+        validateRange(from, to);
+
+        long firstNight = days.floor(from);
+        long end = days.ceil(to);
+        // Both read under one lock, so the count is the peak night's
+        long[] peak = treeFor(roomType).read(tree -> {
+            long night = tree.peak(firstNight, end);
+            return new long[]{night, tree.get(night)};
+        });
+        return new NightOccupancy(days.toDate(peak[0]), peak[1], getRoomCount(roomType));
+    }
+
+    public long getRoomCount(RoomType roomType) {
+        return roomType == null ? roomCount.get() : roomCountByType.get(roomType).get();
+    }
+
+    private BufferedNightTree treeFor(RoomType roomType) {
+        return roomType == null ? allRooms : roomsByType.get(roomType);
+    }
+
+    private static void validateRange(Date from, Date to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Start and end dates cannot be null");
+        }
+        if (!from.before(to)) {
+            throw new IllegalArgumentException("Start date must be before end date");
+        }
+    }
+}
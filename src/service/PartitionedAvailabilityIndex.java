@@ -0,0 +1,143 @@
+package service;
+
+import model.IRoom;
+import model.Reservation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * One {@link AvailabilityIndex} per {@link RoomPartitions} partition, each over its own rooms only.
+ * Writes and single-room checks go to the room's partition alone, so writers in different
+ * partitions share no index structure. Searches run in every partition at once on the fork/join
+ * pool. Each partition answers with local ids, which are merged back into room id order, as a single
+ * index would give them, before the rooms are looked up once.
+ */
+final class PartitionedAvailabilityIndex implements AvailabilityIndex {
+    private static final int[] NO_ROOMS = new int[0];
+
+    private final RoomPartitions partitions;
+    private final AvailabilityIndex[] indexes;
+
+    PartitionedAvailabilityIndex(RoomPartitions partitions, AvailabilityIndex[] indexes) {
+        this.partitions = partitions;
+        this.indexes = indexes;
+    }
+
+    @Override
+    public void addReservation(int roomId, Reservation reservation) {
+        indexes[partitions.partitionOf(roomId)].addReservation(partitions.localId(roomId), reservation);
+    }
+
+    @Override
+    public void removeReservation(int roomId, Reservation reservation) {
+        indexes[partitions.partitionOf(roomId)].removeReservation(partitions.localId(roomId), reservation);
+    }
+
+    @Override
+    public void replaceReservation(int roomId, Reservation previous, Reservation updated) {
+        indexes[partitions.partitionOf(roomId)].replaceReservation(partitions.localId(roomId), previous, updated);
+    }
+
+    @Override
+    public boolean isRoomAvailable(int roomId, Date checkInDate, Date checkOutDate) {
+        return indexes[partitions.partitionOf(roomId)].isRoomAvailable(partitions.localId(roomId), checkInDate, checkOutDate);
+    }
+
+    @Override
+    public boolean isRoomAvailableExcept(int roomId, long reservationId, Date checkInDate, Date checkOutDate) {
+        return indexes[partitions.partitionOf(roomId)].isRoomAvailableExcept(partitions.localId(roomId),
+                reservationId, checkInDate, checkOutDate);
+    }
+
+    @Override
+    public Collection<IRoom> findRooms(Date checkInDate, Date checkOutDate) {
+        return partitions.roomRegistry().rooms(findRoomIds(checkInDate, checkOutDate));
+    }
+
+    @Override
+    public int[] findRoomIds(Date checkInDate, Date checkOutDate) {
+        return mergeRoomIds(partitions.map(partition -> indexes[partition].findRoomIds(checkInDate, checkOutDate)));
+    }
+
+    @Override
+    public SortedMap<Integer, Collection<IRoom>> findRoomsByOffset(Date checkInDate, Date checkOutDate, int[] dayOffsets) {
+        return AvailabilityIndex.roomsByOffset(partitions.roomRegistry(),
+                findRoomIdsByOffset(checkInDate, checkOutDate, dayOffsets));
+    }
+
+    @Override
+    public SortedMap<Integer, int[]> findRoomIdsByOffset(Date checkInDate, Date checkOutDate, int[] dayOffsets) {
+        List<SortedMap<Integer, int[]>> parts = partitions.map(
+                partition -> indexes[partition].findRoomIdsByOffset(checkInDate, checkOutDate, dayOffsets));
+
+        SortedMap<Integer, int[]> availableRooms = new TreeMap<>();
+        List<int[]> byPartition = new ArrayList<>(parts.size());
+        for (int dayOffset : dayOffsets) {
+            byPartition.clear();
+            for (SortedMap<Integer, int[]> part : parts) {
+                byPartition.add(part.getOrDefault(dayOffset, NO_ROOMS));
+            }
+            int[] rooms = mergeRoomIds(byPartition);
+            if (rooms.length > 0) {
+                availableRooms.put(dayOffset, rooms);
+            }
+        }
+        return availableRooms;
+    }
+
+    @Override
+    public NavigableMap<Date, Reservation> getStays(int roomId) {
+        return indexes[partitions.partitionOf(roomId)].getStays(partitions.localId(roomId));
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        long bytes = 0;
+        for (AvailabilityIndex index : indexes) {
+            bytes += index.estimateMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Merges each partition's local ids, in ascending order, into one array of room ids in
+     * ascending order. Room ids interleave the partitions, so rather than comparing the heads of
+     * the runs each id is marked in a bitmap over the whole hotel, which is then read back in order.
+     */
+    private int[] mergeRoomIds(List<int[]> byPartition) {
+        int size = 0;
+        int maxRoomId = -1;
+        for (int partition = 0; partition < byPartition.size(); partition++) {
+            int[] localIds = byPartition.get(partition);
+            if (localIds.length > 0) {
+                size += localIds.length;
+                maxRoomId = Math.max(maxRoomId, partitions.roomId(partition, localIds[localIds.length - 1]));
+            }
+        }
+        int[] merged = new int[size];
+        if (size == 0) {
+            return merged;
+        }
+
+        long[] marked = new long[(maxRoomId >>> 6) + 1];
+        for (int partition = 0; partition < byPartition.size(); partition++) {
+            for (int localId : byPartition.get(partition)) {
+                int roomId = partitions.roomId(partition, localId);
+                marked[roomId >>> 6] |= 1L << roomId;
+            }
+        }
+        int next = 0;
+        for (int i = 0; i < marked.length; i++) {
+            for (long word = marked[i]; word != 0; word &= word - 1) {
+                merged[next++] = (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return merged;
+    }
+}
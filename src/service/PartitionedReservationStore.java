@@ -0,0 +1,277 @@
+package service;
+
+import model.Reservation;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * One {@link ReservationStore} per {@link RoomPartitions} partition, each holding the reservations
+ * of its own rooms. Writes go to the room's partition alone, so bookings in different partitions
+ * never touch the same version, column or lock. The stores share one {@link ReservationLocations},
+ * so a lookup by id goes straight to the partition holding it.
+ * <p>
+ * Each partition publishes its own view after every write, under a gate of its own so an older
+ * view never replaces a newer one. A view of the whole store is assembled only when one is asked
+ * for: the partitions' views are read twice, and if nothing changed in between, they were all
+ * current at once, between the two passes. A batch spanning partitions takes their gates in order
+ * and clears their views until all of them are written, so a pass that meets a cleared view tries
+ * again. After a few failed tries the reader takes every gate for one pass instead, so it cannot
+ * starve. A lookup by id reads the stores directly, so it may find a reservation a moment before
+ * views do.
+ */
+final class PartitionedReservationStore implements ReservationStore {
+    private static final Comparator<Reservation> BY_ID = Comparator.comparingLong(Reservation::getId);
+    private static final int OPTIMISTIC_PASSES = 8;
+
+    private final RoomPartitions partitions;
+    private final ReservationStore[] stores;
+    private final ReservationLocations locations;
+    private final Partition[] published;
+
+    // Kept apart from the other partitions' so their writers do not share an object
+    private static final class Partition {
+        final ReentrantLock gate = new ReentrantLock();
+        // Null while a batch spanning partitions is half written
+        volatile ReservationView view;
+    }
+
+    PartitionedReservationStore(RoomPartitions partitions, ReservationStore[] stores, ReservationLocations locations) {
+        this.partitions = partitions;
+        this.stores = stores;
+        this.locations = locations;
+        this.published = new Partition[stores.length];
+        for (int partition = 0; partition < stores.length; partition++) {
+            published[partition] = new Partition();
+            published[partition].view = stores[partition].view();
+        }
+    }
+
+    @Override
+    public void add(int roomId, Reservation reservation) {
+        write(partitions.partitionOf(roomId), store -> store.add(partitions.localId(roomId), reservation));
+    }
+
+    @Override
+    public void addAll(int[] roomIds, List<Reservation> reservations) {
+        // Sorted, so batches lock the gates in the same order and cannot deadlock
+        SortedMap<Integer, List<Integer>> byPartition = new TreeMap<>();
+        for (int i = 0; i < roomIds.length; i++) {
+            byPartition.computeIfAbsent(partitions.partitionOf(roomIds[i]), k -> new ArrayList<>()).add(i);
+        }
+        if (byPartition.size() == 1) {
+            int partition = byPartition.firstKey();
+            write(partition, store -> store.addAll(localIds(roomIds), reservations));
+            return;
+        }
+
+        for (int partition : byPartition.keySet()) {
+            published[partition].gate.lock();
+        }
+        try {
+            for (int partition : byPartition.keySet()) {
+                published[partition].view = null;
+            }
+            for (Map.Entry<Integer, List<Integer>> entry : byPartition.entrySet()) {
+                List<Integer> indexes = entry.getValue();
+                int[] localIds = new int[indexes.size()];
+                List<Reservation> batch = new ArrayList<>(indexes.size());
+                for (int i = 0; i < localIds.length; i++) {
+                    localIds[i] = partitions.localId(roomIds[indexes.get(i)]);
+                    batch.add(reservations.get(indexes.get(i)));
+                }
+                stores[entry.getKey()].addAll(localIds, batch);
+            }
+            for (int partition : byPartition.keySet()) {
+                published[partition].view = stores[partition].view();
+            }
+        } finally {
+            for (int partition : byPartition.keySet()) {
+                published[partition].gate.unlock();
+            }
+        }
+    }
+
+    private int[] localIds(int[] roomIds) {
+        int[] localIds = new int[roomIds.length];
+        for (int i = 0; i < roomIds.length; i++) {
+            localIds[i] = partitions.localId(roomIds[i]);
+        }
+        return localIds;
+    }
+
+    @Override
+    public void remove(int roomId, Reservation reservation) {
+        write(partitions.partitionOf(roomId), store -> store.remove(partitions.localId(roomId), reservation));
+    }
+
+    @Override
+    public void replace(int roomId, Reservation previous, Reservation updated) {
+        write(partitions.partitionOf(roomId), store -> store.replace(partitions.localId(roomId), previous, updated));
+    }
+
+    private void write(int partition, Consumer<ReservationStore> write) {
+        Partition target = published[partition];
+        target.gate.lock();
+        try {
+            write.accept(stores[partition]);
+            target.view = stores[partition].view();
+        } finally {
+            target.gate.unlock();
+        }
+    }
+
+    @Override
+    public Reservation get(long reservationId) {
+        int partition = locations.partitionOf(reservationId);
+        return partition == ReservationLocations.NONE ? null : stores[partition].get(reservationId);
+    }
+
+    @Override
+    public ReservationView view() {
+        ReservationView[] views = new ReservationView[published.length];
+        if (!collectUnchanged(views)) {
+            // Writers kept moving; hold them off for one pass
+            for (Partition partition : published) {
+                partition.gate.lock();
+            }
+            try {
+                for (int partition = 0; partition < published.length; partition++) {
+                    views[partition] = published[partition].view;
+                }
+            } finally {
+                for (int partition = published.length - 1; partition >= 0; partition--) {
+                    published[partition].gate.unlock();
+                }
+            }
+        }
+        // Counted after the views, so every room they hold stays is below it
+        return new View(views, partitions.roomRegistry().size());
+    }
+
+    // Every write publishes a new view object, so a view read twice unchanged was current in between
+    private boolean collectUnchanged(ReservationView[] views) {
+        for (int pass = 0; pass < OPTIMISTIC_PASSES; pass++) {
+            boolean complete = true;
+            for (int partition = 0; partition < published.length && complete; partition++) {
+                views[partition] = published[partition].view;
+                complete = views[partition] != null;
+            }
+            for (int partition = 0; partition < published.length && complete; partition++) {
+                complete = published[partition].view == views[partition];
+            }
+            if (complete) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        long bytes = 0;
+        for (ReservationStore store : stores) {
+            bytes += store.estimateMemoryBytes();
+        }
+        return bytes;
+    }
+
+    private final class View implements ReservationView {
+        private final ReservationView[] views;
+        private final int roomCount;
+        private final int size;
+
+        View(ReservationView[] views, int roomCount) {
+            this.views = views;
+            this.roomCount = roomCount;
+            int total = 0;
+            for (ReservationView view : views) {
+                total += view.size();
+            }
+            this.size = total;
+        }
+
+        @Override
+        public List<Reservation> getStays(int roomId) {
+            return views[partitions.partitionOf(roomId)].getStays(partitions.localId(roomId));
+        }
+
+        @Override
+        public Iterator<Reservation> staysInRange(int roomId, Date from, Date to) {
+            return views[partitions.partitionOf(roomId)].staysInRange(partitions.localId(roomId), from, to);
+        }
+
+        @Override
+        public Collection<Reservation> getCustomerReservations(String customerEmail) {
+            Collection<Reservation> found = Collections.emptyList();
+            List<Reservation> merged = null;
+            for (ReservationView view : views) {
+                Collection<Reservation> reservations = view.getCustomerReservations(customerEmail);
+                if (reservations.isEmpty()) {
+                    continue;
+                }
+                if (found.isEmpty()) {
+                    found = reservations;
+                } else {
+                    if (merged == null) {
+                        merged = new ArrayList<>(found);
+                    }
+                    merged.addAll(reservations);
+                }
+            }
+            if (merged == null) {
+                return found;
+            }
+            // Id order, as a single store keeps them
+            merged.sort(BY_ID);
+            return Collections.unmodifiableList(merged);
+        }
+
+        @Override
+        public Set<String> getCustomerEmails() {
+            Set<String> emails = new HashSet<>();
+            for (ReservationView view : views) {
+                emails.addAll(view.getCustomerEmails());
+            }
+            return Collections.unmodifiableSet(emails);
+        }
+
+        @Override
+        public boolean isRoomAvailable(int roomId, Date checkInDate, Date checkOutDate) {
+            return views[partitions.partitionOf(roomId)].isRoomAvailable(partitions.localId(roomId), checkInDate, checkOutDate);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        // Each partition is copied on its own fork/join task
+        @Override
+        public List<Reservation> toList() {
+            return RoomPartitions.flatten(partitions.map(partition -> views[partition].toList()));
+        }
+
+        @Override
+        public Iterator<Reservation> iterator() {
+            Iterator<Integer> roomIds = new Iterator<Integer>() {
+                private int roomId;
+
+                @Override
+                public boolean hasNext() {
+                    return roomId < roomCount;
+                }
+
+                @Override
+                public Integer next() {
+                    if (roomId >= roomCount) {
+                        throw new NoSuchElementException();
+                    }
+                    return roomId++;
+                }
+            };
+            return ReservationCursors.concat(roomIds, roomId -> staysInRange(roomId, null, null));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package service;
+
+/**
+ * An immutable int-indexed array that grows as needed. Setting a slot returns a new array and
+ * leaves this one as it was, so readers holding it never see a change. It is a 32-way trie and
+ * only the path to the slot is copied: a set costs one 32-slot copy per level, four levels for a
+ * million slots.
+ */
+final class PersistentArray<T> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final PersistentArray<?> EMPTY = new PersistentArray<>(new Object[WIDTH], 0);
+
+    private final Object[] root;
+    // Bits of the index consumed above the leaves; 0 while the trie is a single leaf
+    private final int shift;
+
+    private PersistentArray(Object[] root, int shift) {
+        this.root = root;
+        this.shift = shift;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> PersistentArray<T> empty() {
+        return (PersistentArray<T>) EMPTY;
+    }
+
+    /**
+     * Returns the value at {@code index}, or null if it was never set.
+     */
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        if (index < 0 || index >= capacity(shift)) {
+            return null;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (T) node[index & MASK];
+    }
+
+    PersistentArray<T> set(int index, T value) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Index cannot be negative: " + index);
+        }
+
+        Object[] newRoot = root;
+        int newShift = shift;
+        while (index >= capacity(newShift)) {
+            Object[] taller = new Object[WIDTH];
+            taller[0] = newRoot;
+            newRoot = taller;
+            newShift += BITS;
+        }
+        return new PersistentArray<>(set(newRoot, newShift, index, value), newShift);
+    }
+
+    private static Object[] set(Object[] node, int level, int index, Object value) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int slot = (index >>> level) & MASK;
+        copy[slot] = level == 0 ? value : set((Object[]) copy[slot], level - BITS, index, value);
+        return copy;
+    }
+
+    private static long capacity(int shift) {
+        return 1L << (shift + BITS);
+    }
+}
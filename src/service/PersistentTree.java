@@ -0,0 +1,208 @@
+package service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * An immutable sorted set. Inserting or removing returns a new tree and leaves this one as it was,
+ * so readers holding it never see a change. It is a treap, balanced by a priority hashed from each
+ * element, and only the path to the changed node is copied: a write costs O(log n) new nodes.
+ */
+final class PersistentTree<T> {
+    private final Comparator<? super T> order;
+    private final Node<T> root;
+    private final int size;
+
+    private static final class Node<T> {
+        final T value;
+        final int priority;
+        final Node<T> left;
+        final Node<T> right;
+
+        Node(T value, int priority, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+        }
+
+        Node<T> with(Node<T> left, Node<T> right) {
+            return new Node<>(value, priority, left, right);
+        }
+    }
+
+    private PersistentTree(Comparator<? super T> order, Node<T> root, int size) {
+        this.order = order;
+        this.root = root;
+        this.size = size;
+    }
+
+    static <T> PersistentTree<T> empty(Comparator<? super T> order) {
+        return new PersistentTree<>(order, null, 0);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a tree that also holds {@code value}, replacing an element equal to it in this order.
+     */
+    PersistentTree<T> insert(T value) {
+        boolean[] replaced = new boolean[1];
+        Node<T> newRoot = insert(root, value, priorityOf(value), replaced);
+        return new PersistentTree<>(order, newRoot, replaced[0] ? size : size + 1);
+    }
+
+    private Node<T> insert(Node<T> node, T value, int priority, boolean[] replaced) {
+        if (node == null) {
+            return new Node<>(value, priority, null, null);
+        }
+        int comparison = order.compare(value, node.value);
+        if (comparison == 0) {
+            replaced[0] = true;
+            return new Node<>(value, node.priority, node.left, node.right);
+        }
+        if (comparison < 0) {
+            Node<T> left = insert(node.left, value, priority, replaced);
+            // Rotate right while the new node outranks its parent
+            return left.priority > node.priority ? left.with(left.left, node.with(left.right, node.right))
+                    : node.with(left, node.right);
+        }
+        Node<T> right = insert(node.right, value, priority, replaced);
+        return right.priority > node.priority ? right.with(node.with(node.left, right.left), right.right)
+                : node.with(node.left, right);
+    }
+
+    /**
+     * Returns a tree without the element equal to {@code value} in this order, or this tree if
+     * there is none.
+     */
+    PersistentTree<T> remove(T value) {
+        Node<T> newRoot = remove(root, value);
+        return newRoot == root ? this : new PersistentTree<>(order, newRoot, size - 1);
+    }
+
+    private Node<T> remove(Node<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = order.compare(value, node.value);
+        if (comparison == 0) {
+            return join(node.left, node.right);
+        }
+        if (comparison < 0) {
+            Node<T> left = remove(node.left, value);
+            return left == node.left ? node : node.with(left, node.right);
+        }
+        Node<T> right = remove(node.right, value);
+        return right == node.right ? node : node.with(node.left, right);
+    }
+
+    // Every element of 'left' sorts before every element of 'right'
+    private static <T> Node<T> join(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        return left.priority > right.priority ? left.with(left.left, join(left.right, right))
+                : right.with(join(left, right.left), right.right);
+    }
+
+    /**
+     * Returns the last element that passes {@code prefix}, which passes on a prefix of the
+     * elements and fails on the rest, or null if none does.
+     */
+    T last(Predicate<? super T> prefix) {
+        T found = null;
+        for (Node<T> node = root; node != null; ) {
+            if (prefix.test(node.value)) {
+                found = node.value;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the first element that fails {@code prefix}, which passes on a prefix of the
+     * elements and fails on the rest, or null if every one passes.
+     */
+    T first(Predicate<? super T> prefix) {
+        T found = null;
+        for (Node<T> node = root; node != null; ) {
+            if (prefix.test(node.value)) {
+                node = node.right;
+            } else {
+                found = node.value;
+                node = node.left;
+            }
+        }
+        return found;
+    }
+
+    Iterator<T> iterator() {
+        return iterator(value -> false);
+    }
+
+    /**
+     * Iterates in order over the elements after those that pass {@code prefix}, which passes on a
+     * prefix of the elements and fails on the rest. Only the path to the first one is walked up front.
+     */
+    Iterator<T> iterator(Predicate<? super T> prefix) {
+        Deque<Node<T>> path = new ArrayDeque<>();
+        for (Node<T> node = root; node != null; ) {
+            if (prefix.test(node.value)) {
+                node = node.right;
+            } else {
+                path.push(node);
+                node = node.left;
+            }
+        }
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                Node<T> node = path.poll();
+                if (node == null) {
+                    throw new NoSuchElementException();
+                }
+                for (Node<T> next = node.right; next != null; next = next.left) {
+                    path.push(next);
+                }
+                return node.value;
+            }
+        };
+    }
+
+    List<T> toList() {
+        List<T> values = new ArrayList<>(size);
+        iterator().forEachRemaining(values::add);
+        return values;
+    }
+
+    // The hash code spread over all bits, so equal-looking ids do not line up into a list
+    private static int priorityOf(Object value) {
+        int hash = value.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,155 @@
+package service;
+
+import model.Reservation;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Lazy iterators used to walk reservations in report order without copying them into a list.
+ */
+class ReservationCursors {
+    private ReservationCursors() {}
+
+    /**
+     * Stays from one room's check-in-ordered list that overlap [from, to); either bound may be null.
+     */
+    static Iterator<Reservation> staysInRange(List<Reservation> stays, Date from, Date to) {
+        // Check-outs are ordered like check-ins, so the overlapping stays are one run of the list
+        int first = from == null ? 0 : firstIndex(stays, stay -> stay.getCheckOutDate().after(from));
+        int end = to == null ? stays.size() : firstIndex(stays, stay -> !stay.getCheckInDate().before(to));
+        return stays.subList(first, Math.max(first, end)).iterator();
+    }
+
+    // First index whose stay passes 'test', which fails on a prefix of the list and passes on the rest
+    private static int firstIndex(List<Reservation> stays, java.util.function.Predicate<Reservation> test) {
+        int low = 0;
+        int high = stays.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (test.test(stays.get(middle))) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    static boolean overlaps(Reservation reservation, Date from, Date to) {
+        return (from == null || reservation.getCheckOutDate().after(from))
+                && (to == null || reservation.getCheckInDate().before(to));
+    }
+
+    static Iterator<Reservation> filter(Iterator<Reservation> source, java.util.function.Predicate<Reservation> predicate) {
+        return new Iterator<Reservation>() {
+            private Reservation next = advance();
+
+            private Reservation advance() {
+                while (source.hasNext()) {
+                    Reservation candidate = source.next();
+                    if (predicate.test(candidate)) {
+                        return candidate;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Reservation next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Reservation current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Walks {@code keys} in order and each key's reservations in turn, opening each inner cursor only when reached.
+     */
+    static <K> Iterator<Reservation> concat(Iterator<K> keys, Function<K, Iterator<Reservation>> cursorFor) {
+        return new Iterator<Reservation>() {
+            private Iterator<Reservation> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && keys.hasNext()) {
+                    current = cursorFor.apply(keys.next());
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Reservation next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Merges cursors that are each ordered by {@code order} into one ordered cursor, holding one
+     * reservation per source. Nothing is pulled from the sources until the cursor is first read.
+     */
+    static Iterator<Reservation> merge(List<Iterator<Reservation>> sources, Comparator<Reservation> order) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> order.compare(a.reservation, b.reservation));
+
+        return new Iterator<Reservation>() {
+            private boolean started;
+
+            private void start() {
+                if (started) {
+                    return;
+                }
+                started = true;
+                for (Iterator<Reservation> source : sources) {
+                    if (source.hasNext()) {
+                        heads.add(new Head(source.next(), source));
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                start();
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Reservation next() {
+                start();
+                Head head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                Reservation current = head.reservation;
+                if (head.source.hasNext()) {
+                    head.reservation = head.source.next();
+                    heads.add(head);
+                }
+                return current;
+            }
+        };
+    }
+
+    private static class Head {
+        Reservation reservation;
+        final Iterator<Reservation> source;
+
+        Head(Reservation reservation, Iterator<Reservation> source) {
+            this.reservation = reservation;
+            this.source = source;
+        }
+    }
+}
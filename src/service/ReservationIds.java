@@ -0,0 +1,58 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out reservation ids. Each {@link RoomPartitions} partition takes them from the shared
+ * counter a block at a time, so bookings in different partitions only meet there once every
+ * {@value #BLOCK} ids. Ids are unique and rise within a partition; across partitions a later
+ * booking may get a lower id, and ids left in a block at a restart are skipped. A single partition
+ * takes them straight from the counter, one at a time and in order.
+ * <p>
+ * Restored ids only raise the shared counter, so restores must run before the first booking, as
+ * they do at startup.
+ */
+final class ReservationIds {
+    private static final int BLOCK = 64;
+
+    private final AtomicLong reserved = new AtomicLong();
+    private final Block[] blocks;
+
+    // The ids from next + 1 up to end are this partition's to hand out
+    private static final class Block {
+        long next;
+        long end;
+    }
+
+    ReservationIds(int partitionCount) {
+        blocks = new Block[partitionCount];
+        for (int partition = 0; partition < partitionCount; partition++) {
+            blocks[partition] = new Block();
+        }
+    }
+
+    long next(int partition) {
+        if (blocks.length == 1) {
+            return reserved.incrementAndGet();
+        }
+        Block block = blocks[partition];
+        synchronized (block) {
+            if (block.next == block.end) {
+                block.end = reserved.addAndGet(BLOCK);
+                block.next = block.end - BLOCK;
+            }
+            return ++block.next;
+        }
+    }
+
+    /**
+     * The highest id reserved so far; ids below it may still be handed out from a partition's block.
+     */
+    long last() {
+        return reserved.get();
+    }
+
+    void restore(long reservationId) {
+        reserved.accumulateAndGet(reservationId, Math::max);
+    }
+}
@@ -0,0 +1,114 @@
+package service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Where each reservation id lives: its {@link RoomPartitions} partition and a number local to that
+ * partition's store, such as a columnar row, packed into one int. One instance is shared by the
+ * stores of every partition, so the hotel holds a single entry per id however many partitions
+ * there are, and a lookup by id goes straight to the right partition.
+ * <p>
+ * The service hands ids out one by one, so they index an array. It is split into fixed chunks
+ * that are never moved once created, so stores of different partitions set entries concurrently
+ * without a shared lock; entries are published with release/acquire ordering. Only creating a
+ * chunk, once per few thousand ids, takes the monitor and republishes the list of chunks.
+ */
+final class ReservationLocations {
+    static final int NONE = -1;
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private static final int[][] NO_CHUNKS = new int[0][];
+
+    // Never changed once published; a missing or null entry is a chunk not created yet
+    private volatile int[][] chunks = NO_CHUNKS;
+    private final int partitionMask;
+    private final int shift;
+
+    ReservationLocations(int partitionCount) {
+        if (Integer.bitCount(partitionCount) != 1) {
+            throw new IllegalArgumentException("Partition count must be a power of two");
+        }
+        this.partitionMask = partitionCount - 1;
+        this.shift = Integer.numberOfTrailingZeros(partitionCount);
+    }
+
+    /**
+     * Returns the partition holding {@code reservationId}, or NONE.
+     */
+    int partitionOf(long reservationId) {
+        int location = get(reservationId);
+        return location == NONE ? NONE : location & partitionMask;
+    }
+
+    /**
+     * Returns the local number {@code partition} set for {@code reservationId}, or NONE if the id
+     * is not held there.
+     */
+    int localOf(long reservationId, int partition) {
+        int location = get(reservationId);
+        return location == NONE || (location & partitionMask) != partition ? NONE : location >>> shift;
+    }
+
+    void set(long reservationId, int partition, int local) {
+        if (local < 0 || local > (Integer.MAX_VALUE >>> shift)) {
+            throw new IllegalArgumentException("Local number out of range: " + local);
+        }
+        INTS.setRelease(chunkFor(reservationId), (int) reservationId & CHUNK_MASK, local << shift | partition);
+    }
+
+    void clear(long reservationId) {
+        INTS.setRelease(chunkFor(reservationId), (int) reservationId & CHUNK_MASK, NONE);
+    }
+
+    /**
+     * The chunks created so far and the directory of them.
+     */
+    long estimateMemoryBytes() {
+        int[][] current = chunks;
+        long bytes = 16 + 4L * current.length;
+        for (int[] chunk : current) {
+            if (chunk != null) {
+                bytes += 16 + 4L * chunk.length;
+            }
+        }
+        return bytes;
+    }
+
+    private int get(long reservationId) {
+        if (reservationId < 0 || reservationId > Integer.MAX_VALUE) {
+            return NONE;
+        }
+        int[][] current = chunks;
+        int index = (int) (reservationId >>> CHUNK_BITS);
+        int[] chunk = index < current.length ? current[index] : null;
+        return chunk == null ? NONE : (int) INTS.getAcquire(chunk, (int) reservationId & CHUNK_MASK);
+    }
+
+    private int[] chunkFor(long reservationId) {
+        if (reservationId < 0 || reservationId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Reservation id out of range: " + reservationId);
+        }
+        int index = (int) (reservationId >>> CHUNK_BITS);
+        int[][] current = chunks;
+        int[] chunk = index < current.length ? current[index] : null;
+        return chunk != null ? chunk : createChunk(index);
+    }
+
+    // Rechecks under the monitor, since another partition's writer may have just created it
+    private synchronized int[] createChunk(int index) {
+        int[][] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        int[][] grown = Arrays.copyOf(current, index < current.length ? current.length
+                : Math.max(index + 1, current.length * 2));
+        int[] chunk = new int[CHUNK_MASK + 1];
+        Arrays.fill(chunk, NONE);
+        grown[index] = chunk;
+        chunks = grown;
+        return chunk;
+    }
+}
@@ -0,0 +1,92 @@
+package service;
+
+import model.Reservation;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Writes reservations from a cursor one page at a time. Rows are formatted into one reused buffer
+ * and only the current reservation is held, so a report over any number of reservations uses
+ * constant memory.
+ */
+public class ReservationReport {
+    public enum SortKey {
+        CHECK_IN, ROOM, CUSTOMER
+    }
+
+    private static final String SEPARATOR = "------------------------";
+    // Same layout as Date.toString(), so rows match Reservation.toString()
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+
+    private final Iterator<Reservation> cursor;
+    private final int pageSize;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    public ReservationReport(Iterator<Reservation> cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.cursor = cursor;
+        this.pageSize = pageSize;
+    }
+
+    public boolean hasMore() {
+        return cursor.hasNext();
+    }
+
+    /**
+     * Writes up to one page of reservations and returns how many were written.
+     */
+    public int writeNextPage(Appendable out) throws IOException {
+        int written = 0;
+        while (written < pageSize && cursor.hasNext()) {
+            writeRow(cursor.next(), out);
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Writes every remaining reservation and returns how many were written.
+     */
+    public long writeAll(Appendable out) throws IOException {
+        long written = 0;
+        while (cursor.hasNext()) {
+            writeRow(cursor.next(), out);
+            written++;
+        }
+        return written;
+    }
+
+    private void writeRow(Reservation reservation, Appendable out) throws IOException {
+        buffer.setLength(0);
+        buffer.append("Reservation Details:")
+                .append("\nCustomer: ").append(reservation.getCustomer().getFirstName())
+                .append(' ').append(reservation.getCustomer().getLastName())
+                .append("\nRoom: ").append(reservation.getRoom().getRoomNumber())
+                .append(" - ").append(reservation.getRoom().getRoomType())
+                .append("\nPrice: ");
+        if (reservation.getRoom().isFree()) {
+            buffer.append("FREE");
+        } else {
+            buffer.append('$').append(reservation.getRoom().getRoomPrice());
+        }
+        buffer.append("\nCheck-In Date: ");
+        appendDate(reservation.getCheckInDate());
+        buffer.append("\nCheck-Out Date: ");
+        appendDate(reservation.getCheckOutDate());
+        buffer.append('\n').append(SEPARATOR).append('\n');
+        out.append(buffer);
+    }
+
+    private void appendDate(Date date) {
+        DATE_FORMAT.formatTo(date.toInstant().atZone(zone), buffer);
+    }
+}
@@ -1,48 +1,673 @@
 package service;
 
+import model.BookingRequest;
+import model.CacheStats;
 import model.IRoom;
 import model.Room;
 import model.Reservation;
 import model.Customer;
+import model.RoomSearch;
+import model.RoomType;
+import persistence.ReservationJournal;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
+/**
+ * Rooms and reservations are safe to use from many threads. A room is only written while its
+ * {@link RoomLocks} stripe is held, which makes the availability check and the insert in
+ * {@link #reserveARoom} one atomic step. Reads never lock, and listings, reports and filtered
+ * searches read a {@link ReservationView}, one consistent state of every reservation.
+ * <p>
+ * Rooms are addressed by their {@link RoomRegistry} id. Callers translate a room number with
+ * {@link #getRoomId} once per request; everything below works on the int.
+ * <p>
+ * Rooms are split into {@link RoomPartitions} by id, each with its own availability index and
+ * reservation store, and room lock stripes never span two partitions. A booking, cancellation or
+ * move works in its room's partition alone; searches, listings and consistency checks run in
+ * every partition at once on the fork/join pool and merge what they find.
+ * <p>
+ * Every reservation gets an id when it is booked. The id stays with it when its dates change and
+ * is never handed out again, so a reservation can be cancelled or moved by id alone.
+ */
 public class ReservationService {
     private static final ReservationService instance = new ReservationService();
-    private final Map<String, IRoom> rooms = new HashMap<>();
-    private final Map<String, Collection<Reservation>> reservations = new HashMap<>();
+    private static final int[] SAME_DAYS = {0};
+    private static final int MAX_PROBLEMS = 100;
+    // How far ahead a stay may end. The per-night totals span every booked night, so a far-off
+    // date would size them for all the years in between
+    private static final int MAX_DAYS_AHEAD = 3653;
+    private final RoomRegistry roomRegistry = new RoomRegistry();
+    private final RoomPartitions partitions;
+    private final String engine;
+    private final AvailabilityIndex availabilityIndex;
+    private final ReservationStore reservationStore;
+    // Secondary indexes for filtered search: room ids by nightly price, overall and per room type
+    private final ConcurrentNavigableMap<Double, Set<Integer>> roomsByPrice = new ConcurrentSkipListMap<>();
+    private final Map<RoomType, ConcurrentNavigableMap<Double, Set<Integer>>> roomsByTypeAndPrice = createTypeIndex();
+    private final RoomLocks roomLocks;
+    private final OccupancyService occupancyService = OccupancyService.getInstance();
+    private final RevenueService revenueService = RevenueService.getInstance();
+    // Serializes adding rooms, so a room is journaled before anyone can look its id up
+    private final Object roomAdditions = new Object();
+    // -Dhotel.availabilityCache sets how many answers each cache keeps; 0 turns caching off
+    private final int cacheCapacity = Integer.getInteger("hotel.availabilityCache", 1024);
+    private final AvailabilityCache<Collection<IRoom>> roomsCache =
+            new AvailabilityCache<>(cacheCapacity, new EpochDays(ZoneId.systemDefault()));
+    private final AvailabilityCache<SortedMap<Integer, Collection<IRoom>>> alternativesCache =
+            new AvailabilityCache<>(cacheCapacity, new EpochDays(ZoneId.systemDefault()));
+    private final ReservationIds reservationIds;
+    // Ids are also used up by bookings that turn out to clash, so they cannot count bookings
+    private final LongAdder bookingCount = new LongAdder();
+    private volatile ReservationJournal journal;
 
-    private ReservationService() {}
+    // -Dhotel.availability picks the engine: bitmap (default), interval, or columnar,
+    // which also replaces the per-customer object lists with primitive columns.
+    // -Dhotel.partitions sets the number of partitions, a power of two. One by default: on a single
+    // core the fan-out only costs, so partitioning is for hosts with cores to spread searches over
+    private ReservationService() {
+        engine = System.getProperty("hotel.availability", "bitmap");
+        partitions = new RoomPartitions(roomRegistry, RoomPartitions.configuredCount());
+        roomLocks = new RoomLocks(Math.max(64, partitions.count()));
+        reservationIds = new ReservationIds(partitions.count());
+
+        int count = partitions.count();
+        AvailabilityIndex[] indexes = new AvailabilityIndex[count];
+        ReservationStore[] stores = new ReservationStore[count];
+        // One entry per reservation id for the whole hotel, saying which partition holds it
+        ReservationLocations locations = new ReservationLocations(count);
+        for (int partition = 0; partition < count; partition++) {
+            RoomRegistry partitionRooms = partitions.registry(partition);
+            switch (engine) {
+                case "bitmap":
+                    indexes[partition] = new BitmapAvailabilityIndex(partitionRooms);
+                    stores[partition] = count == 1 ? new ObjectReservationStore()
+                            : new ObjectReservationStore(locations, partition, count);
+                    break;
+                case "interval":
+                    indexes[partition] = new IntervalAvailabilityIndex(partitionRooms);
+                    stores[partition] = count == 1 ? new ObjectReservationStore()
+                            : new ObjectReservationStore(locations, partition, count);
+                    break;
+                case "columnar":
+                    ColumnarReservationStore columnar = new ColumnarReservationStore(partitionRooms, locations, partition, count);
+                    indexes[partition] = columnar;
+                    stores[partition] = columnar;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown availability engine: " + engine);
+            }
+        }
+        // A single partition needs no routing
+        availabilityIndex = indexes.length == 1 ? indexes[0] : new PartitionedAvailabilityIndex(partitions, indexes);
+        reservationStore = stores.length == 1 ? stores[0] : new PartitionedReservationStore(partitions, stores, locations);
+    }
+
+    // Every type is added up front, so the EnumMap itself is never written after construction
+    private static Map<RoomType, ConcurrentNavigableMap<Double, Set<Integer>>> createTypeIndex() {
+        Map<RoomType, ConcurrentNavigableMap<Double, Set<Integer>>> index = new EnumMap<>(RoomType.class);
+        for (RoomType roomType : RoomType.values()) {
+            index.put(roomType, new ConcurrentSkipListMap<>());
+        }
+        return index;
+    }
 
     public static ReservationService getInstance() {
         return instance;
     }
 
+    public void setJournal(ReservationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Reads {@code journal}'s position while no room is being added. A room is logged before it is
+     * registered, so bookings for it are always logged after it; a position read between the two
+     * would cover a room that is not in memory yet.
+     */
+    public long journalPosition(ReservationJournal journal) {
+        synchronized (roomAdditions) {
+            return journal.position();
+        }
+    }
+
     public void addRoom(IRoom room) {
+        validateRoom(room);
+
+        ReservationJournal journal = this.journal;
+        long journalPosition = 0;
+        synchronized (roomAdditions) {
+            if (roomRegistry.idOf(room.getRoomNumber()) != RoomRegistry.NO_ROOM) {
+                throw new IllegalArgumentException("Room with number " + room.getRoomNumber() + " already exists");
+            }
+            if (journal != null) {
+                journalPosition = journal.logRoom(room);
+            }
+            insertRoom(room);
+        }
+        awaitDurable(journal, journalPosition);
+    }
+
+    /**
+     * Adds rooms in bulk and waits for the journal once for the whole batch. Rooms whose number
+     * already exists are skipped and returned; the rest are added. Every room is validated before
+     * any is added, so an invalid one fails the batch without leaving part of it behind.
+     */
+    public List<IRoom> addRooms(List<IRoom> newRooms) {
+        if (newRooms == null) {
+            throw new IllegalArgumentException("Rooms cannot be null");
+        }
+        for (IRoom room : newRooms) {
+            validateRoom(room);
+        }
+
+        ReservationJournal journal = this.journal;
+        long journalPosition = 0;
+        List<IRoom> rejected = new ArrayList<>();
+        synchronized (roomAdditions) {
+            for (IRoom room : newRooms) {
+                if (roomRegistry.idOf(room.getRoomNumber()) != RoomRegistry.NO_ROOM) {
+                    rejected.add(room);
+                    continue;
+                }
+                if (journal != null) {
+                    journalPosition = journal.logRoom(room);
+                }
+                insertRoom(room);
+            }
+        }
+        awaitDurable(journal, journalPosition);
+        return rejected;
+    }
+
+    /**
+     * Adds a room read back from a snapshot or the journal, without logging it again.
+     * A room that is already present is left alone, so records may be replayed twice.
+     */
+    public void restoreRoom(IRoom room) {
+        synchronized (roomAdditions) {
+            if (roomRegistry.idOf(room.getRoomNumber()) == RoomRegistry.NO_ROOM) {
+                insertRoom(room);
+            }
+        }
+    }
+
+    private static void validateRoom(IRoom room) {
         if (room == null || room.getRoomNumber() == null || room.getRoomNumber().trim().isEmpty()) {
             throw new IllegalArgumentException("Room and room number cannot be null or empty");
         }
+    }
 
-        if (rooms.containsKey(room.getRoomNumber())) {
-            throw new IllegalArgumentException("Room with number " + room.getRoomNumber() + " already exists");
+    private void insertRoom(IRoom room) {
+        int roomId = partitions.register(room);
+        double price = priceOf(room);
+        roomsByPrice.computeIfAbsent(price, k -> ConcurrentHashMap.newKeySet()).add(roomId);
+        if (room.getRoomType() != null) {
+            roomsByTypeAndPrice.get(room.getRoomType())
+                    .computeIfAbsent(price, k -> ConcurrentHashMap.newKeySet()).add(roomId);
         }
+        occupancyService.addRoom(room.getRoomType());
+        // The new room is free on every night, so every cached answer is now short of it
+        roomsCache.invalidateAll();
+        alternativesCache.invalidateAll();
+    }
 
-        rooms.put(room.getRoomNumber(), room);
+    private static double priceOf(IRoom room) {
+        return room.getRoomPrice() == null ? 0.0 : room.getRoomPrice();
     }
 
     public IRoom getARoom(String roomId) {
         if (roomId == null || roomId.trim().isEmpty()) {
             throw new IllegalArgumentException("Room ID cannot be null or empty");
         }
-        return rooms.get(roomId);
+        int id = roomRegistry.idOf(roomId);
+        return id == RoomRegistry.NO_ROOM ? null : roomRegistry.room(id);
+    }
+
+    /**
+     * Returns the id of the room with {@code roomNumber}, or {@link RoomRegistry#NO_ROOM} if there is none.
+     */
+    public int getRoomId(String roomNumber) {
+        return roomRegistry.idOf(roomNumber);
+    }
+
+    public Reservation reserveARoom(Customer customer, int roomId, Date checkInDate, Date checkOutDate) {
+        validateStay(customer, roomId, checkInDate, checkOutDate);
+
+        ReservationJournal journal = this.journal;
+        long journalPosition = 0;
+        Reservation reservation;
+        Lock lock = roomLocks.lockFor(roomId);
+        lock.lock();
+        try {
+            reservation = insertReservation(reservationIds.next(partitions.partitionOf(roomId)), customer, roomId, checkInDate, checkOutDate);
+            if (journal != null) {
+                journalPosition = journal.logReservation(partitions.partitionOf(roomId), reservation);
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Wait outside the room lock so concurrent bookings share one fsync
+        awaitDurable(journal, journalPosition);
+        return reservation;
+    }
+
+    /**
+     * Books every request for {@code customer} or none of them. All rooms involved are locked
+     * together, in stripe order, while the whole batch is checked and inserted, and the batch is
+     * journaled as a single record. Views see all of the batch or none of it.
+     */
+    public List<Reservation> reserveRooms(Customer customer, List<BookingRequest> requests) {
+        if (customer == null || requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("Customer and booking requests must be non-null and non-empty");
+        }
+
+        int[] roomIds = new int[requests.size()];
+        Map<Integer, List<BookingRequest>> requestsByRoom = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            BookingRequest request = requests.get(i);
+            if (request == null || request.getRoom() == null) {
+                throw new IllegalArgumentException("Booking requests cannot contain null");
+            }
+            roomIds[i] = roomRegistry.idOf(request.getRoom().getRoomNumber());
+            validateStay(customer, roomIds[i], request.getCheckInDate(), request.getCheckOutDate());
+            requestsByRoom.computeIfAbsent(roomIds[i], k -> new ArrayList<>()).add(request);
+        }
+
+        // Stays requested for the same room must not overlap each other
+        for (List<BookingRequest> roomRequests : requestsByRoom.values()) {
+            roomRequests.sort(Comparator.comparing(BookingRequest::getCheckInDate));
+            for (int i = 1; i < roomRequests.size(); i++) {
+                if (roomRequests.get(i).getCheckInDate().before(roomRequests.get(i - 1).getCheckOutDate())) {
+                    throw new IllegalArgumentException("Booking requests overlap for room "
+                            + roomRequests.get(i).getRoom().getRoomNumber());
+                }
+            }
+        }
+
+        ReservationJournal journal = this.journal;
+        long journalPosition = 0;
+        List<Reservation> booked = new ArrayList<>(requests.size());
+        List<ReentrantLock> locks = roomLocks.locksFor(requestsByRoom.keySet());
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                BookingRequest request = requests.get(i);
+                if (!availabilityIndex.isRoomAvailable(roomIds[i], request.getCheckInDate(), request.getCheckOutDate())) {
+                    throw new IllegalArgumentException("Room " + request.getRoom().getRoomNumber()
+                            + " is not available for the selected dates");
+                }
+            }
+
+            for (int i = 0; i < requests.size(); i++) {
+                BookingRequest request = requests.get(i);
+                Reservation reservation = new Reservation(reservationIds.next(partitions.partitionOf(roomIds[i])), customer,
+                        roomRegistry.room(roomIds[i]), request.getCheckInDate(), request.getCheckOutDate());
+                availabilityIndex.addReservation(roomIds[i], reservation);
+                booked.add(reservation);
+            }
+            // In one go, so no view holds part of the batch even when its rooms sit in different partitions
+            reservationStore.addAll(roomIds, booked);
+            for (int i = 0; i < booked.size(); i++) {
+                countStay(roomIds[i], booked.get(i));
+            }
+            if (journal != null) {
+                journalPosition = journal.logReservations(partitionOfAll(roomIds), booked);
+            }
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+        awaitDurable(journal, journalPosition);
+        return booked;
+    }
+
+    /**
+     * Books {@code count} free rooms of {@code roomType} for the same stay, or none at all.
+     */
+    public List<Reservation> reserveRoomsOfType(Customer customer, RoomType roomType, int count,
+                                                Date checkInDate, Date checkOutDate) {
+        if (roomType == null || count <= 0) {
+            throw new IllegalArgumentException("Room type must be non-null and count must be positive");
+        }
+
+        // Another booking can take a candidate between the search and the batch; pick again if so
+        IllegalArgumentException lastFailure = null;
+        for (int attempt = 0; attempt < 3; attempt++) {
+            List<BookingRequest> requests = findRooms(checkInDate, checkOutDate).stream()
+                    .filter(room -> room.getRoomType() == roomType)
+                    .limit(count)
+                    .map(room -> new BookingRequest(room, checkInDate, checkOutDate))
+                    .collect(Collectors.toList());
+            if (requests.size() < count) {
+                throw new IllegalArgumentException("Only " + requests.size() + " " + roomType
+                        + " room(s) available for the selected dates");
+            }
+
+            try {
+                return reserveRooms(customer, requests);
+            } catch (IllegalArgumentException ex) {
+                lastFailure = ex;
+            }
+        }
+        throw lastFailure;
+    }
+
+    public Reservation getReservation(long reservationId) {
+        return reservationStore.get(reservationId);
+    }
+
+    /**
+     * Cancels the reservation with {@code reservationId} and frees its nights.
+     */
+    public Reservation cancelReservation(long reservationId) {
+        Reservation reservation = reservationStore.get(reservationId);
+        if (reservation == null) {
+            throw new IllegalArgumentException("Reservation " + reservationId + " not found");
+        }
+
+        int roomId = roomRegistry.idOf(reservation.getRoom().getRoomNumber());
+        ReservationJournal journal = this.journal;
+        long journalPosition = 0;
+        Lock lock = roomLocks.lockFor(roomId);
+        lock.lock();
+        try {
+            // Read again under the lock; the reservation may have been moved or cancelled meanwhile
+            reservation = reservationStore.get(reservationId);
+            if (reservation == null) {
+                throw new IllegalArgumentException("Reservation " + reservationId + " not found");
+            }
+            deleteReservation(roomId, reservation);
+            if (journal != null) {
+                journalPosition = journal.logCancellation(partitions.partitionOf(roomId), reservationId);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(journal, journalPosition);
+        return reservation;
+    }
+
+    /**
+     * Moves the reservation with {@code reservationId} to new dates in the same room. The check
+     * ignores the reservation's own nights, and the room stays held on every night the old and the
+     * new stay share, so no concurrent booking can slip in between.
+     */
+    public Reservation modifyReservation(long reservationId, Date checkInDate, Date checkOutDate) {
+        Reservation reservation = reservationStore.get(reservationId);
+        if (reservation == null) {
+            throw new IllegalArgumentException("Reservation " + reservationId + " not found");
+        }
+
+        int roomId = roomRegistry.idOf(reservation.getRoom().getRoomNumber());
+        validateStay(reservation.getCustomer(), roomId, checkInDate, checkOutDate);
+
+        ReservationJournal journal = this.journal;
+        long journalPosition = 0;
+        Reservation updated;
+        Lock lock = roomLocks.lockFor(roomId);
+        lock.lock();
+        try {
+            reservation = reservationStore.get(reservationId);
+            if (reservation == null) {
+                throw new IllegalArgumentException("Reservation " + reservationId + " not found");
+            }
+            updated = moveReservation(roomId, reservation, checkInDate, checkOutDate);
+            if (journal != null) {
+                journalPosition = journal.logModification(partitions.partitionOf(roomId), reservationId, checkInDate, checkOutDate);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(journal, journalPosition);
+        return updated;
+    }
+
+    /**
+     * Adds a reservation read back from a snapshot or the journal under its original id. It is not
+     * logged again, and check-in dates that have since passed are accepted. A reservation that is
+     * already present is left alone, and one that clashes with a later state of the room, as a
+     * snapshot taken while bookings ran may hold, is skipped; both return null.
+     */
+    public Reservation restoreReservation(long reservationId, Customer customer, IRoom room,
+                                          Date checkInDate, Date checkOutDate) {
+        int roomId = restoredRoomId(room);
+        reservationIds.restore(reservationId);
+
+        Lock lock = roomLocks.lockFor(roomId);
+        lock.lock();
+        try {
+            if (reservationStore.get(reservationId) != null
+                    || !availabilityIndex.isRoomAvailable(roomId, checkInDate, checkOutDate)) {
+                return null;
+            }
+            return insertReservation(reservationId, customer, roomId, checkInDate, checkOutDate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the reservations of a snapshot in one batch, under their original ids. As with
+     * {@link #restoreReservation}, they are not logged, passed check-in dates are accepted, and any
+     * already present or clashing with one added before it is skipped. Each room's lock is taken
+     * once and the store takes them all in one write, so a large snapshot costs no more per
+     * reservation than its index entry and its totals. Returns how many were added.
+     */
+    public int restoreReservations(List<Reservation> reservations) {
+        int[] roomIds = new int[reservations.size()];
+        Set<Integer> distinctRoomIds = new HashSet<>();
+        for (int i = 0; i < roomIds.length; i++) {
+            Reservation reservation = reservations.get(i);
+            roomIds[i] = restoredRoomId(reservation.getRoom());
+            reservationIds.restore(reservation.getId());
+            distinctRoomIds.add(roomIds[i]);
+        }
+
+        int[] addedRoomIds = new int[roomIds.length];
+        List<Reservation> added = new ArrayList<>(roomIds.length);
+        List<ReentrantLock> locks = roomLocks.locksFor(distinctRoomIds);
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            for (int i = 0; i < roomIds.length; i++) {
+                Reservation reservation = reservations.get(i);
+                if (reservationStore.get(reservation.getId()) != null || !availabilityIndex.isRoomAvailable(
+                        roomIds[i], reservation.getCheckInDate(), reservation.getCheckOutDate())) {
+                    continue;
+                }
+                availabilityIndex.addReservation(roomIds[i], reservation);
+                addedRoomIds[added.size()] = roomIds[i];
+                added.add(reservation);
+            }
+            if (!added.isEmpty()) {
+                reservationStore.addAll(Arrays.copyOf(addedRoomIds, added.size()), added);
+            }
+            for (int i = 0; i < added.size(); i++) {
+                addStayTotals(addedRoomIds[i], added.get(i));
+            }
+            bookingCount.add(added.size());
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+        // Once for the batch rather than once a stay
+        roomsCache.invalidateAll();
+        alternativesCache.invalidateAll();
+        return added.size();
+    }
+
+    /**
+     * Replays a cancellation. An id that is not present, because the snapshot already lacks it,
+     * is ignored.
+     */
+    public void restoreCancellation(long reservationId) {
+        reservationIds.restore(reservationId);
+        Reservation reservation = reservationStore.get(reservationId);
+        if (reservation == null) {
+            return;
+        }
+
+        int roomId = roomRegistry.idOf(reservation.getRoom().getRoomNumber());
+        Lock lock = roomLocks.lockFor(roomId);
+        lock.lock();
+        try {
+            reservation = reservationStore.get(reservationId);
+            if (reservation != null) {
+                deleteReservation(roomId, reservation);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public Reservation reserveARoom(Customer customer, IRoom room, Date checkInDate, Date checkOutDate) {
-        if (customer == null || room == null || checkInDate == null || checkOutDate == null) {
+    /**
+     * Replays a change of dates. Unknown ids are ignored, and so are moves that clash with a later
+     * state of the room; the records after it bring the room to its final state.
+     */
+    public void restoreModification(long reservationId, Date checkInDate, Date checkOutDate) {
+        Reservation reservation = reservationStore.get(reservationId);
+        if (reservation == null) {
+            return;
+        }
+
+        int roomId = roomRegistry.idOf(reservation.getRoom().getRoomNumber());
+        Lock lock = roomLocks.lockFor(roomId);
+        lock.lock();
+        try {
+            reservation = reservationStore.get(reservationId);
+            if (reservation != null && availabilityIndex.isRoomAvailableExcept(roomId, reservationId, checkInDate, checkOutDate)) {
+                moveReservation(roomId, reservation, checkInDate, checkOutDate);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * An id at least as high as any handed out so far, for snapshots to carry across restarts.
+     */
+    public long getLastReservationId() {
+        return reservationIds.last();
+    }
+
+    /**
+     * Makes sure ids up to {@code reservationId} are never handed out again, including ids of
+     * reservations cancelled before a snapshot was taken.
+     */
+    public void restoreLastReservationId(long reservationId) {
+        reservationIds.restore(reservationId);
+    }
+
+    // The partition holding every one of the rooms, or SPANNING if there is more than one
+    private int partitionOfAll(int[] roomIds) {
+        int partition = partitions.partitionOf(roomIds[0]);
+        for (int roomId : roomIds) {
+            if (partitions.partitionOf(roomId) != partition) {
+                return ReservationJournal.SPANNING;
+            }
+        }
+        return partition;
+    }
+
+    private int restoredRoomId(IRoom room) {
+        int roomId = roomRegistry.idOf(room.getRoomNumber());
+        if (roomId == RoomRegistry.NO_ROOM) {
+            throw new IllegalArgumentException("Room " + room.getRoomNumber() + " does not exist");
+        }
+        return roomId;
+    }
+
+    private Reservation insertReservation(long reservationId, Customer customer, int roomId,
+                                          Date checkInDate, Date checkOutDate) {
+        // Check if room is available for the given date range
+        if (!availabilityIndex.isRoomAvailable(roomId, checkInDate, checkOutDate)) {
+            throw new IllegalArgumentException("Room is not available for the selected dates");
+        }
+
+        IRoom room = roomRegistry.room(roomId);
+        Reservation reservation = new Reservation(reservationId, customer, room, checkInDate, checkOutDate);
+
+        availabilityIndex.addReservation(roomId, reservation);
+        reservationStore.add(roomId, reservation);
+        countStay(roomId, reservation);
+        return reservation;
+    }
+
+    // The totals and caches that follow a new stay, once it is in the index and the store
+    private void countStay(int roomId, Reservation reservation) {
+        addStayTotals(roomId, reservation);
+        invalidateCaches(reservation.getCheckInDate(), reservation.getCheckOutDate());
+        bookingCount.increment();
+    }
+
+    private void addStayTotals(int roomId, Reservation reservation) {
+        IRoom room = reservation.getRoom();
+        occupancyService.addStay(roomId, room.getRoomType(), reservation.getCheckInDate(), reservation.getCheckOutDate());
+        revenueService.addStay(roomId, room, reservation.getCustomer(),
+                reservation.getCheckInDate(), reservation.getCheckOutDate());
+    }
+
+    private void deleteReservation(int roomId, Reservation reservation) {
+        IRoom room = reservation.getRoom();
+        availabilityIndex.removeReservation(roomId, reservation);
+        reservationStore.remove(roomId, reservation);
+        occupancyService.removeStay(roomId, room.getRoomType(), reservation.getCheckInDate(), reservation.getCheckOutDate());
+        revenueService.removeStay(roomId, room, reservation.getCustomer(),
+                reservation.getCheckInDate(), reservation.getCheckOutDate());
+        invalidateCaches(reservation.getCheckInDate(), reservation.getCheckOutDate());
+    }
+
+    private Reservation moveReservation(int roomId, Reservation reservation, Date checkInDate, Date checkOutDate) {
+        if (!availabilityIndex.isRoomAvailableExcept(roomId, reservation.getId(), checkInDate, checkOutDate)) {
+            throw new IllegalArgumentException("Room is not available for the selected dates");
+        }
+
+        IRoom room = reservation.getRoom();
+        Customer customer = reservation.getCustomer();
+        Reservation updated = new Reservation(reservation.getId(), customer, room, checkInDate, checkOutDate);
+
+        // Both take the new nights before giving up the old ones
+        availabilityIndex.replaceReservation(roomId, reservation, updated);
+        reservationStore.replace(roomId, reservation, updated);
+        occupancyService.addStay(roomId, room.getRoomType(), checkInDate, checkOutDate);
+        occupancyService.removeStay(roomId, room.getRoomType(), reservation.getCheckInDate(), reservation.getCheckOutDate());
+        revenueService.addStay(roomId, room, customer, checkInDate, checkOutDate);
+        revenueService.removeStay(roomId, room, customer, reservation.getCheckInDate(), reservation.getCheckOutDate());
+        invalidateCaches(checkInDate, checkOutDate);
+        invalidateCaches(reservation.getCheckInDate(), reservation.getCheckOutDate());
+        return updated;
+    }
+
+    // Runs after the change is in the index, before the writer returns, so no later search sees an old answer
+    private void invalidateCaches(Date checkInDate, Date checkOutDate) {
+        roomsCache.invalidate(checkInDate, checkOutDate);
+        alternativesCache.invalidate(checkInDate, checkOutDate);
+    }
+
+    private void validateStay(Customer customer, int roomId, Date checkInDate, Date checkOutDate) {
+        if (customer == null || checkInDate == null || checkOutDate == null) {
             throw new IllegalArgumentException("All parameters must be non-null");
         }
 
+        if (!roomRegistry.contains(roomId)) {
+            throw new IllegalArgumentException("Room does not exist");
+        }
+
         if (checkInDate.after(checkOutDate) || checkInDate.equals(checkOutDate)) {
             throw new IllegalArgumentException("Check-in date must be before check-out date");
         }
@@ -51,19 +676,15 @@ public class ReservationService {
         if (checkInDate.before(today)) {
             throw new IllegalArgumentException("Check-in date cannot be in the past");
         }
-
-        // Check if room is available for the given date range
-        if (!isRoomAvailable(room.getRoomNumber(), checkInDate, checkOutDate)) {
-            throw new IllegalArgumentException("Room is not available for the selected dates");
+        if (checkOutDate.after(AvailabilityIndex.shiftDays(today, MAX_DAYS_AHEAD))) {
+            throw new IllegalArgumentException("Check-out date cannot be more than " + MAX_DAYS_AHEAD + " days ahead");
         }
+    }
 
-        Reservation reservation = new Reservation(customer, room, checkInDate, checkOutDate);
-
-        Collection<Reservation> customerReservations = reservations.getOrDefault(customer.getEmail(), new ArrayList<>());
-        customerReservations.add(reservation);
-        reservations.put(customer.getEmail(), customerReservations);
-
-        return reservation;
+    private static void awaitDurable(ReservationJournal journal, long journalPosition) {
+        if (journal != null) {
+            journal.awaitDurable(journalPosition);
+        }
     }
 
     public Collection<IRoom> findRooms(Date checkInDate, Date checkOutDate) {
@@ -75,110 +696,368 @@ public class ReservationService {
             throw new IllegalArgumentException("Check-in date must be before check-out date");
         }
 
-        Set<String> bookedRoomNumbers = getBookedRoomNumbers(checkInDate, checkOutDate);
+        return roomsCache.get(checkInDate, checkOutDate, SAME_DAYS,
+                () -> Collections.unmodifiableCollection(availabilityIndex.findRooms(checkInDate, checkOutDate)));
+    }
+
+    /**
+     * Finds free rooms matching the search's type and price bounds, in price order, up to its limit.
+     * Candidates come from the price indexes, so only rooms that pass the filters are checked for
+     * availability, and the search stops as soon as the limit is reached.
+     */
+    public List<IRoom> searchRooms(RoomSearch search) {
+        if (search == null) {
+            throw new IllegalArgumentException("Search cannot be null");
+        }
+
+        Date checkInDate = search.getCheckInDate();
+        Date checkOutDate = search.getCheckOutDate();
+        if (checkInDate.after(checkOutDate) || checkInDate.equals(checkOutDate)) {
+            throw new IllegalArgumentException("Check-in date must be before check-out date");
+        }
+
+        ConcurrentNavigableMap<Double, Set<Integer>> candidates =
+                search.getRoomType() == null ? roomsByPrice : roomsByTypeAndPrice.get(search.getRoomType());
+        if (search.getMinPrice() != null) {
+            candidates = candidates.tailMap(search.getMinPrice(), true);
+        }
+        if (search.getMaxPrice() != null) {
+            candidates = candidates.headMap(search.getMaxPrice(), true);
+        }
+        if (search.getSortOrder() == RoomSearch.SortOrder.PRICE_DESCENDING) {
+            candidates = candidates.descendingMap();
+        }
 
-        return rooms.values().stream()
-                .filter(room -> !bookedRoomNumbers.contains(room.getRoomNumber()))
-                .collect(Collectors.toList());
+        // Every candidate is checked against the same state of the hotel
+        ReservationView view = reservationStore.view();
+        List<IRoom> availableRooms = new ArrayList<>();
+        for (Set<Integer> sameRate : candidates.values()) {
+            for (int roomId : sameRate) {
+                if (view.isRoomAvailable(roomId, checkInDate, checkOutDate)) {
+                    availableRooms.add(roomRegistry.room(roomId));
+                    if (availableRooms.size() == search.getLimit()) {
+                        return availableRooms;
+                    }
+                }
+            }
+        }
+        return availableRooms;
     }
 
     public Collection<IRoom> findAlternativeRooms(Date checkInDate, Date checkOutDate) {
+        // Earliest of the next 7 days that has any room free
+        SortedMap<Integer, Collection<IRoom>> alternatives = findAlternativeRooms(checkInDate, checkOutDate, 0, 7);
+        return alternatives.isEmpty() ? new ArrayList<>() : alternatives.get(alternatives.firstKey());
+    }
+
+    /**
+     * Finds free rooms for the same stay moved up to {@code daysEarlier} days earlier and up to
+     * {@code daysLater} days later, keyed by the number of days moved (negative is earlier).
+     * Moves that have no free room, or that would start in the past, are left out.
+     */
+    public SortedMap<Integer, Collection<IRoom>> findAlternativeRooms(Date checkInDate, Date checkOutDate,
+                                                                      int daysEarlier, int daysLater) {
         if (checkInDate == null || checkOutDate == null) {
             throw new IllegalArgumentException("Check-in and check-out dates cannot be null");
         }
 
-        // Calculate the duration between check-in and check-out
-        long duration = checkOutDate.getTime() - checkInDate.getTime();
+        if (checkInDate.after(checkOutDate) || checkInDate.equals(checkOutDate)) {
+            throw new IllegalArgumentException("Check-in date must be before check-out date");
+        }
 
-        // Iterate through the next 7 days to find available rooms
-        for (int i = 1; i <= 7; i++) {
-            // Create new check-in date by adding i days to original check-in
-            Calendar calendar = Calendar.getInstance();
-            calendar.setTime(checkInDate);
-            calendar.add(Calendar.DATE, i);
-            Date alternateCheckIn = calendar.getTime();
+        if (daysEarlier < 0 || daysLater < 0) {
+            throw new IllegalArgumentException("Search window cannot be negative");
+        }
 
-            // Create new check-out date by adding the same duration
-            Date alternateCheckOut = new Date(alternateCheckIn.getTime() + duration);
+        Date today = new Date();
+        int[] offsets = new int[daysEarlier + daysLater];
+        int count = 0;
+        for (int offset = -daysEarlier; offset <= daysLater; offset++) {
+            if (offset != 0 && !AvailabilityIndex.shiftDays(checkInDate, offset).before(today)) {
+                offsets[count++] = offset;
+            }
+        }
+
+        int[] dayOffsets = Arrays.copyOf(offsets, count);
+        return alternativesCache.get(checkInDate, checkOutDate, dayOffsets, () -> {
+            SortedMap<Integer, Collection<IRoom>> alternatives =
+                    availabilityIndex.findRoomsByOffset(checkInDate, checkOutDate, dayOffsets);
+            alternatives.replaceAll((offset, rooms) -> Collections.unmodifiableCollection(rooms));
+            return Collections.unmodifiableSortedMap(alternatives);
+        });
+    }
+
+    /**
+     * Finds alternatives as {@link #findAlternativeRooms(Date, Date, int, int)} does for the
+     * search's dates, keeping only rooms that match its type and price bounds, in its price order
+     * and up to its limit for each move. Moves left with no matching room are left out.
+     */
+    public SortedMap<Integer, List<IRoom>> searchAlternativeRooms(RoomSearch search, int daysEarlier, int daysLater) {
+        if (search == null) {
+            throw new IllegalArgumentException("Search cannot be null");
+        }
 
-            // Check for available rooms with these new dates
-            Collection<IRoom> availableRooms = findRooms(alternateCheckIn, alternateCheckOut);
+        SortedMap<Integer, Collection<IRoom>> alternatives =
+                findAlternativeRooms(search.getCheckInDate(), search.getCheckOutDate(), daysEarlier, daysLater);
+        Comparator<IRoom> byPrice = Comparator.comparingDouble(ReservationService::priceOf);
+        if (search.getSortOrder() == RoomSearch.SortOrder.PRICE_DESCENDING) {
+            byPrice = byPrice.reversed();
+        }
 
-            // If rooms are available for these dates, return them
-            if (!availableRooms.isEmpty()) {
-                return availableRooms;
+        SortedMap<Integer, List<IRoom>> matching = new TreeMap<>();
+        for (Map.Entry<Integer, Collection<IRoom>> entry : alternatives.entrySet()) {
+            List<IRoom> rooms = new ArrayList<>();
+            for (IRoom room : entry.getValue()) {
+                if (matches(search, room)) {
+                    rooms.add(room);
+                }
+            }
+            if (!rooms.isEmpty()) {
+                rooms.sort(byPrice);
+                matching.put(entry.getKey(), rooms.size() > search.getLimit()
+                        ? new ArrayList<>(rooms.subList(0, search.getLimit())) : rooms);
             }
         }
+        return matching;
+    }
+
+    // The same test searchRooms makes through the price indexes
+    private static boolean matches(RoomSearch search, IRoom room) {
+        double price = priceOf(room);
+        return (search.getRoomType() == null || search.getRoomType() == room.getRoomType())
+                && (search.getMinPrice() == null || price >= search.getMinPrice())
+                && (search.getMaxPrice() == null || price <= search.getMaxPrice());
+    }
+
+    public CacheStats getFindRoomsCacheStats() {
+        return roomsCache.getStats();
+    }
 
-        // No available rooms found within the 7-day window
-        return new ArrayList<>();
+    public CacheStats getAlternativeRoomsCacheStats() {
+        return alternativesCache.getStats();
     }
 
     public Collection<Reservation> getCustomersReservation(Customer customer) {
         if (customer == null) {
             throw new IllegalArgumentException("Customer cannot be null");
         }
-        return reservations.getOrDefault(customer.getEmail(), new ArrayList<>());
+        return reservationStore.view().getCustomerReservations(customer.getEmail());
+    }
+
+    /**
+     * Returns every reservation as it stands now. Later bookings, cancellations and moves do not
+     * change it, so several queries can be answered from one consistent state.
+     */
+    public ReservationView getReservationView() {
+        return reservationStore.view();
     }
 
     public void printAllReservation() {
-        if (reservations.isEmpty()) {
+        ReservationView view = reservationStore.view();
+        if (view.size() == 0) {
             System.out.println("No reservations found.");
             return;
         }
 
-        for (Collection<Reservation> customerReservations : reservations.values()) {
-            for (Reservation reservation : customerReservations) {
-                System.out.println(reservation);
-                System.out.println("------------------------");
-            }
+        try {
+            new ReservationReport(reservationCursor(view, ReservationReport.SortKey.CHECK_IN, null, null), 100)
+                    .writeAll(System.out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
     }
 
-    private Set<String> getBookedRoomNumbers(Date checkInDate, Date checkOutDate) {
-        Set<String> bookedRoomNumbers = new HashSet<>();
+    public Iterator<Reservation> reservationCursor(ReservationReport.SortKey sortKey, Date from, Date to) {
+        return reservationCursor(reservationStore.view(), sortKey, from, to);
+    }
+
+    /**
+     * Opens a lazy cursor over the reservations in {@code view} overlapping [from, to), in
+     * {@code sortKey} order. Either bound may be null. Only the rooms or customers are sorted up
+     * front, never the reservations.
+     */
+    public Iterator<Reservation> reservationCursor(ReservationView view, ReservationReport.SortKey sortKey, Date from, Date to) {
+        if (view == null || sortKey == null) {
+            throw new IllegalArgumentException("View and sort key cannot be null");
+        }
+        if (from != null && to != null && !from.before(to)) {
+            throw new IllegalArgumentException("Report start date must be before end date");
+        }
 
-        for (Collection<Reservation> customerReservations : reservations.values()) {
-            for (Reservation reservation : customerReservations) {
-                if (isDateRangeOverlap(reservation.getCheckInDate(), reservation.getCheckOutDate(), checkInDate, checkOutDate)) {
-                    bookedRoomNumbers.add(reservation.getRoom().getRoomNumber());
+        switch (sortKey) {
+            case CHECK_IN: {
+                // Each room's cursor builds its stays one at a time, as the merge pulls them
+                int roomCount = roomRegistry.size();
+                List<Iterator<Reservation>> perRoom = new ArrayList<>(roomCount);
+                for (int roomId = 0; roomId < roomCount; roomId++) {
+                    perRoom.add(view.staysInRange(roomId, from, to));
                 }
+                return ReservationCursors.merge(perRoom, Comparator.comparing(Reservation::getCheckInDate)
+                        .thenComparing(reservation -> reservation.getRoom().getRoomNumber()));
             }
+            case ROOM: {
+                List<Integer> roomIds = new ArrayList<>();
+                for (int roomId = 0, roomCount = roomRegistry.size(); roomId < roomCount; roomId++) {
+                    roomIds.add(roomId);
+                }
+                roomIds.sort(Comparator.comparing(roomId -> roomRegistry.room(roomId).getRoomNumber()));
+                return ReservationCursors.concat(roomIds.iterator(),
+                        roomId -> view.staysInRange(roomId, from, to));
+            }
+            case CUSTOMER:
+                return ReservationCursors.concat(new TreeSet<>(view.getCustomerEmails()).iterator(), email -> {
+                    // One customer's bookings are few, so sorting them on the way through is cheap
+                    List<Reservation> customerReservations = new ArrayList<>(view.getCustomerReservations(email));
+                    customerReservations.sort(Comparator.comparing(Reservation::getCheckInDate));
+                    return ReservationCursors.filter(customerReservations.iterator(),
+                            reservation -> ReservationCursors.overlaps(reservation, from, to));
+                });
+            default:
+                throw new IllegalArgumentException("Unknown sort key: " + sortKey);
         }
-
-        return bookedRoomNumbers;
     }
 
-    private boolean isDateRangeOverlap(Date existingCheckIn, Date existingCheckOut, Date requestedCheckIn, Date requestedCheckOut) {
-        return existingCheckIn.before(requestedCheckOut) && existingCheckOut.after(requestedCheckIn);
+    public ReservationReport createReservationReport(ReservationReport.SortKey sortKey, Date from, Date to, int pageSize) {
+        return new ReservationReport(reservationCursor(sortKey, from, to), pageSize);
     }
 
-    public boolean isRoomAvailable(String roomNumber, Date checkInDate, Date checkOutDate) {
-        if (roomNumber == null || checkInDate == null || checkOutDate == null) {
+    public boolean isRoomAvailable(int roomId, Date checkInDate, Date checkOutDate) {
+        if (!roomRegistry.contains(roomId) || checkInDate == null || checkOutDate == null) {
             return false;
         }
 
-        for (Collection<Reservation> customerReservations : reservations.values()) {
-            for (Reservation reservation : customerReservations) {
-                if (reservation.getRoom().getRoomNumber().equals(roomNumber) &&
-                        isDateRangeOverlap(reservation.getCheckInDate(), reservation.getCheckOutDate(), checkInDate, checkOutDate)) {
-                    return false;
+        return availabilityIndex.isRoomAvailable(roomId, checkInDate, checkOutDate);
+    }
+
+    public Collection<IRoom> getAllRooms() {
+        return roomRegistry.rooms();
+    }
+
+    public int getRoomCount() {
+        return roomRegistry.size();
+    }
+
+    /**
+     * Returns how many reservations were booked since startup, restored ones included.
+     */
+    public long getBookingCount() {
+        return bookingCount.sum();
+    }
+
+    /**
+     * Returns the engine picked with {@code -Dhotel.availability}.
+     */
+    public String getAvailabilityEngine() {
+        return engine;
+    }
+
+    /**
+     * Returns the number of partitions set with {@code -Dhotel.partitions}.
+     */
+    public int getPartitionCount() {
+        return partitions.count();
+    }
+
+    public long getIndexMemoryBytes() {
+        return availabilityIndex.estimateMemoryBytes();
+    }
+
+    /**
+     * Returns the reservation store's estimated size, or 0 for the columnar engine, whose columns
+     * are already counted by {@link #getIndexMemoryBytes()}.
+     */
+    public long getStoreMemoryBytes() {
+        return "columnar".equals(engine) ? 0 : reservationStore.estimateMemoryBytes();
+    }
+
+    /**
+     * Checks the availability index against the reservation store and returns what disagrees, up to
+     * {@value #MAX_PROBLEMS} lines; an empty list means they agree. Each room is checked under its
+     * lock, so only bookings for rooms on the same lock wait for the check. Partitions are checked
+     * in parallel.
+     */
+    public List<String> checkConsistency() {
+        int roomCount = roomRegistry.size();
+        List<String> problems = RoomPartitions.flatten(partitions.map(partition -> {
+            List<String> found = new ArrayList<>();
+            for (int localId = 0; ; localId++) {
+                int roomId = partitions.roomId(partition, localId);
+                if (roomId >= roomCount || found.size() >= MAX_PROBLEMS) {
+                    return found;
+                }
+                Lock lock = roomLocks.lockFor(roomId);
+                lock.lock();
+                try {
+                    checkRoom(roomId, reservationStore.view(), found);
+                } finally {
+                    lock.unlock();
                 }
             }
+        }));
+        if (problems.size() > MAX_PROBLEMS) {
+            problems = new ArrayList<>(problems.subList(0, MAX_PROBLEMS));
         }
 
-        return true;
+        // The totals are compared within one view, so concurrent writes cannot skew them
+        ReservationView view = reservationStore.view();
+        long byRoom = 0;
+        for (int roomId = 0; roomId < roomCount; roomId++) {
+            byRoom += view.getStays(roomId).size();
+        }
+        long byCustomer = 0;
+        for (String customerEmail : view.getCustomerEmails()) {
+            byCustomer += view.getCustomerReservations(customerEmail).size();
+        }
+        if (byRoom != view.size()) {
+            addProblem(problems, "Rooms hold " + byRoom + " stays but there are " + view.size() + " reservations");
+        }
+        if (byCustomer != view.size()) {
+            addProblem(problems, "Customers hold " + byCustomer + " reservations but there are " + view.size());
+        }
+        return problems;
     }
 
-    public Collection<IRoom> getAllRooms() {
-        return rooms.values();
+    private void checkRoom(int roomId, ReservationView view, List<String> problems) {
+        String roomNumber = roomRegistry.room(roomId).getRoomNumber();
+        List<Reservation> stored = view.getStays(roomId);
+        Collection<Reservation> indexed = availabilityIndex.getStays(roomId).values();
+        if (stored.size() != indexed.size()) {
+            addProblem(problems, "Room " + roomNumber + " has " + stored.size() + " stored stays but "
+                    + indexed.size() + " in the index");
+        }
+
+        Iterator<Reservation> inIndex = indexed.iterator();
+        Reservation previous = null;
+        for (Reservation stay : stored) {
+            Reservation indexedStay = inIndex.hasNext() ? inIndex.next() : null;
+            if (indexedStay != null && (indexedStay.getId() != stay.getId()
+                    || !indexedStay.getCheckInDate().equals(stay.getCheckInDate())
+                    || !indexedStay.getCheckOutDate().equals(stay.getCheckOutDate()))) {
+                addProblem(problems, "Room " + roomNumber + " stores reservation " + stay.getId()
+                        + " where the index has " + indexedStay.getId());
+            }
+            if (previous != null && previous.getCheckOutDate().after(stay.getCheckInDate())) {
+                addProblem(problems, "Reservations " + previous.getId() + " and " + stay.getId()
+                        + " overlap in room " + roomNumber);
+            }
+            if (availabilityIndex.isRoomAvailable(roomId, stay.getCheckInDate(), stay.getCheckOutDate())) {
+                addProblem(problems, "Room " + roomNumber + " shows as free during reservation " + stay.getId());
+            }
+            Reservation byId = reservationStore.get(stay.getId());
+            if (byId == null || !byId.getRoom().getRoomNumber().equals(roomNumber)) {
+                addProblem(problems, "Reservation " + stay.getId() + " in room " + roomNumber + " cannot be found by id");
+            }
+            previous = stay;
+        }
     }
 
-    public Collection<Reservation> getAllReservations() {
-        List<Reservation> allReservations = new ArrayList<>();
-        for (Collection<Reservation> customerReservations : reservations.values()) {
-            allReservations.addAll(customerReservations);
+    private static void addProblem(List<String> problems, String problem) {
+        if (problems.size() < MAX_PROBLEMS) {
+            problems.add(problem);
         }
-        return allReservations;
     }
-}
\ No newline at end of file
+
+    public Collection<Reservation> getAllReservations() {
+        return reservationStore.view().toList();
+    }
+}
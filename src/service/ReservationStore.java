@@ -0,0 +1,44 @@
+package service;
+
+import model.Reservation;
+
+import java.util.List;
+
+/**
+ * Holds every reservation for {@link ReservationService}, by id and grouped by customer. Like
+ * {@link AvailabilityIndex}, reads must not lock and may run alongside writes, and the service
+ * holds the room's lock around every write.
+ */
+public interface ReservationStore {
+    void add(int roomId, Reservation reservation);
+
+    /**
+     * Adds every one of {@code reservations}, the i-th in room {@code roomIds[i]}. Views see all
+     * of them or none.
+     */
+    void addAll(int[] roomIds, List<Reservation> reservations);
+
+    void remove(int roomId, Reservation reservation);
+
+    /**
+     * Swaps {@code previous} for {@code updated}, which has the same id and customer. Views see
+     * either one or the other, never both or neither.
+     */
+    void replace(int roomId, Reservation previous, Reservation updated);
+
+    /**
+     * Returns the reservation with {@code reservationId}, or null if there is none.
+     */
+    Reservation get(long reservationId);
+
+    /**
+     * Returns a view of every reservation as it stands now, unaffected by later writes.
+     */
+    ReservationView view();
+
+    /**
+     * Returns a rough size in bytes of the store, counting the reservations it holds. For
+     * monitoring; it is not kept exact.
+     */
+    long estimateMemoryBytes();
+}
@@ -0,0 +1,56 @@
+package service;
+
+import model.Reservation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Every reservation as of one moment. A view never changes once taken: bookings, cancellations
+ * and moves made afterwards are not seen, and one made before is seen in full. Taking a view and
+ * reading it never locks, so a long report does not hold up bookings.
+ */
+public interface ReservationView extends Iterable<Reservation> {
+    /**
+     * Returns one room's stays in check-in order, or an empty list if there are none.
+     */
+    List<Reservation> getStays(int roomId);
+
+    /**
+     * Returns a cursor over one room's stays overlapping [from, to), in check-in order. Either
+     * bound may be null. Stays are only built as the cursor reaches them where the view can.
+     */
+    default Iterator<Reservation> staysInRange(int roomId, Date from, Date to) {
+        return ReservationCursors.staysInRange(getStays(roomId), from, to);
+    }
+
+    /**
+     * Returns the customer's reservations in booking order, or an empty collection if there are none.
+     */
+    Collection<Reservation> getCustomerReservations(String customerEmail);
+
+    /**
+     * Returns the emails of customers with at least one reservation.
+     */
+    Set<String> getCustomerEmails();
+
+    boolean isRoomAvailable(int roomId, Date checkInDate, Date checkOutDate);
+
+    int size();
+
+    /**
+     * Copies every reservation in the view into a new list, in no particular order.
+     */
+    default List<Reservation> toList() {
+        List<Reservation> reservations = new ArrayList<>(size());
+        forEach(reservations::add);
+        return reservations;
+    }
+
+    @Override
+    Iterator<Reservation> iterator();
+}
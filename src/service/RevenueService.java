@@ -0,0 +1,191 @@
+package service;
+
+import model.Customer;
+import model.IRoom;
+import model.RoomType;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Revenue totals kept up to date as stays change, in whole cents: per night, per calendar month,
+ * per room type, per room and per customer. {@link ReservationService} reports every stay as it is
+ * booked, moved or cancelled, so no query goes back to the reservations. A month's total is a single
+ * lookup however much history there is, and any range of nights is O(log n).
+ * <p>
+ * A stay earns the room's nightly rate for each night it touches, as counted by
+ * {@link OccupancyService}. Free rooms earn nothing and are counted apart, as complimentary nights.
+ */
+public class RevenueService {
+    private static final RevenueService instance = new RevenueService();
+    private final EpochDays days = new EpochDays(ZoneId.systemDefault());
+    private final BufferedNightTree revenueByNight = new BufferedNightTree(RoomPartitions.configuredCount());
+    private final Map<YearMonth, LongAdder> revenueByMonth = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> revenueByCustomer = new ConcurrentHashMap<>();
+    // Every type is added up front, so the EnumMaps themselves are never written after construction
+    private final Map<RoomType, LongAdder> revenueByType = new EnumMap<>(RoomType.class);
+    private final Map<RoomType, LongAdder> complimentaryNightsByType = new EnumMap<>(RoomType.class);
+    private final LongAdder totalRevenue = new LongAdder();
+    private final LongAdder complimentaryNights = new LongAdder();
+    // Indexed by room id and filled on a room's first paid stay. Slots are only created and the
+    // array only grows under this object's monitor; the adders are shared by every copy
+    private volatile AtomicReferenceArray<LongAdder> revenueByRoom = new AtomicReferenceArray<>(64);
+
+    private RevenueService() {
+        for (RoomType roomType : RoomType.values()) {
+            revenueByType.put(roomType, new LongAdder());
+            complimentaryNightsByType.put(roomType, new LongAdder());
+        }
+    }
+
+    public static RevenueService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Converts a nightly rate to cents, rounding half up.
+     */
+    public static long toCents(Double price) {
+        return price == null ? 0 : Math.round(price * 100);
+    }
+
+    void addStay(int roomId, IRoom room, Customer customer, Date checkInDate, Date checkOutDate) {
+        recordStay(roomId, room, customer, checkInDate, checkOutDate, 1);
+    }
+
+    void removeStay(int roomId, IRoom room, Customer customer, Date checkInDate, Date checkOutDate) {
+        recordStay(roomId, room, customer, checkInDate, checkOutDate, -1);
+    }
+
+    private void recordStay(int roomId, IRoom room, Customer customer, Date checkInDate, Date checkOutDate, int sign) {
+        long firstNight = days.floor(checkInDate);
+        long end = days.ceil(checkOutDate);
+        if (room.isFree()) {
+            complimentaryNights.add(sign * (end - firstNight));
+            if (room.getRoomType() != null) {
+                complimentaryNightsByType.get(room.getRoomType()).add(sign * (end - firstNight));
+            }
+            return;
+        }
+
+        long nightlyCents = sign * toCents(room.getRoomPrice());
+        long stayCents = nightlyCents * (end - firstNight);
+        revenueByNight.add(roomId, firstNight, end, nightlyCents);
+
+        // A stay rarely spans more than two months, so this loop runs once or twice
+        LocalDate night = LocalDate.ofEpochDay(firstNight);
+        LocalDate last = LocalDate.ofEpochDay(end);
+        while (night.isBefore(last)) {
+            LocalDate nextMonth = night.withDayOfMonth(1).plusMonths(1);
+            LocalDate until = nextMonth.isBefore(last) ? nextMonth : last;
+            revenueByMonth.computeIfAbsent(YearMonth.from(night), k -> new LongAdder())
+                    .add(nightlyCents * (until.toEpochDay() - night.toEpochDay()));
+            night = until;
+        }
+
+        totalRevenue.add(stayCents);
+        if (room.getRoomType() != null) {
+            revenueByType.get(room.getRoomType()).add(stayCents);
+        }
+        LongAdder roomRevenue = roomRevenueOf(roomId);
+        if (roomRevenue == null) {
+            roomRevenue = createRoomRevenue(roomId);
+        }
+        roomRevenue.add(stayCents);
+        revenueByCustomer.computeIfAbsent(customer.getEmail(), k -> new LongAdder()).add(stayCents);
+    }
+
+    private LongAdder roomRevenueOf(int roomId) {
+        AtomicReferenceArray<LongAdder> current = revenueByRoom;
+        return roomId >= 0 && roomId < current.length() ? current.get(roomId) : null;
+    }
+
+    private synchronized LongAdder createRoomRevenue(int roomId) {
+        AtomicReferenceArray<LongAdder> current = revenueByRoom;
+        if (roomId >= current.length()) {
+            AtomicReferenceArray<LongAdder> grown = new AtomicReferenceArray<>(Math.max(roomId + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            revenueByRoom = grown;
+            current = grown;
+        }
+        LongAdder revenue = current.get(roomId);
+        if (revenue == null) {
+            revenue = new LongAdder();
+            current.set(roomId, revenue);
+        }
+        return revenue;
+    }
+
+    public long getTotalRevenueCents() {
+        return totalRevenue.sum();
+    }
+
+    /**
+     * Revenue earned on the night of {@code night}.
+     */
+    public long getNightRevenueCents(Date night) {
+        if (night == null) {
+            throw new IllegalArgumentException("Night cannot be null");
+        }
+
+        long day = days.floor(night);
+        return revenueByNight.read(tree -> tree.get(day));
+    }
+
+    /**
+     * Revenue earned on the nights from {@code from} up to {@code to}.
+     */
+    public long getRevenueCents(Date from, Date to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Start and end dates cannot be null");
+        }
+        if (!from.before(to)) {
+            throw new IllegalArgumentException("Start date must be before end date");
+        }
+
+        long firstNight = days.floor(from);
+        long end = days.ceil(to);
+        return revenueByNight.read(tree -> tree.sum(firstNight, end));
+    }
+
+    public long getMonthRevenueCents(YearMonth month) {
+        if (month == null) {
+            throw new IllegalArgumentException("Month cannot be null");
+        }
+        LongAdder revenue = revenueByMonth.get(month);
+        return revenue == null ? 0 : revenue.sum();
+    }
+
+    public long getRoomTypeRevenueCents(RoomType roomType) {
+        if (roomType == null) {
+            throw new IllegalArgumentException("Room type cannot be null");
+        }
+        return revenueByType.get(roomType).sum();
+    }
+
+    public long getRoomRevenueCents(int roomId) {
+        LongAdder revenue = roomRevenueOf(roomId);
+        return revenue == null ? 0 : revenue.sum();
+    }
+
+    public long getCustomerRevenueCents(String customerEmail) {
+        LongAdder revenue = customerEmail == null ? null : revenueByCustomer.get(customerEmail);
+        return revenue == null ? 0 : revenue.sum();
+    }
+
+    /**
+     * Nights booked in free rooms. A null room type counts every free room.
+     */
+    public long getComplimentaryNights(RoomType roomType) {
+        return roomType == null ? complimentaryNights.sum() : complimentaryNightsByType.get(roomType).sum();
+    }
+}
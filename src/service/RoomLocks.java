@@ -0,0 +1,41 @@
+package service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared by all rooms. Room ids are dense, so room {@code id} simply uses
+ * stripe {@code id mod stripeCount}, and bookings for rooms on different stripes never wait for each other.
+ */
+public class RoomLocks {
+    private final ReentrantLock[] stripes;
+
+    public RoomLocks(int stripeCount) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two");
+        }
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock lockFor(int roomId) {
+        return stripes[roomId & (stripes.length - 1)];
+    }
+
+    /**
+     * Returns the distinct locks for {@code roomIds} in stripe order. Taking several locks
+     * in this order means two batches can never deadlock on each other.
+     */
+    public List<ReentrantLock> locksFor(Collection<Integer> roomIds) {
+        TreeMap<Integer, ReentrantLock> ordered = new TreeMap<>();
+        for (int roomId : roomIds) {
+            int stripe = roomId & (stripes.length - 1);
+            ordered.put(stripe, stripes[stripe]);
+        }
+        return List.copyOf(ordered.values());
+    }
+}
@@ -0,0 +1,150 @@
+package service;
+
+import model.IRoom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+/**
+ * Splits the rooms of a {@link RoomRegistry} into a power-of-two number of partitions by id: room
+ * {@code id} goes to partition {@code id mod count}, where it has the local id {@code id / count}.
+ * Each partition has its own registry of local ids, so per-partition indexes and stores can be
+ * built over it exactly as over the whole hotel.
+ * <p>
+ * {@link RoomLocks} stripe by the same low bits, so as long as there are at least as many stripes
+ * as partitions, a room's lock only ever guards rooms of its own partition.
+ */
+final class RoomPartitions {
+    private final RoomRegistry roomRegistry;
+    private final RoomRegistry[] registries;
+    private final int shift;
+
+    RoomPartitions(RoomRegistry roomRegistry, int count) {
+        if (Integer.bitCount(count) != 1) {
+            throw new IllegalArgumentException("Partition count must be a power of two");
+        }
+        this.roomRegistry = roomRegistry;
+        this.shift = Integer.numberOfTrailingZeros(count);
+        this.registries = new RoomRegistry[count];
+        if (count == 1) {
+            // A single partition is the whole hotel, ids and all
+            registries[0] = roomRegistry;
+        } else {
+            for (int partition = 0; partition < count; partition++) {
+                registries[partition] = new RoomRegistry();
+            }
+        }
+    }
+
+    /**
+     * The number of partitions set with {@code -Dhotel.partitions}, one if it is not set. Every
+     * structure split by partition sizes itself from this, so they all split rooms the same way.
+     */
+    static int configuredCount() {
+        return Integer.getInteger("hotel.partitions", 1);
+    }
+
+    int count() {
+        return registries.length;
+    }
+
+    int partitionOf(int roomId) {
+        return roomId & (registries.length - 1);
+    }
+
+    int localId(int roomId) {
+        return roomId >>> shift;
+    }
+
+    int roomId(int partition, int localId) {
+        return localId << shift | partition;
+    }
+
+    RoomRegistry registry(int partition) {
+        return registries[partition];
+    }
+
+    RoomRegistry roomRegistry() {
+        return roomRegistry;
+    }
+
+    /**
+     * Registers {@code room} in the hotel-wide registry and its partition, and returns its id. The
+     * room's hotel-wide slot is written first, so a search that finds its local id in the partition
+     * can already look it up; the id is published last, so the partition knows the room before
+     * anyone can look its id up and book it. Callers serialize room additions and have already
+     * checked that the number is new.
+     */
+    int register(IRoom room) {
+        if (registries.length == 1) {
+            return roomRegistry.register(room);
+        }
+        int roomId = roomRegistry.place(room);
+        registries[partitionOf(roomId)].register(room);
+        roomRegistry.publish(roomId);
+        return roomId;
+    }
+
+    /**
+     * Runs {@code task} for every partition on the common fork/join pool and returns the results
+     * in partition order. With a single partition the task runs on the calling thread.
+     */
+    <T> List<T> map(IntFunction<T> task) {
+        Object[] results = new Object[registries.length];
+        if (results.length == 1) {
+            results[0] = task.apply(0);
+        } else {
+            ForkJoinPool.commonPool().invoke(new Fork<>(task, results, 0, results.length));
+        }
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) Arrays.asList(results);
+        return list;
+    }
+
+    /**
+     * Concatenates the lists {@link #map} returned, in partition order.
+     */
+    static <T> List<T> flatten(List<? extends List<T>> parts) {
+        int size = 0;
+        for (List<T> part : parts) {
+            size += part.size();
+        }
+        List<T> all = new ArrayList<>(size);
+        for (List<T> part : parts) {
+            all.addAll(part);
+        }
+        return all;
+    }
+
+    // Halves the range of partitions until each task has one, so forks spread over the pool's workers
+    private static final class Fork<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // Never serialized: a fork only lives on the pool while map runs
+        private final transient IntFunction<T> task;
+        private final transient Object[] results;
+        private final int from;
+        private final int to;
+
+        Fork(IntFunction<T> task, Object[] results, int from, int to) {
+            this.task = task;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                results[from] = task.apply(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Fork<>(task, results, from, middle), new Fork<>(task, results, middle, to));
+        }
+    }
+}
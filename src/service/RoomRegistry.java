@@ -0,0 +1,110 @@
+package service;
+
+import model.IRoom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every room a dense int id, 0, 1, 2, ... in the order rooms are added. Ids never change
+ * and are never reused, so indexes can keep per-room state in arrays and bitmaps and callers
+ * translate a room number to its id once, at the edge of the API.
+ * <p>
+ * Lookups never lock. A room's slot is written before the count, and the count before the room
+ * number is mapped, so anyone who can see an id can also see its room.
+ */
+public class RoomRegistry {
+    public static final int NO_ROOM = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile IRoom[] rooms = new IRoom[64];
+    private volatile int size;
+
+    /**
+     * Assigns the next id to {@code room}.
+     */
+    public synchronized int register(IRoom room) {
+        int roomId = place(room);
+        publish(roomId);
+        return roomId;
+    }
+
+    /**
+     * Writes {@code room} into the next slot and returns its id, without publishing it: the count
+     * and the room number still leave it out until {@link #publish}. Lets {@link RoomPartitions}
+     * register the room in its partition in between. Callers serialize room additions.
+     */
+    synchronized int place(IRoom room) {
+        if (ids.containsKey(room.getRoomNumber())) {
+            throw new IllegalArgumentException("Room with number " + room.getRoomNumber() + " already exists");
+        }
+
+        int roomId = size;
+        IRoom[] current = rooms;
+        if (roomId == current.length) {
+            current = Arrays.copyOf(current, roomId * 2);
+        }
+        current[roomId] = room;
+        rooms = current;
+        return roomId;
+    }
+
+    synchronized void publish(int roomId) {
+        size = roomId + 1;
+        ids.put(rooms[roomId].getRoomNumber(), roomId);
+    }
+
+    /**
+     * Returns the id of the room with {@code roomNumber}, or {@link #NO_ROOM} if there is none.
+     */
+    public int idOf(String roomNumber) {
+        if (roomNumber == null) {
+            return NO_ROOM;
+        }
+        Integer roomId = ids.get(roomNumber);
+        return roomId == null ? NO_ROOM : roomId;
+    }
+
+    public IRoom room(int roomId) {
+        return rooms[roomId];
+    }
+
+    /**
+     * Returns the rooms with {@code roomIds}, in the same order, leaving out any id not published yet.
+     */
+    public List<IRoom> rooms(int[] roomIds) {
+        // The count first: the array read after it holds every room below it
+        int count = size;
+        IRoom[] current = rooms;
+        List<IRoom> found = new ArrayList<>(roomIds.length);
+        for (int roomId : roomIds) {
+            if (roomId >= 0 && roomId < count) {
+                found.add(current[roomId]);
+            }
+        }
+        return found;
+    }
+
+    public boolean contains(int roomId) {
+        return roomId >= 0 && roomId < size;
+    }
+
+    /**
+     * Number of rooms registered so far; ids run from 0 up to, not including, this.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the rooms registered so far, in id order. Later rooms are not added to the list.
+     */
+    public List<IRoom> rooms() {
+        int count = size;
+        return Collections.unmodifiableList(Arrays.asList(rooms).subList(0, count));
+    }
+}
@@ -2,12 +2,22 @@ package ui;
 
 import api.AdminResource;
 import model.*;
+import service.ReservationReport;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.*;
 
 public class AdminMenu {
     private static final AdminResource adminResource = AdminResource.getInstance();
-    private static final Scanner scanner = new Scanner(System.in);
+    private static final Scanner scanner = MainMenu.scanner;
+    private static final SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
 
     public static void displayAdminMenu() {
         boolean keepRunning = true;
@@ -19,7 +29,9 @@ public class AdminMenu {
                 System.out.println("2. See all Rooms");
                 System.out.println("3. See all Reservations");
                 System.out.println("4. Add a Room");
-                System.out.println("5. Back to Main Menu");
+                System.out.println("5. See Occupancy");
+                System.out.println("6. See Call Metrics");
+                System.out.println("7. Back to Main Menu");
                 System.out.print("Please select an option: ");
 
                 int selection = Integer.parseInt(scanner.nextLine());
@@ -38,6 +50,12 @@ public class AdminMenu {
                         addARoom();
                         break;
                     case 5:
+                        seeOccupancy();
+                        break;
+                    case 6:
+                        seeMetrics();
+                        break;
+                    case 7:
                         keepRunning = false;
                         break;
                     default:
@@ -80,8 +98,118 @@ public class AdminMenu {
     }
 
     private static void seeAllReservations() {
+        System.out.print("Sort by (1 for check-in date, 2 for room, 3 for customer) [1]: ");
+        String sortChoice = scanner.nextLine().trim();
+        ReservationReport.SortKey sortKey;
+        switch (sortChoice) {
+            case "":
+            case "1":
+                sortKey = ReservationReport.SortKey.CHECK_IN;
+                break;
+            case "2":
+                sortKey = ReservationReport.SortKey.ROOM;
+                break;
+            case "3":
+                sortKey = ReservationReport.SortKey.CUSTOMER;
+                break;
+            default:
+                System.out.println("Invalid selection.");
+                return;
+        }
+
+        ReservationReport report = adminResource.getReservationReport(sortKey, null, null, 20);
+        if (!report.hasMore()) {
+            System.out.println("No reservations found.");
+            return;
+        }
+
         System.out.println("\nAll Reservations:");
-        adminResource.displayAllReservations();
+        try {
+            while (true) {
+                report.writeNextPage(System.out);
+                if (!report.hasMore()) {
+                    break;
+                }
+                System.out.print("Press Enter for more, or q to stop: ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    break;
+                }
+            }
+        } catch (IOException ex) {
+            System.out.println("Error writing reservations: " + ex.getMessage());
+        }
+    }
+
+    private static void seeOccupancy() {
+        Date from;
+        Date to;
+        try {
+            System.out.print("Enter first night (MM/dd/yyyy): ");
+            from = dateFormat.parse(scanner.nextLine().trim());
+            System.out.print("Enter end date, the morning after the last night (MM/dd/yyyy): ");
+            to = dateFormat.parse(scanner.nextLine().trim());
+        } catch (ParseException ex) {
+            System.out.println("Invalid date format. Please use MM/dd/yyyy");
+            return;
+        }
+        if (!from.before(to)) {
+            System.out.println("End date must be after the first night.");
+            return;
+        }
+
+        System.out.print("Room type (1 for SINGLE, 2 for DOUBLE, Enter for all): ");
+        RoomType roomType;
+        switch (scanner.nextLine().trim()) {
+            case "":
+                roomType = null;
+                break;
+            case "1":
+                roomType = RoomType.SINGLE;
+                break;
+            case "2":
+                roomType = RoomType.DOUBLE;
+                break;
+            default:
+                System.out.println("Invalid selection.");
+                return;
+        }
+
+        long roomCount = adminResource.getRoomCount(roomType);
+        double average = adminResource.getAverageOccupancy(from, to, roomType);
+        System.out.println("\nOccupancy from " + dateFormat.format(from) + " to " + dateFormat.format(to) + ":");
+        System.out.println(adminResource.getOccupancy(from, roomType));
+        System.out.println("Average: " + String.format("%.1f", average) + " of " + roomCount + " rooms occupied ("
+                + String.format("%.1f", roomCount == 0 ? 0.0 : average / roomCount * 100) + "%)");
+        System.out.println("Peak: " + adminResource.getPeakNight(from, to, roomType));
+    }
+
+    private static void seeMetrics() {
+        if (adminResource.getMethodStats().isEmpty()) {
+            System.out.println("No calls recorded yet.");
+            return;
+        }
+
+        System.out.println("\nCall Metrics:");
+        try {
+            adminResource.writeMetricsReport(System.out);
+        } catch (IOException ex) {
+            System.out.println("Error writing metrics: " + ex.getMessage());
+            return;
+        }
+        System.out.println("Room search cache: " + adminResource.getFindRoomsCacheStats());
+        System.out.println("Alternative room cache: " + adminResource.getAlternativeRoomsCacheStats());
+
+        System.out.print("Export to file (Enter to skip): ");
+        String fileName = scanner.nextLine().trim();
+        if (fileName.isEmpty()) {
+            return;
+        }
+        try (Writer out = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            adminResource.writeMetricsReport(out);
+            System.out.println("Metrics written to " + fileName);
+        } catch (IOException | InvalidPathException ex) {
+            System.out.println("Error exporting metrics: " + ex.getMessage());
+        }
     }
 
     //Multiple same rooms error resolved (please test it reviewer)
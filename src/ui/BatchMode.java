@@ -0,0 +1,239 @@
+package ui;
+
+import api.AdminResource;
+import api.HotelResource;
+import model.FreeRoom;
+import model.IRoom;
+import model.Reservation;
+import model.Room;
+import model.RoomType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.regex.Pattern;
+
+/**
+ * Runs commands read one per line, without menus or prompts, for feeding the system from scripts
+ * and channel syncs. Fields are separated by whitespace; blank lines and lines starting with
+ * {@code #} are skipped. Dates are {@code yyyy-MM-dd}, or {@code MM/dd/yyyy} as in the menus.
+ * <pre>
+ *   customer &lt;email&gt; &lt;firstName&gt; &lt;lastName&gt;
+ *   room &lt;number&gt; &lt;price&gt; &lt;SINGLE|DOUBLE&gt;          a price of 0 adds a free room
+ *   find &lt;checkIn&gt; &lt;checkOut&gt;
+ *   alternatives &lt;checkIn&gt; &lt;checkOut&gt; [days]      moves of up to days either side, 7 by default
+ *   available &lt;room&gt; &lt;checkIn&gt; &lt;checkOut&gt;
+ *   book &lt;email&gt; &lt;room&gt; &lt;checkIn&gt; &lt;checkOut&gt;
+ *   modify &lt;email&gt; &lt;reservationId&gt; &lt;checkIn&gt; &lt;checkOut&gt;
+ *   cancel &lt;email&gt; &lt;reservationId&gt;
+ *   reservations &lt;email&gt;
+ * </pre>
+ * Every command writes one tab separated line: its line number, {@code ok} or {@code error}, then
+ * the result fields or the error message. Rooms are listed by number, comma separated, and
+ * reservations as {@code id:room:checkIn:checkOut}. A failed command does not stop the ones after it.
+ */
+public class BatchMode {
+    private static final HotelResource hotelResource = HotelResource.getInstance();
+    private static final AdminResource adminResource = AdminResource.getInstance();
+    // Formatters are immutable, unlike the SimpleDateFormat the menus use
+    private static final DateTimeFormatter ISO_DATE = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final DateTimeFormatter MENU_DATE =
+            DateTimeFormatter.ofPattern("MM/dd/uuuu").withResolverStyle(ResolverStyle.STRICT);
+    private static final Pattern FIELD_SEPARATOR = Pattern.compile("\\s+");
+    private static final int DEFAULT_ALTERNATIVE_DAYS = 7;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final StringBuilder line = new StringBuilder();
+    private int commands;
+    private int failures;
+
+    /**
+     * Runs every command from {@code in}, writing results to {@code out}, and returns how many
+     * commands failed. {@code out} is flushed at the end, not per line.
+     */
+    public static int run(BufferedReader in, Writer out) throws IOException {
+        BatchMode batch = new BatchMode();
+        String command;
+        int lineNumber = 0;
+        while ((command = in.readLine()) != null) {
+            lineNumber++;
+            String trimmed = command.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                batch.execute(lineNumber, FIELD_SEPARATOR.split(trimmed), out);
+            }
+        }
+        out.flush();
+        System.err.println(batch.commands + " commands, " + batch.failures + " failed");
+        return batch.failures;
+    }
+
+    private void execute(int lineNumber, String[] fields, Writer out) throws IOException {
+        commands++;
+        line.setLength(0);
+        line.append(lineNumber);
+        int resultStart = line.length();
+        line.append("\tok");
+        try {
+            execute(fields);
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            failures++;
+            line.setLength(resultStart);
+            line.append("\terror\t").append(oneLine(ex.getMessage()));
+        } catch (RuntimeException ex) {
+            failures++;
+            line.setLength(resultStart);
+            line.append("\terror\t").append(ex.getClass().getSimpleName()).append(": ").append(oneLine(ex.getMessage()));
+        }
+        line.append('\n');
+        out.append(line);
+    }
+
+    private void execute(String[] fields) {
+        switch (fields[0].toLowerCase(Locale.ROOT)) {
+            case "customer":
+                expectFields(fields, 4, "customer <email> <firstName> <lastName>");
+                hotelResource.createACustomer(fields[1], fields[2], fields[3]);
+                break;
+            case "room":
+                expectFields(fields, 4, "room <number> <price> <SINGLE|DOUBLE>");
+                adminResource.addRoom(Collections.singletonList(room(fields[1], fields[2], fields[3])));
+                break;
+            case "find":
+                expectFields(fields, 3, "find <checkIn> <checkOut>");
+                appendRooms(hotelResource.findARoom(date(fields[1]), date(fields[2])));
+                break;
+            case "alternatives":
+                if (fields.length != 3) {
+                    expectFields(fields, 4, "alternatives <checkIn> <checkOut> [days]");
+                }
+                int days = fields.length == 4 ? number(fields[3]) : DEFAULT_ALTERNATIVE_DAYS;
+                SortedMap<Integer, Collection<IRoom>> alternatives =
+                        hotelResource.findAlternativeRooms(date(fields[1]), date(fields[2]), days, days);
+                for (Map.Entry<Integer, Collection<IRoom>> alternative : alternatives.entrySet()) {
+                    line.append('\t').append(alternative.getKey()).append('=');
+                    appendRoomNumbers(alternative.getValue());
+                }
+                break;
+            case "available":
+                expectFields(fields, 4, "available <room> <checkIn> <checkOut>");
+                line.append('\t').append(hotelResource.isRoomAvailable(fields[1], date(fields[2]), date(fields[3])));
+                break;
+            case "book":
+                expectFields(fields, 5, "book <email> <room> <checkIn> <checkOut>");
+                IRoom room = hotelResource.getRoom(fields[2]);
+                if (room == null) {
+                    throw new IllegalArgumentException("Room " + fields[2] + " not found");
+                }
+                appendReservation(hotelResource.bookARoom(fields[1], room, date(fields[3]), date(fields[4])));
+                break;
+            case "modify":
+                expectFields(fields, 5, "modify <email> <reservationId> <checkIn> <checkOut>");
+                appendReservation(hotelResource.modifyReservation(fields[1], reservationId(fields[2]),
+                        date(fields[3]), date(fields[4])));
+                break;
+            case "cancel":
+                expectFields(fields, 3, "cancel <email> <reservationId>");
+                appendReservation(hotelResource.cancelReservation(fields[1], reservationId(fields[2])));
+                break;
+            case "reservations":
+                expectFields(fields, 2, "reservations <email>");
+                for (Reservation reservation : hotelResource.getCustomersReservations(fields[1])) {
+                    appendReservation(reservation);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + fields[0]);
+        }
+    }
+
+    private static void expectFields(String[] fields, int count, String usage) {
+        if (fields.length != count) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+    }
+
+    private static IRoom room(String number, String price, String type) {
+        double nightlyPrice;
+        try {
+            nightlyPrice = Double.parseDouble(price);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid price: " + price);
+        }
+        if (nightlyPrice < 0 || Double.isNaN(nightlyPrice) || Double.isInfinite(nightlyPrice)) {
+            throw new IllegalArgumentException("Price cannot be negative");
+        }
+
+        RoomType roomType;
+        try {
+            roomType = RoomType.valueOf(type.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid room type: " + type);
+        }
+        return nightlyPrice == 0 ? new FreeRoom(number, roomType) : new Room(number, nightlyPrice, roomType);
+    }
+
+    private Date date(String field) {
+        LocalDate date = LocalDate.parse(field, field.indexOf('/') >= 0 ? MENU_DATE : ISO_DATE);
+        return Date.from(date.atStartOfDay(zone).toInstant());
+    }
+
+    private static int number(String field) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid number: " + field);
+        }
+    }
+
+    private static long reservationId(String field) {
+        try {
+            return Long.parseLong(field);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid reservation id: " + field);
+        }
+    }
+
+    private void appendRooms(Collection<IRoom> rooms) {
+        line.append('\t');
+        appendRoomNumbers(rooms);
+    }
+
+    private void appendRoomNumbers(Collection<IRoom> rooms) {
+        boolean first = true;
+        for (IRoom room : rooms) {
+            if (!first) {
+                line.append(',');
+            }
+            line.append(room.getRoomNumber());
+            first = false;
+        }
+    }
+
+    private void appendReservation(Reservation reservation) {
+        line.append('\t').append(reservation.getId())
+                .append(':').append(reservation.getRoom().getRoomNumber())
+                .append(':').append(format(reservation.getCheckInDate()))
+                .append(':').append(format(reservation.getCheckOutDate()));
+    }
+
+    private String format(Date date) {
+        return ISO_DATE.format(Instant.ofEpochMilli(date.getTime()).atZone(zone).toLocalDate());
+    }
+
+    // Keeps a message from breaking the one-line-per-command output
+    private static String oneLine(String message) {
+        return message == null ? "" : message.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -5,6 +5,7 @@ import api.HotelResource;
 import model.IRoom;
 import model.Reservation;
 import model.Room;
+import model.RoomSearch;
 import model.RoomType;
 
 import java.text.ParseException;
@@ -13,8 +14,10 @@ import java.util.*;
 
 public class MainMenu {
     private static final HotelResource hotelResource = HotelResource.getInstance();
-    private static final Scanner scanner = new Scanner(System.in);
+    // Shared with AdminMenu: a second Scanner on System.in would buffer away lines meant for this one
+    static final Scanner scanner = new Scanner(System.in);
     private static final SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+    private static final int MAX_LISTED_ROOMS = 50;
 
     public static void displayMainMenu() {
         boolean keepRunning = true;
@@ -75,50 +78,71 @@ public class MainMenu {
                 return;
             }
 
-            // Find available rooms
-            Collection<IRoom> availableRooms = hotelResource.findARoom(checkInDate, checkOutDate);
+            // Optional filters, so only matching rooms are checked and listed
+            RoomType roomType = null;
+            System.out.print("Room type (1 for SINGLE, 2 for DOUBLE, Enter for any): ");
+            String typeChoice = scanner.nextLine().trim();
+            if (typeChoice.equals("1")) {
+                roomType = RoomType.SINGLE;
+            } else if (typeChoice.equals("2")) {
+                roomType = RoomType.DOUBLE;
+            }
+
+            Double maxPrice = null;
+            System.out.print("Maximum price per night (Enter for any): $");
+            String priceChoice = scanner.nextLine().trim();
+            if (!priceChoice.isEmpty()) {
+                maxPrice = Double.parseDouble(priceChoice);
+            }
+
+            // Find available rooms, cheapest first
+            RoomSearch search = new RoomSearch(checkInDate, checkOutDate,
+                    roomType, null, maxPrice, RoomSearch.SortOrder.PRICE_ASCENDING, MAX_LISTED_ROOMS);
+            Collection<IRoom> availableRooms = hotelResource.searchRooms(search);
 
             // If no rooms available, try recommended dates
             if (availableRooms.isEmpty()) {
                 System.out.println("No rooms available for the selected dates.");
 
-                // Add 7 days to check-in and check-out dates
-                Calendar calendar = Calendar.getInstance();
-                calendar.setTime(checkInDate);
-                calendar.add(Calendar.DATE, 7);
-                Date alternateCheckIn = calendar.getTime();
+                // Look up to 7 days either side in a single search, with the same filters
+                System.out.println("Searching for rooms up to 7 days earlier or later...");
+                SortedMap<Integer, List<IRoom>> alternatives = hotelResource.searchAlternativeRooms(search, 7, 7);
 
-                calendar.setTime(checkOutDate);
-                calendar.add(Calendar.DATE, 7);
-                Date alternateCheckOut = calendar.getTime();
+                if (alternatives.isEmpty()) {
+                    System.out.println("No rooms available for the alternate dates either.");
+                    return;
+                }
 
-                System.out.println("Searching for rooms with alternate dates: " +
-                        dateFormat.format(alternateCheckIn) + " to " +
-                        dateFormat.format(alternateCheckOut));
+                List<Integer> offsets = new ArrayList<>(alternatives.keySet());
+                System.out.println("\nAlternative dates with available rooms:");
+                for (int i = 0; i < offsets.size(); i++) {
+                    int offset = offsets.get(i);
+                    System.out.println((i + 1) + ". " + dateFormat.format(shiftDays(checkInDate, offset)) + " to " +
+                            dateFormat.format(shiftDays(checkOutDate, offset)) + " - " +
+                            alternatives.get(offset).size() + " room(s)");
+                }
 
-                Collection<IRoom> alternativeRooms = hotelResource.findAlternativeRooms(checkInDate, checkOutDate);
+                System.out.print("\nSelect alternative dates by number (or press Enter to cancel): ");
+                String choice = scanner.nextLine();
+                if (choice.trim().isEmpty()) {
+                    return;
+                }
 
-                if (alternativeRooms.isEmpty()) {
-                    System.out.println("No rooms available for the alternate dates either.");
+                int selected = Integer.parseInt(choice.trim());
+                if (selected < 1 || selected > offsets.size()) {
+                    System.out.println("Invalid selection.");
                     return;
-                } else {
-                    System.out.println("\nAlternative rooms available for dates: " +
-                            dateFormat.format(alternateCheckIn) + " to " +
-                            dateFormat.format(alternateCheckOut));
-
-                    displayRooms(alternativeRooms);
-
-                    System.out.print("\nWould you like to book one of these rooms for the alternative dates? (y/n): ");
-                    String bookAlternative = scanner.nextLine();
-
-                    if (bookAlternative.equalsIgnoreCase("y")) {
-                        checkInDate = alternateCheckIn;
-                        checkOutDate = alternateCheckOut;
-                        availableRooms = alternativeRooms;
-                    } else {
-                        return;
-                    }
                 }
+
+                int offset = offsets.get(selected - 1);
+                checkInDate = shiftDays(checkInDate, offset);
+                checkOutDate = shiftDays(checkOutDate, offset);
+                availableRooms = alternatives.get(offset);
+
+                System.out.println("\nAlternative rooms available for dates: " +
+                        dateFormat.format(checkInDate) + " to " +
+                        dateFormat.format(checkOutDate));
+                displayRooms(availableRooms);
             } else {
                 System.out.println("\nAvailable Rooms for " + dateFormat.format(checkInDate) +
                         " to " + dateFormat.format(checkOutDate) + ":");
@@ -151,13 +175,7 @@ public class MainMenu {
                     return;
                 }
 
-                // Check if room is available for the selected dates
-                if (!hotelResource.isRoomAvailable(roomNumber, checkInDate, checkOutDate)) {
-                    System.out.println("The selected room is not available for the chosen dates.");
-                    return;
-                }
-
-                // Book the room
+                // Book the room; availability is checked atomically as part of the booking
                 try {
                     Reservation reservation = hotelResource.bookARoom(email, selectedRoom, checkInDate, checkOutDate);
                     System.out.println("\nReservation created successfully!");
@@ -179,6 +197,13 @@ public class MainMenu {
         }
     }
 
+    private static Date shiftDays(Date date, int days) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.add(Calendar.DATE, days);
+        return calendar.getTime();
+    }
+
     private static Date getValidFutureDate(String prompt) throws ParseException {
         Date date;
         Date today = new Date();